@@ -0,0 +1,132 @@
+package org.jetbrains.plugins.scala.codeInsight.implicits
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.progress.EmptyProgressIndicator
+import com.intellij.openapi.util.TextRange
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScBlockExpr
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Time to the first hints in the visible part of a large file compared to hints of the whole file.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+class ImplicitHintsBenchmark extends ScalaLightCodeInsightFixtureTestAdapter {
+  import ImplicitHintsBenchmark._
+
+  var file: ScalaFile = _
+  var visibleRange: TextRange = _
+  var editedBlock: ScBlockExpr = _
+  var scalaPsiManager: ScalaPsiManager = _
+
+  override def getName = "testImplicitHints"
+
+  def setupData(): Unit = {
+    file = configureFromFileText(largeFileText).asInstanceOf[ScalaFile]
+
+    val document = getEditor.getDocument
+    visibleRange = new TextRange(0, document.getLineEndOffset(VisibleLines))
+    editedBlock = file.depthFirst().collect {
+      case block: ScBlockExpr if block.getTextRange.getStartOffset > visibleRange.getEndOffset => block
+    }.next()
+    scalaPsiManager = ScalaPsiManager.instance(getProject)
+  }
+
+  private def newPass() = new ImplicitHintsPass(getEditor, file, visibleRange)
+
+  private def dropCaches(): Unit = {
+    scalaPsiManager.clearAllCaches()
+    scalaPsiManager.TopLevelModificationTracker.incModificationCount()
+  }
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def visibleHintsUncached(bh: Blackhole): Unit = syncInEdt {
+    bh.consume(newPass().collectVisibleHints(new EmptyProgressIndicator))
+    dropCaches()
+  }
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def allHintsUncached(bh: Blackhole): Unit = syncInEdt {
+    val pass = newPass()
+    pass.doCollectInformation(new EmptyProgressIndicator)
+    bh.consume(pass)
+    dropCaches()
+  }
+
+  //hints of the other members are taken from the cache
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def allHintsAfterBlockChange(bh: Blackhole): Unit = syncInEdt {
+    val pass = newPass()
+    pass.doCollectInformation(new EmptyProgressIndicator)
+    bh.consume(pass)
+    editedBlock.incModificationCount()
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    ImplicitHints.enabled = true
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    ImplicitHints.enabled = false
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
+
+object ImplicitHintsBenchmark {
+  private val VisibleLines = 60
+  private val MembersCount = 300
+
+  private def member(idx: Int): String =
+    s"""class Member$idx {
+       |  def name(implicit prefix: String): String = prefix + $idx
+       |
+       |  def compute(xs: List[Int]): Int = {
+       |    val sorted = xs.sorted
+       |    val doubled = $idx.twice
+       |    val named = name
+       |    for {
+       |      x <- sorted
+       |      if x.twice > doubled
+       |    } yield named.length + x
+       |    sorted.max
+       |  }
+       |}
+       |""".stripMargin
+
+  //about 4500 lines
+  private val largeFileText: String =
+    s"""object Implicits {
+       |  implicit class RichInt(val i: Int) {
+       |    def twice: Int = i * 2
+       |  }
+       |
+       |  implicit val defaultPrefix: String = "member"
+       |}
+       |
+       |import Implicits._
+       |
+       |${(0 until MembersCount).map(member).mkString("\n")}
+       |""".stripMargin
+}
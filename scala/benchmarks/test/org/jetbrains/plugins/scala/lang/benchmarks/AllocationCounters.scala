@@ -0,0 +1,43 @@
+package org.jetbrains.plugins.scala.lang.benchmarks
+
+import java.lang.management.ManagementFactory
+
+import org.openjdk.jmh.annotations._
+
+/**
+  * Bytes allocated by a benchmark, reported by JMH as secondary results next to the time.
+  * Allocations are measured on the thread running the body, so it should be called inside of [[syncInEdt]].
+  */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+class AllocationCounters {
+  var allocatedBytes: Long = 0
+  var measuredOperations: Long = 0
+
+  @Setup(Level.Iteration)
+  def reset(): Unit = {
+    allocatedBytes = 0
+    measuredOperations = 0
+  }
+
+  def measure[T](body: => T): T = {
+    val before = AllocationCounters.currentThreadAllocatedBytes()
+    try body
+    finally {
+      allocatedBytes += AllocationCounters.currentThreadAllocatedBytes() - before
+      measuredOperations += 1
+    }
+  }
+}
+
+object AllocationCounters {
+  private val threadBean = ManagementFactory.getThreadMXBean match {
+    case bean: com.sun.management.ThreadMXBean if bean.isThreadAllocatedMemorySupported =>
+      bean.setThreadAllocatedMemoryEnabled(true)
+      Some(bean)
+    case _ => None
+  }
+
+  private def currentThreadAllocatedBytes(): Long =
+    threadBean.fold(0L)(_.getThreadAllocatedBytes(Thread.currentThread().getId))
+}
@@ -0,0 +1,73 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.conversion
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.CharsetToolkit
+import com.intellij.psi.{PsiFile, PsiManager}
+import com.intellij.psi.impl.PsiModificationTrackerImpl
+import org.jetbrains.plugins.scala.base.ScalaLightPlatformCodeInsightTestCaseAdapter
+import org.jetbrains.plugins.scala.conversion.ConverterUtil
+import org.jetbrains.plugins.scala.conversion.copy.JavaPartsConverter
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Converts a whole java file from the conversion test data, as it's done on copy.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+class JavaToScalaConversionBenchmark extends ScalaLightPlatformCodeInsightTestCaseAdapter {
+
+  @Param(Array("HelloWorld", "Enum", "Interface", "AnonymousClass", "StaticInitializer", "TypeParameters"))
+  var testName: String = _
+
+  var javaFile: PsiFile = _
+  var psiModTracker: PsiModificationTrackerImpl = _
+
+  override def getName = s"test$testName"
+
+  def setupData(): Unit = {
+    val path = baseRootPath() + "conversion/examples/" + testName + ".java"
+    val fileText = StringUtil.convertLineSeparators(FileUtil.loadFile(new File(path), CharsetToolkit.UTF8))
+    configureFromFileTextAdapter(testName + ".java", fileText)
+
+    javaFile = getFileAdapter
+    psiModTracker = PsiManager.getInstance(getProjectAdapter).getModificationTracker.asInstanceOf[PsiModificationTrackerImpl]
+  }
+
+  private def convertFile(bh: Blackhole): Unit = {
+    val (parts, dropElements) = ConverterUtil.getTopElements(javaFile, Array(0), Array(javaFile.getTextLength))
+    bh.consume(JavaPartsConverter.convert(parts, Seq.empty, dropElements)(getProjectAdapter))
+  }
+
+  @Benchmark
+  def convertUncached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(convertFile(bh))
+    psiModTracker.incCounter()
+  }
+
+  @Benchmark
+  def convertCached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(convertFile(bh))
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
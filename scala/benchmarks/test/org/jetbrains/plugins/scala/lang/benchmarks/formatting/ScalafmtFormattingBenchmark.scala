@@ -0,0 +1,100 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.formatting
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.editor.Document
+import com.intellij.psi.codeStyle.CodeStyleManager
+import com.intellij.psi.{PsiDocumentManager, PsiFile}
+import com.intellij.testFramework.LightPlatformTestCase
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.formatter.AbstractScalaFormatterTestBase
+import org.jetbrains.plugins.scala.lang.formatter.tests.scalafmt.ScalaFmtTestBase
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Reformatting of a large file after a change in a single top-level definition,
+  * with and without incremental scalafmt formatting.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+class ScalafmtFormattingBenchmark extends AbstractScalaFormatterTestBase with ScalaFmtTestBase {
+  import ScalafmtFormattingBenchmark._
+
+  @Param(Array("false", "true"))
+  var incremental: Boolean = _
+
+  var file: PsiFile = _
+  var document: Document = _
+  var iteration: Int = 0
+
+  override def getName = "testScalafmtFormatting"
+
+  def setupData(): Unit = {
+    getScalaSettings.SCALAFMT_INCREMENTAL_FORMAT = incremental
+
+    file = LightPlatformTestCase.createFile("Large.scala", largeFileText(changed = None))
+    document = PsiDocumentManager.getInstance(getProject).getDocument(file)
+    reformat()
+  }
+
+  private def reformat(): Unit =
+    WriteCommandAction.runWriteCommandAction(getProject, (() => {
+      CodeStyleManager.getInstance(getProject).reformat(file)
+    }): Runnable)
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def reformatAfterSingleChange(bh: Blackhole): Unit = syncInEdt {
+    iteration += 1
+    WriteCommandAction.runWriteCommandAction(getProject, (() => {
+      document.setText(largeFileText(changed = Some(iteration)))
+      PsiDocumentManager.getInstance(getProject).commitDocument(document)
+    }): Runnable)
+
+    reformat()
+    bh.consume(document.getModificationStamp)
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
+
+object ScalafmtFormattingBenchmark {
+  private val DefinitionsCount = 200
+
+  private def definition(idx: Int, changed: Option[Int]): String = {
+    val body = changed match {
+      case Some(iteration) if idx == DefinitionsCount / 2 => s"xs.map(_ *   $iteration)   .sum"
+      case _ => "xs.map(_ * 2).sum"
+    }
+    s"""class Definition$idx(val name: String, values: List[Int]) {
+       |  def sum(xs: List[Int]): Int = $body
+       |
+       |  def describe(prefix: String): String = {
+       |    val total = sum(values)
+       |    if (total > $idx) s"$$prefix $$name: $$total" else prefix
+       |  }
+       |}
+       |""".stripMargin
+  }
+
+  private def largeFileText(changed: Option[Int]): String =
+    s"""package benchmark
+       |
+       |${(0 until DefinitionsCount).map(definition(_, changed)).mkString("\n")}
+       |""".stripMargin
+}
@@ -0,0 +1,80 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.highlighting
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.psi.{PsiElement, PsiManager}
+import com.intellij.psi.impl.PsiModificationTrackerImpl
+import org.jetbrains.plugins.scala.annotator.{AnnotatorHolderMock, ScalaAnnotator}
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.jetbrains.plugins.scala.lang.typeInference.TypeInferenceTestBase
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Runs [[ScalaAnnotator]] on every element of a file, like the general highlighting pass does.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+abstract class ScalaAnnotatorBenchmarkBase(testName: String) extends TypeInferenceTestBase {
+  var file: ScalaFile = _
+  var elements: Seq[PsiElement] = _
+  var annotator: ScalaAnnotator = _
+  var scalaPsiManager: ScalaPsiManager = _
+  var psiModTracker: PsiModificationTrackerImpl = _
+
+  override protected def folderPath: String = "testdata/highlighting/"
+
+  def fileName = testName + ".scala"
+
+  override def getName = s"test$testName"
+
+  def setupData(): Unit = {
+    file = configureFromFileText(fileName, None)
+    elements = file.depthFirst().toVector
+    annotator = ScalaAnnotator(getProjectAdapter)
+    scalaPsiManager = ScalaPsiManager.instance(getProjectAdapter)
+    psiModTracker = PsiManager.getInstance(getProjectAdapter).getModificationTracker.asInstanceOf[PsiModificationTrackerImpl]
+  }
+
+  private def annotateAll(bh: Blackhole): Unit = {
+    val holder = new AnnotatorHolderMock(file)
+    elements.foreach(annotator.annotate(_, holder))
+    bh.consume(holder.annotations)
+  }
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def annotateUncached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(annotateAll(bh))
+    scalaPsiManager.clearAllCaches()
+    psiModTracker.incCounter()
+  }
+
+  //repeated highlighting after a change inside of a method body
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def annotateCachedJavaStructure(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(annotateAll(bh))
+    scalaPsiManager.clearCachesOnChange()
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
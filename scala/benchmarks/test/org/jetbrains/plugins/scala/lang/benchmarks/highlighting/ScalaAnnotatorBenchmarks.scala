@@ -0,0 +1,5 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.highlighting
+
+class Service extends ScalaAnnotatorBenchmarkBase("Service")
+
+class CollectionsHeavy extends ScalaAnnotatorBenchmarkBase("CollectionsHeavy")
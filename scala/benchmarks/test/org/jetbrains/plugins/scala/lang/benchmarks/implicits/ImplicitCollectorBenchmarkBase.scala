@@ -0,0 +1,90 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.implicits
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.psi.PsiManager
+import com.intellij.psi.impl.PsiModificationTrackerImpl
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.psi.api.ImplicitArgumentsOwner
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScGenericCall
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.jetbrains.plugins.scala.lang.psi.implicits.ImplicitCollector
+import org.jetbrains.plugins.scala.lang.psi.types.ScType
+import org.jetbrains.plugins.scala.lang.typeInference.TypeInferenceTestBase
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Implicit search for explicit `implicitly[T]` requests and for all implicit arguments of a file.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+abstract class ImplicitCollectorBenchmarkBase(testName: String) extends TypeInferenceTestBase {
+  var requests: Seq[(ScGenericCall, ScType)] = _
+  var implicitArgumentsOwners: Seq[ImplicitArgumentsOwner] = _
+  var scalaPsiManager: ScalaPsiManager = _
+  var psiModTracker: PsiModificationTrackerImpl = _
+
+  override protected def folderPath: String = "testdata/implicits/"
+
+  def fileName = testName + ".scala"
+
+  override def getName = s"test$testName"
+
+  def setupData(): Unit = {
+    val file = configureFromFileText(fileName, None)
+
+    requests = file.depthFirst().instancesOf[ScGenericCall].collect {
+      case call if call.referencedExpr.getText == "implicitly" =>
+        call.arguments.headOption.flatMap(_.`type`().toOption).map((call, _))
+    }.flatten.toVector
+    implicitArgumentsOwners = file.depthFirst().instancesOf[ImplicitArgumentsOwner].toVector
+
+    scalaPsiManager = ScalaPsiManager.instance(getProjectAdapter)
+    psiModTracker = PsiManager.getInstance(getProjectAdapter).getModificationTracker.asInstanceOf[PsiModificationTrackerImpl]
+  }
+
+  private def dropCaches(): Unit = {
+    scalaPsiManager.clearAllCaches()
+    psiModTracker.incCounter()
+  }
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def collectImplicitlyUncached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure {
+      requests.foreach {
+        case (place, tp) =>
+          bh.consume(new ImplicitCollector(place, tp, tp, None, isImplicitConversion = false).collect())
+      }
+    }
+    dropCaches()
+  }
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def implicitArgumentsUncached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure {
+      implicitArgumentsOwners.foreach(owner => bh.consume(owner.findImplicitArguments))
+    }
+    dropCaches()
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
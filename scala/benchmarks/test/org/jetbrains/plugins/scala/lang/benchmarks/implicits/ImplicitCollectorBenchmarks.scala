@@ -0,0 +1,7 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.implicits
+
+class Typeclasses extends ImplicitCollectorBenchmarkBase("Typeclasses")
+
+class TypeclassDerivation extends ImplicitCollectorBenchmarkBase("TypeclassDerivation")
+
+class OverlappingInstances extends ImplicitCollectorBenchmarkBase("OverlappingInstances")
@@ -0,0 +1,113 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.lexer
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.psi.PsiFileFactory
+import org.jetbrains.plugins.scala.ScalaLanguage
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.lexer.ScalaLexer
+import org.jetbrains.plugins.scala.lang.typeInference.TypeInferenceTestBase
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Lexing and parsing of a large file, made of copies of a file from the benchmark test data.
+  * Lexed tokens are counted by [[TokenCounters]], so throughput of the lexer in tokens per second
+  * is reported as a secondary result.
+  */
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+class ScalaLexerBenchmark extends TypeInferenceTestBase {
+
+  @Param(Array("highlighting/Service", "highlighting/CollectionsHeavy", "lexer/XmlLiterals"))
+  var testName: String = _
+
+  @Param(Array("100"))
+  var copies: Int = _
+
+  var text: String = _
+
+  //start offset of the token, from which lexing is restarted after an edit in the middle of the text
+  var restartOffset: Int = _
+
+  override protected def folderPath: String = "testdata/"
+
+  override def getName = "testLexer"
+
+  def setupData(): Unit = {
+    val fileText = StringUtil.convertLineSeparators(FileUtil.loadFile(new File(folderPath + testName + ".scala")))
+    text = Seq.fill(copies)(fileText).mkString("\n")
+    restartOffset = lastRestartableOffset(text.length / 2)
+  }
+
+  private def lastRestartableOffset(editOffset: Int): Int = {
+    val lexer = new ScalaLexer
+    lexer.start(text)
+
+    var result = 0
+    while (lexer.getTokenType != null && lexer.getTokenStart < editOffset) {
+      if (lexer.getState == 0) result = lexer.getTokenStart
+      lexer.advance()
+    }
+    result
+  }
+
+  private def lex(startOffset: Int, bh: Blackhole, counters: TokenCounters): Unit = {
+    val lexer = new ScalaLexer
+    lexer.start(text, startOffset, text.length, 0)
+
+    while (lexer.getTokenType != null) {
+      bh.consume(lexer.getTokenType)
+      counters.tokens += 1
+      lexer.advance()
+    }
+  }
+
+  @Benchmark
+  def lexWholeFile(bh: Blackhole, counters: TokenCounters): Unit =
+    lex(0, bh, counters)
+
+  //the highlighter relexes from the last restartable position before the edit
+  @Benchmark
+  def relexAfterEditInTheMiddle(bh: Blackhole, counters: TokenCounters): Unit =
+    lex(restartOffset, bh, counters)
+
+  @Benchmark
+  def parseWholeFile(bh: Blackhole): Unit = syncInEdt {
+    val file = PsiFileFactory.getInstance(getProjectAdapter)
+      .createFileFromText("dummy.scala", ScalaLanguage.INSTANCE, text)
+    //code blocks are parsed lazily
+    bh.consume(file.depthFirst().size)
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+class TokenCounters {
+  var tokens: Long = 0
+
+  @Setup(Level.Iteration)
+  def reset(): Unit = {
+    tokens = 0
+  }
+}
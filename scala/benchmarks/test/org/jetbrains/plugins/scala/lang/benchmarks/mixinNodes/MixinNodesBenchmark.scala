@@ -0,0 +1,131 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.mixinNodes
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.util.registry.Registry
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScTypeDefinition
+import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.typedef.MixinNodes
+import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.typedef.TypeDefinitionMembers.SignatureNodes
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Building signatures of classes in a deep hierarchy with the default and the compact representation of [[MixinNodes.Map]].
+  * Heap retained by the maps of all classes of the hierarchy is printed after the trial.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+class MixinNodesBenchmark extends ScalaLightCodeInsightFixtureTestAdapter {
+  import MixinNodesBenchmark._
+
+  @Param(Array("false", "true"))
+  var compact: Boolean = _
+
+  var classes: Seq[ScTypeDefinition] = _
+  var deepest: ScTypeDefinition = _
+
+  override def getName = "testMixinNodes"
+
+  def setupData(): Unit = {
+    Registry.get(MixinNodes.CompactMapKey).setValue(compact)
+
+    val file = configureFromFileText(hierarchyText).asInstanceOf[ScalaFile]
+    classes = file.typeDefinitions
+    deepest = classes.last
+  }
+
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def buildAndFindName(bh: Blackhole): Unit = syncInEdt {
+    val map = SignatureNodes.build(deepest)
+    bh.consume(map.forName("common"))
+    bh.consume(map.forName(s"member${Depth / 2}"))
+  }
+
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def buildAndIterateAll(bh: Blackhole): Unit = syncInEdt {
+    val map = SignatureNodes.build(deepest)
+    bh.consume(map.allNodesIterator.size)
+  }
+
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def buildAndFindImplicits(bh: Blackhole): Unit = syncInEdt {
+    val map = SignatureNodes.build(deepest)
+    bh.consume(map.nodesIterator("", isSupers = false, onlyImplicit = true).size)
+  }
+
+  //maps are usually requested for a few names only
+  private def retainedBytes(): Long = {
+    var result = 0L
+    syncInEdt {
+      val before = usedMemory()
+      val maps = classes.map(SignatureNodes.build)
+      maps.foreach(_.forName("common"))
+      result = usedMemory() - before
+
+      println(s"signatures of the deepest class: ${maps.last.allSignatures.size}")
+    }
+    result
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = {
+    println(s"compact = $compact, heap retained by maps of $Depth classes: ${retainedBytes() / 1024} KB")
+
+    syncInEdt {
+      Registry.get(MixinNodes.CompactMapKey).resetToDefault()
+      tearDown()
+    }
+    scheduleShutdown(200L)
+  }
+}
+
+object MixinNodesBenchmark {
+  private val Depth = 60
+
+  private def usedMemory(): Long = {
+    val runtime = Runtime.getRuntime
+    (1 to 3).foreach(_ => System.gc())
+    runtime.totalMemory() - runtime.freeMemory()
+  }
+
+  private def level(idx: Int): String = {
+    val parents = if (idx == 0) "" else s" extends Level${idx - 1}"
+    s"""trait Level$idx$parents {
+       |  def member$idx(x: Int): Int = x + $idx
+       |  def common(x: Int): Int = x + $idx
+       |  def overloaded(s: String, i: Int = $idx): String = s * i
+       |  val value$idx: String = "$idx"
+       |  var variable$idx: Int = $idx
+       |  type Alias$idx = List[Int]
+       |  implicit def conversion$idx(i: Int): Wrapper$idx = new Wrapper$idx(i)
+       |  class Wrapper$idx(val i: Int)
+       |}
+       |""".stripMargin
+  }
+
+  private val hierarchyText: String =
+    s"""${(0 until Depth).map(level).mkString("\n")}
+       |class Deepest extends Level${Depth - 1} with Serializable {
+       |  override def common(x: Int): Int = x
+       |}
+       |""".stripMargin
+}
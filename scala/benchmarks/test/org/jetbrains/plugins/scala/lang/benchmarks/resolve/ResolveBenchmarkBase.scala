@@ -0,0 +1,72 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.resolve
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.psi.PsiManager
+import com.intellij.psi.impl.PsiModificationTrackerImpl
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScReferenceExpression
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.jetbrains.plugins.scala.lang.typeInference.TypeInferenceTestBase
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Resolves all reference expressions of a file.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@Fork(1)
+@State(Scope.Benchmark)
+abstract class ResolveBenchmarkBase(testName: String) extends TypeInferenceTestBase {
+  var references: Seq[ScReferenceExpression] = _
+  var scalaPsiManager: ScalaPsiManager = _
+  var psiModTracker: PsiModificationTrackerImpl = _
+
+  override protected def folderPath: String = "testdata/resolve/"
+
+  def fileName = testName + ".scala"
+
+  override def getName = s"test$testName"
+
+  def setupData(): Unit = {
+    val file = configureFromFileText(fileName, None)
+    references = file.depthFirst().instancesOf[ScReferenceExpression].toVector
+    scalaPsiManager = ScalaPsiManager.instance(getProjectAdapter)
+    psiModTracker = PsiManager.getInstance(getProjectAdapter).getModificationTracker.asInstanceOf[PsiModificationTrackerImpl]
+  }
+
+  private def resolveAll(bh: Blackhole): Unit =
+    references.foreach(ref => bh.consume(ref.multiResolveScala(false)))
+
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 3, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def multiResolveUncached(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(resolveAll(bh))
+    scalaPsiManager.clearAllCaches()
+    psiModTracker.incCounter()
+  }
+
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+  @Benchmark
+  def multiResolveCachedJavaStructure(bh: Blackhole, allocations: AllocationCounters): Unit = syncInEdt {
+    allocations.measure(resolveAll(bh))
+    scalaPsiManager.clearCachesOnChange()
+  }
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    setupData()
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+}
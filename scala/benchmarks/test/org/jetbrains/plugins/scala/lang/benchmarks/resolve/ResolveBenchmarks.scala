@@ -0,0 +1,9 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.resolve
+
+class Overloaded extends ResolveBenchmarkBase("Overloaded")
+
+class Imports extends ResolveBenchmarkBase("Imports")
+
+class ImplicitHeavy extends ResolveBenchmarkBase("ImplicitHeavy")
+
+class OverloadHeavy extends ResolveBenchmarkBase("OverloadHeavy")
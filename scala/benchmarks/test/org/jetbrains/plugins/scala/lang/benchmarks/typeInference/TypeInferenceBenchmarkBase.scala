@@ -8,10 +8,13 @@ import org.jetbrains.plugins.scala.lang.benchmarks._
 import org.jetbrains.plugins.scala.lang.psi.api.expr.ScExpression
 import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
 import org.jetbrains.plugins.scala.lang.typeInference.TypeInferenceTestBase
+import org.jetbrains.plugins.scala.statistics.CacheStatistics
 import org.openjdk.jmh.annotations._
 import org.openjdk.jmh.infra.Blackhole
 
 /**
+  * Every benchmark is run with and without counters of cached functions, see [[CacheStatistics.enabled]].
+  *
   * @author Nikolay.Tropin
   */
 
@@ -19,6 +22,9 @@ import org.openjdk.jmh.infra.Blackhole
 @Fork(1)
 @State(Scope.Benchmark)
 abstract class TypeInferenceBenchmarkBase(testName: String) extends TypeInferenceTestBase {
+  @Param(Array("true", "false"))
+  var cacheStatistics: Boolean = _
+
   var expr: ScExpression = _
   var scalaPsiManager: ScalaPsiManager = _
   var psiModTracker: PsiModificationTrackerImpl = _
@@ -30,6 +36,8 @@ abstract class TypeInferenceBenchmarkBase(testName: String) extends TypeInferenc
   override def getName = s"test$testName"
 
   def setupData(): Unit = {
+    CacheStatistics.enabled = cacheStatistics
+
     val file = configureFromFileText(fileName, None)
     expr = findExpression(file)
     scalaPsiManager = ScalaPsiManager.instance(getProjectAdapter)
@@ -63,6 +71,8 @@ abstract class TypeInferenceBenchmarkBase(testName: String) extends TypeInferenc
 
   @TearDown(Level.Trial)
   def trialTearDown(): Unit = syncInEdt {
+    if (cacheStatistics) println(CacheStatistics.report(limit = 20))
+    CacheStatistics.enabled = true
     tearDown()
     scheduleShutdown(200L)
   }
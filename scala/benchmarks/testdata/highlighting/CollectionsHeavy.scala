@@ -0,0 +1,45 @@
+object CollectionsHeavy {
+  case class Order(id: Int, customer: String, lines: List[Line], tags: Set[String])
+  case class Line(product: String, quantity: Int, price: BigDecimal)
+
+  val orders: List[Order] = (1 to 50).toList.map { i =>
+    Order(i, s"customer${i % 7}", (1 to i % 5 + 1).toList.map(j => Line(s"product$j", j, BigDecimal(j * 10))), Set("tag" + i % 3))
+  }
+
+  def total(order: Order): BigDecimal = order.lines.map(l => l.price * l.quantity).sum
+
+  val byCustomer: Map[String, List[Order]] = orders.groupBy(_.customer)
+  val totals: Map[String, BigDecimal] = byCustomer.mapValues(_.map(total).sum).toMap
+  val topCustomers: Seq[(String, BigDecimal)] = totals.toSeq.sortBy(-_._2).take(3)
+  val products: Set[String] = orders.flatMap(_.lines.map(_.product)).toSet
+  val quantities: Map[String, Int] = orders.flatMap(_.lines).groupBy(_.product).map { case (p, ls) => p -> ls.map(_.quantity).sum }
+  val tagged: Map[String, Int] = orders.flatMap(o => o.tags.map(_ -> o)).groupBy(_._1).mapValues(_.size).toMap
+  val (large, small) = orders.partition(total(_) > 100)
+  val zipped: List[(Order, Int)] = orders.zipWithIndex.filter { case (_, idx) => idx % 2 == 0 }
+  val sliding: List[BigDecimal] = orders.map(total).sliding(3).map(_.sum / 3).toList
+  val folded: (Int, BigDecimal) = orders.foldLeft((0, BigDecimal(0))) { case ((count, sum), o) => (count + 1, sum + total(o)) }
+  val collected: List[String] = orders.collect { case Order(id, customer, lines, _) if lines.size > 2 => s"$id:$customer" }
+  val firstLarge: Option[Order] = orders.find(o => total(o) > 500)
+  val nested: List[List[Int]] = orders.map(_.lines.map(_.quantity)).filter(_.nonEmpty)
+  val transposed: List[List[Int]] = nested.filter(_.size == 2).transpose
+  val distinctCustomers: Int = orders.map(_.customer).distinct.size
+  val lookup: Map[Int, Order] = orders.map(o => o.id -> o)(collection.breakOut)
+  val streamed: Stream[BigDecimal] = orders.toStream.map(total).takeWhile(_ < 1000)
+  val iterated: Iterator[String] = orders.iterator.map(_.customer).filterNot(_.endsWith("0"))
+  val vector: Vector[Line] = orders.flatMap(_.lines).toVector.sortBy(l => (l.product, -l.quantity))
+  val arrays: Array[Int] = orders.map(_.id).toArray.map(_ * 2).filter(_ % 3 == 0)
+  val reduced: Option[Order] = orders.reduceOption((a, b) => if (total(a) > total(b)) a else b)
+  val scanned: List[BigDecimal] = orders.map(total).scanLeft(BigDecimal(0))(_ + _)
+  val forComprehension: List[(String, String)] = for {
+    order <- orders
+    line <- order.lines
+    if line.quantity > 2
+    tag <- order.tags
+  } yield (order.customer, s"${line.product}#$tag")
+  val maxBy: Order = orders.maxBy(total)
+  val minBy: Order = orders.minBy(_.lines.size)
+  val counted: Int = orders.count(_.tags.contains("tag1"))
+  val exists: Boolean = orders.exists(_.lines.exists(_.price > 40))
+  val forall: Boolean = orders.forall(_.id > 0)
+  val builder: String = orders.map(_.id).addString(new StringBuilder, "[", ",", "]").toString
+}
@@ -0,0 +1,87 @@
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.control.NonFatal
+
+object Service {
+  sealed trait Status
+  case object Active extends Status
+  case object Suspended extends Status
+  final case class Closed(reason: String) extends Status
+
+  final case class UserId(value: Long) extends AnyVal
+  final case class User(id: UserId, name: String, email: String, status: Status, roles: Set[String])
+
+  sealed trait ServiceError extends Exception
+  final case class NotFound(id: UserId) extends ServiceError
+  final case class Invalid(field: String, message: String) extends ServiceError
+
+  trait UserRepository {
+    def find(id: UserId): Future[Option[User]]
+    def save(user: User): Future[User]
+    def all(): Future[Seq[User]]
+  }
+
+  class InMemoryRepository(implicit ec: ExecutionContext) extends UserRepository {
+    private val users = scala.collection.concurrent.TrieMap.empty[UserId, User]
+
+    override def find(id: UserId): Future[Option[User]] = Future(users.get(id))
+
+    override def save(user: User): Future[User] = Future {
+      users.put(user.id, user)
+      user
+    }
+
+    override def all(): Future[Seq[User]] = Future(users.values.toSeq.sortBy(_.id.value))
+  }
+
+  class UserService(repository: UserRepository)(implicit ec: ExecutionContext) {
+
+    private val EmailPattern = """[^@\s]+@[^@\s]+\.\w+""".r
+
+    def validate(user: User): Either[ServiceError, User] =
+      for {
+        _ <- Either.cond(user.name.trim.nonEmpty, (), Invalid("name", "is empty"))
+        _ <- Either.cond(EmailPattern.pattern.matcher(user.email).matches(), (), Invalid("email", "is malformed"))
+      } yield user
+
+    def register(user: User): Future[User] =
+      validate(user) match {
+        case Right(valid) => repository.save(valid.copy(status = Active))
+        case Left(error) => Future.failed(error)
+      }
+
+    def suspend(id: UserId): Future[User] =
+      repository.find(id).flatMap {
+        case Some(user) if user.status == Active => repository.save(user.copy(status = Suspended))
+        case Some(user) => Future.successful(user)
+        case None => Future.failed(NotFound(id))
+      }
+
+    def close(id: UserId, reason: String): Future[User] =
+      for {
+        found <- repository.find(id)
+        user <- found.fold[Future[User]](Future.failed(NotFound(id)))(Future.successful)
+        saved <- repository.save(user.copy(status = Closed(reason), roles = Set.empty))
+      } yield saved
+
+    def report(): Future[Map[String, Int]] =
+      repository.all().map { users =>
+        users.groupBy {
+          case User(_, _, _, Active, _) => "active"
+          case User(_, _, _, Suspended, _) => "suspended"
+          case User(_, _, _, Closed(_), _) => "closed"
+        }.mapValues(_.size).toMap
+      }.recover {
+        case NonFatal(_) => Map.empty
+      }
+
+    def admins(): Future[Seq[String]] =
+      repository.all().map(_.filter(_.roles.contains("admin")).map(u => s"${u.name} <${u.email}>"))
+  }
+
+  def main(args: Array[String]): Unit = {
+    implicit val ec: ExecutionContext = ExecutionContext.global
+    val service = new UserService(new InMemoryRepository)
+    val users = (1 to 10).map(i => User(UserId(i), s"user$i", s"user$i@example.com", Active, if (i % 3 == 0) Set("admin") else Set.empty))
+    Future.sequence(users.map(service.register)).flatMap(_ => service.suspend(UserId(2))).flatMap(_ => service.report()).foreach(println)
+  }
+}
@@ -0,0 +1,85 @@
+object OverlappingInstances {
+  trait Encoder[-A] { def encode(a: A): String }
+
+  trait Functor[F[_]] { def map[A, B](fa: F[A])(f: A => B): F[B] }
+  trait Applicative[F[_]] extends Functor[F] { def pure[A](a: A): F[A] }
+  trait Monad[F[_]] extends Applicative[F] { def flatMap[A, B](fa: F[A])(f: A => F[B]): F[B] }
+  trait Traverse[F[_]] extends Functor[F]
+
+  //cats-like instances, the same type is matched by several instances at different priorities
+  trait LowPriorityEncoders {
+    implicit def any[A]: Encoder[A] = _.toString
+    implicit def iterable[A, C[X] <: Iterable[X]](implicit e: Encoder[A]): Encoder[C[A]] = _.map(e.encode).mkString(",")
+    implicit def product[P <: Product]: Encoder[P] = _.productPrefix
+  }
+
+  trait MidPriorityEncoders extends LowPriorityEncoders {
+    implicit def seq[A](implicit e: Encoder[A]): Encoder[Seq[A]] = _.map(e.encode).mkString("[", ",", "]")
+    implicit def option[A](implicit e: Encoder[A]): Encoder[Option[A]] = _.fold("null")(e.encode)
+    implicit def anyVal[A <: AnyVal]: Encoder[A] = _.toString
+  }
+
+  object Encoder extends MidPriorityEncoders {
+    implicit val int: Encoder[Int] = _.toString
+    implicit val long: Encoder[Long] = _.toString
+    implicit val string: Encoder[String] = "\"" + _ + "\""
+    implicit val boolean: Encoder[Boolean] = _.toString
+    implicit def list[A](implicit e: Encoder[A]): Encoder[List[A]] = _.map(e.encode).mkString("[", ",", "]")
+    implicit def some[A](implicit e: Encoder[A]): Encoder[Some[A]] = s => e.encode(s.get)
+    implicit def tuple2[A, B](implicit a: Encoder[A], b: Encoder[B]): Encoder[(A, B)] =
+      t => a.encode(t._1) + ":" + b.encode(t._2)
+    implicit def map[K, V](implicit k: Encoder[K], v: Encoder[V]): Encoder[Map[K, V]] =
+      _.map { case (key, value) => k.encode(key) + ":" + v.encode(value) }.mkString("{", ",", "}")
+  }
+
+  trait LowPriorityInstances {
+    implicit val listFunctor: Functor[List] = new Functor[List] {
+      def map[A, B](fa: List[A])(f: A => B): List[B] = fa.map(f)
+    }
+    implicit val listTraverse: Traverse[List] = new Traverse[List] {
+      def map[A, B](fa: List[A])(f: A => B): List[B] = fa.map(f)
+    }
+  }
+
+  object Instances extends LowPriorityInstances {
+    implicit val listMonad: Monad[List] = new Monad[List] {
+      def pure[A](a: A): List[A] = List(a)
+      def map[A, B](fa: List[A])(f: A => B): List[B] = fa.map(f)
+      def flatMap[A, B](fa: List[A])(f: A => List[B]): List[B] = fa.flatMap(f)
+    }
+    implicit val optionMonad: Monad[Option] = new Monad[Option] {
+      def pure[A](a: A): Option[A] = Some(a)
+      def map[A, B](fa: Option[A])(f: A => B): Option[B] = fa.map(f)
+      def flatMap[A, B](fa: Option[A])(f: A => Option[B]): Option[B] = fa.flatMap(f)
+    }
+  }
+
+  case class User(name: String, age: Int)
+
+  def encode[A](a: A)(implicit e: Encoder[A]): String = e.encode(a)
+
+  import Instances._
+
+  implicitly[Encoder[Int]]
+  implicitly[Encoder[String]]
+  implicitly[Encoder[Double]]
+  implicitly[Encoder[User]]
+  implicitly[Encoder[List[Int]]]
+  implicitly[Encoder[Seq[String]]]
+  implicitly[Encoder[Vector[Long]]]
+  implicitly[Encoder[Option[Boolean]]]
+  implicitly[Encoder[Some[Int]]]
+  implicitly[Encoder[(Int, String)]]
+  implicitly[Encoder[Map[String, List[Int]]]]
+  implicitly[Encoder[List[Option[(String, Seq[User])]]]]
+  implicitly[Functor[List]]
+  implicitly[Applicative[List]]
+  implicitly[Functor[Option]]
+  implicitly[Traverse[List]]
+
+  val e1 = encode(1)
+  val e2 = encode(List(1, 2, 3))
+  val e3 = encode(Map("a" -> List(Some(1), None)))
+  val e4 = encode(User("a", 1) -> Seq(User("b", 2)))
+  val e5 = encode(Vector(Option(1L), Some(2L)))
+}
@@ -0,0 +1,58 @@
+object TypeclassDerivation {
+  sealed trait HList
+  final case class ::[H, T <: HList](head: H, tail: T) extends HList
+  sealed trait HNil extends HList
+  case object HNil extends HNil
+
+  trait Generic[A] {
+    type Repr
+    def to(a: A): Repr
+  }
+
+  object Generic {
+    type Aux[A, R] = Generic[A] { type Repr = R }
+  }
+
+  trait Encoder[A] { def encode(a: A): List[String] }
+
+  object Encoder {
+    def apply[A](implicit e: Encoder[A]): Encoder[A] = e
+    def instance[A](f: A => List[String]): Encoder[A] = new Encoder[A] { def encode(a: A) = f(a) }
+
+    implicit val int: Encoder[Int] = instance(i => List(i.toString))
+    implicit val string: Encoder[String] = instance(List(_))
+    implicit val boolean: Encoder[Boolean] = instance(b => List(if (b) "yes" else "no"))
+    implicit val double: Encoder[Double] = instance(d => List(d.toString))
+    implicit val hnil: Encoder[HNil] = instance(_ => Nil)
+    implicit def hcons[H, T <: HList](implicit h: Encoder[H], t: Encoder[T]): Encoder[H :: T] =
+      instance { case head :: tail => h.encode(head) ++ t.encode(tail) }
+    implicit def option[A](implicit e: Encoder[A]): Encoder[Option[A]] = instance(_.fold(List(""))(e.encode))
+    implicit def list[A](implicit e: Encoder[A]): Encoder[List[A]] = instance(_.flatMap(e.encode))
+    implicit def generic[A, R](implicit gen: Generic.Aux[A, R], e: Encoder[R]): Encoder[A] = instance(a => e.encode(gen.to(a)))
+  }
+
+  case class Employee(name: String, age: Int, manager: Boolean)
+  case class Salary(amount: Double, bonus: Option[Double])
+
+  implicit val employeeGeneric: Generic.Aux[Employee, String :: Int :: Boolean :: HNil] = new Generic[Employee] {
+    type Repr = String :: Int :: Boolean :: HNil
+    def to(e: Employee): Repr = ::(e.name, ::(e.age, ::(e.manager, HNil)))
+  }
+
+  implicit val salaryGeneric: Generic.Aux[Salary, Double :: Option[Double] :: HNil] = new Generic[Salary] {
+    type Repr = Double :: Option[Double] :: HNil
+    def to(s: Salary): Repr = ::(s.amount, ::(s.bonus, HNil))
+  }
+
+  def csv[A: Encoder](values: List[A]): String = values.map(Encoder[A].encode(_).mkString(",")).mkString("\n")
+
+  val e1 = implicitly[Encoder[Int :: String :: HNil]]
+  val e2 = implicitly[Encoder[Employee]]
+  val e3 = implicitly[Encoder[List[Employee]]]
+  val e4 = implicitly[Encoder[Option[Salary]]]
+  val e5 = implicitly[Encoder[Boolean :: Option[Int] :: List[String] :: HNil]]
+
+  val employees = csv(List(Employee("Ann", 30, manager = true), Employee("Bob", 25, manager = false)))
+  val salaries = csv(List(Salary(100.0, Some(10.0)), Salary(90.0, None)))
+  val nested = csv(List(List(Employee("Ann", 30, manager = true))))
+}
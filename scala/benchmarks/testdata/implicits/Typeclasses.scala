@@ -0,0 +1,61 @@
+object Typeclasses {
+  trait Show[A] { def show(a: A): String }
+  trait Eq[A] { def eqv(x: A, y: A): Boolean }
+  trait Monoid[A] { def empty: A; def combine(x: A, y: A): A }
+
+  object Show {
+    def apply[A](implicit s: Show[A]): Show[A] = s
+    implicit val int: Show[Int] = _.toString
+    implicit val string: Show[String] = identity(_)
+    implicit val boolean: Show[Boolean] = _.toString
+    implicit def option[A: Show]: Show[Option[A]] = _.fold("None")(a => s"Some(${Show[A].show(a)})")
+    implicit def list[A: Show]: Show[List[A]] = _.map(Show[A].show).mkString("List(", ", ", ")")
+    implicit def map[K: Show, V: Show]: Show[Map[K, V]] =
+      _.map { case (k, v) => Show[K].show(k) + " -> " + Show[V].show(v) }.mkString("Map(", ", ", ")")
+    implicit def tuple[A: Show, B: Show]: Show[(A, B)] = t => s"(${Show[A].show(t._1)}, ${Show[B].show(t._2)})"
+    implicit def either[A: Show, B: Show]: Show[Either[A, B]] = _.fold(Show[A].show, Show[B].show)
+  }
+
+  object Eq {
+    implicit def fromOrdering[A: Ordering]: Eq[A] = Ordering[A].equiv(_, _)
+    implicit def option[A: Eq]: Eq[Option[A]] = {
+      case (Some(x), Some(y)) => implicitly[Eq[A]].eqv(x, y)
+      case (None, None) => true
+      case _ => false
+    }
+    implicit def list[A: Eq]: Eq[List[A]] = (xs, ys) => xs.size == ys.size && xs.zip(ys).forall { case (x, y) => implicitly[Eq[A]].eqv(x, y) }
+  }
+
+  object Monoid {
+    implicit val int: Monoid[Int] = new Monoid[Int] { def empty = 0; def combine(x: Int, y: Int) = x + y }
+    implicit val string: Monoid[String] = new Monoid[String] { def empty = ""; def combine(x: String, y: String) = x + y }
+    implicit def list[A]: Monoid[List[A]] = new Monoid[List[A]] { def empty = Nil; def combine(x: List[A], y: List[A]) = x ++ y }
+    implicit def option[A: Monoid]: Monoid[Option[A]] = new Monoid[Option[A]] {
+      def empty = None
+      def combine(x: Option[A], y: Option[A]) = (x ++ y).reduceOption(implicitly[Monoid[A]].combine)
+    }
+    implicit def map[K, V: Monoid]: Monoid[Map[K, V]] = new Monoid[Map[K, V]] {
+      def empty = Map.empty
+      def combine(x: Map[K, V], y: Map[K, V]) = y.foldLeft(x) { case (acc, (k, v)) =>
+        acc.updated(k, acc.get(k).fold(v)(implicitly[Monoid[V]].combine(_, v)))
+      }
+    }
+  }
+
+  def combineAll[A](xs: List[A])(implicit m: Monoid[A]): A = xs.foldLeft(m.empty)(m.combine)
+  def show[A: Show](a: A): String = Show[A].show(a)
+  def same[A: Eq](x: A, y: A): Boolean = implicitly[Eq[A]].eqv(x, y)
+
+  val s1 = implicitly[Show[Int]]
+  val s2 = implicitly[Show[List[Option[Int]]]]
+  val s3 = implicitly[Show[Map[String, List[(Int, Boolean)]]]]
+  val s4 = implicitly[Show[Either[String, Option[List[Int]]]]]
+  val e1 = implicitly[Eq[List[Option[Int]]]]
+  val e2 = implicitly[Eq[Option[String]]]
+  val m1 = implicitly[Monoid[Map[String, Option[Int]]]]
+  val m2 = implicitly[Monoid[Option[List[String]]]]
+
+  val shown = show(List(Some(1), None)) + show(Map("a" -> List((1, true))))
+  val combined = combineAll(List(Map("a" -> Option(1)), Map("a" -> Option(2), "b" -> None)))
+  val equal = same(List(Option(1)), List(Option(1))) && same(Option("a"), None)
+}
@@ -0,0 +1,60 @@
+package benchmarks.lexer
+
+import scala.xml.{Elem, Node, NodeSeq}
+
+case class Track(title: String, duration: Int, explicit: Boolean)
+
+case class Album(artist: String, title: String, year: Int, tracks: Seq[Track])
+
+object Catalog {
+
+  val albums: Seq[Album] = Seq(
+    Album("Artist", "First", 1999, Seq(Track("Intro", 65, explicit = false), Track("Outro", 120, explicit = true))),
+    Album("Artist", "Second", 2004, Seq(Track("Opening", 240, explicit = false)))
+  )
+
+  def duration(seconds: Int): String = f"${seconds / 60}%d:${seconds % 60}%02d"
+
+  def trackRow(track: Track, index: Int): Elem =
+    <tr class={if (index % 2 == 0) "even" else "odd"}>
+      <td>{index + 1}</td>
+      <td>{track.title}</td>
+      <td align="right">{duration(track.duration)}</td>
+      {if (track.explicit) <td><em>explicit</em></td> else <td/>}
+    </tr>
+
+  def albumTable(album: Album): Elem =
+    <table id={album.title.toLowerCase}>
+      <caption>{album.artist} - {album.title} ({album.year})</caption>
+      <thead>
+        <tr><th>#</th><th>Title</th><th>Duration</th><th/></tr>
+      </thead>
+      <tbody>
+        {album.tracks.zipWithIndex.map { case (track, index) => trackRow(track, index) }}
+      </tbody>
+    </table>
+
+  def page(title: String)(content: NodeSeq): Elem =
+    <html>
+      <head>
+        <title>{title}</title>
+        <meta charset="utf-8"/>
+        <!-- generated from the catalog -->
+      </head>
+      <body>
+        <h1>{title}</h1>
+        {content}
+        <footer><![CDATA[ <copyright> & all rights reserved ]]></footer>
+      </body>
+    </html>
+
+  def render: Elem = page("Catalog") {
+    <div class="albums">
+      {albums.sortBy(_.year).map(albumTable)}
+    </div>
+  }
+
+  def titles(node: Node): Seq[String] = (node \\ "caption").map(_.text.trim)
+
+  def totalDuration(albums: Seq[Album]): Int = albums.flatMap(_.tracks).map(_.duration).sum
+}
@@ -0,0 +1,38 @@
+object ImplicitHeavy {
+  case class Money(amount: BigDecimal, currency: String)
+
+  implicit class MoneyOps(val m: Money) extends AnyVal {
+    def +(other: Money): Money = Money(m.amount + other.amount, m.currency)
+    def *(factor: Int): Money = Money(m.amount * factor, m.currency)
+    def format: String = s"${m.amount} ${m.currency}"
+  }
+
+  implicit class IntMoney(val i: Int) extends AnyVal {
+    def usd: Money = Money(BigDecimal(i), "USD")
+    def eur: Money = Money(BigDecimal(i), "EUR")
+  }
+
+  implicit class RichSeq[A](val xs: Seq[A]) extends AnyVal {
+    def second: A = xs(1)
+    def sumBy(f: A => Money): Money = xs.map(f).reduce(_ + _)
+  }
+
+  implicit def stringToMoney(s: String): Money = Money(BigDecimal(s.takeWhile(_ != ' ')), s.dropWhile(_ != ' ').trim)
+
+  implicit val ordering: Ordering[Money] = Ordering.by(_.amount)
+
+  case class Item(name: String, price: Money, count: Int)
+
+  val items = Seq(Item("a", 10.usd, 2), Item("b", 5.usd, 1), Item("c", "7 USD", 3))
+
+  val total = items.sumBy(item => item.price * item.count)
+  val cheapest = items.map(_.price).min
+  val mostExpensive = items.map(_.price).max
+  val second = items.second.price.format
+  val sorted = items.sortBy(_.price).map(_.name)
+  val formatted = items.map(i => (i.price * i.count).format).mkString(", ")
+  val converted: Money = "12 EUR"
+  val sum = 1.usd + 2.usd + "3 USD" + converted
+  val ranges = (1 to 10).map(_.usd).sorted.reverse.take(3)
+  val grouped = items.groupBy(_.price.currency).mapValues(_.sumBy(_.price).format)
+}
@@ -0,0 +1,42 @@
+import scala.collection.mutable
+import scala.collection.immutable.{HashMap, ListMap, SortedMap, TreeMap}
+import scala.concurrent.{Await, ExecutionContext, Future, Promise}
+import scala.concurrent.duration._
+import scala.util.{Failure, Success, Try}
+import java.util.concurrent.{ConcurrentHashMap, Executors, TimeUnit}
+import java.io.{File, FileInputStream, InputStream}
+
+object Imports {
+  implicit val ec: ExecutionContext = ExecutionContext.fromExecutor(Executors.newFixedThreadPool(2))
+
+  val buffer = mutable.ArrayBuffer.empty[Int]
+  val set = mutable.HashSet(1, 2, 3)
+  val hashMap = HashMap("a" -> 1, "b" -> 2)
+  val listMap = ListMap("a" -> 1)
+  val sorted = SortedMap(3 -> "c", 1 -> "a")
+  val tree = TreeMap(1 -> "a") ++ sorted
+  val concurrent = new ConcurrentHashMap[String, Int]()
+
+  def read(file: File): Try[Int] = Try {
+    val stream: InputStream = new FileInputStream(file)
+    try stream.read() finally stream.close()
+  }
+
+  def async(file: File): Future[Int] = Future(read(file)).flatMap {
+    case Success(value) => Future.successful(value)
+    case Failure(e) => Future.failed(e)
+  }
+
+  def await(files: Seq[File]): Seq[Int] = {
+    val promise = Promise[Seq[Int]]()
+    promise.completeWith(Future.sequence(files.map(async)))
+    Await.result(promise.future, 10.seconds)
+  }
+
+  def timeout: Long = TimeUnit.SECONDS.toMillis(5.minutes.toSeconds)
+
+  buffer ++= set
+  buffer.append(hashMap("a"))
+  concurrent.put("x", listMap.size + tree.size)
+  val result = await(Seq(new File("a"), new File("b"))).sum + buffer.sum + concurrent.get("x") + timeout
+}
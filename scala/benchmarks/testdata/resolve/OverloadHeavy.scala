@@ -0,0 +1,104 @@
+object OverloadHeavy {
+  import scala.concurrent.duration._
+  import scala.language.implicitConversions
+
+  trait Message
+  case class Text(value: String) extends Message
+  case class Binary(bytes: Array[Byte]) extends Message
+  case class Batch(messages: Seq[Message]) extends Message
+
+  trait Sink[-T] {
+    def accept(value: T): Unit
+  }
+
+  class Route[A](val path: String)
+
+  //akka-like dsl with many overloads of the same name
+  object Dsl {
+    def complete(status: Int): Route[Int] = new Route(status.toString)
+    def complete(text: String): Route[String] = new Route(text)
+    def complete(message: Message): Route[Message] = new Route(message.toString)
+    def complete(message: Text): Route[Text] = new Route(message.value)
+    def complete(messages: Seq[Message]): Route[Seq[Message]] = new Route(messages.mkString)
+    def complete(messages: List[Text]): Route[List[Text]] = new Route(messages.mkString)
+    def complete(status: Int, text: String): Route[String] = new Route(status + text)
+    def complete(status: Int, message: Message): Route[Message] = new Route(status + message.toString)
+    def complete[T](value: T, sink: Sink[T]): Route[T] = new Route(value.toString)
+    def complete[T <: Message](first: T, rest: T*): Route[T] = new Route(first.toString)
+    def complete(timeout: FiniteDuration): Route[Duration] = new Route(timeout.toString)
+    def complete(timeout: Duration): Route[Duration] = new Route(timeout.toString)
+
+    def path(p: String): Route[Unit] = new Route(p)
+    def path(p: String, q: String): Route[Unit] = new Route(p + q)
+    def path(p: Symbol): Route[Unit] = new Route(p.name)
+    def path[A](p: Route[A]): Route[A] = p
+    def path[A](p: Route[A], q: Route[A]): Route[A] = q
+    def path[A, B](p: Route[A], q: Route[B])(implicit ev: A <:< B): Route[B] = q
+  }
+
+  //spark-like column functions
+  object Functions {
+    class Column(val name: String)
+
+    def col(name: String): Column = new Column(name)
+
+    def max(c: Column): Column = c
+    def max(name: String): Column = col(name)
+    def max(c: Column, other: Column): Column = other
+    def max(c: Column, others: Column*): Column = c
+    def max(values: Seq[Column]): Column = values.head
+
+    def lit(i: Int): Column = new Column(i.toString)
+    def lit(l: Long): Column = new Column(l.toString)
+    def lit(d: Double): Column = new Column(d.toString)
+    def lit(s: String): Column = new Column(s)
+    def lit(b: Boolean): Column = new Column(b.toString)
+    def lit(c: Char): Column = new Column(c.toString)
+    def lit(a: Any): Column = new Column(a.toString)
+    def lit[T <: AnyVal](values: Seq[T]): Column = new Column(values.mkString)
+  }
+
+  implicit def textToMessage(s: String): Text = Text(s)
+
+  import Dsl._
+  import Functions._
+
+  val textSink: Sink[Text] = new Sink[Text] { def accept(value: Text): Unit = () }
+  val messageSink: Sink[Message] = new Sink[Message] { def accept(value: Message): Unit = () }
+
+  val r1 = complete(200)
+  val r2 = complete("ok")
+  val r3 = complete(Text("ok"))
+  val r4 = complete(Binary(Array.empty))
+  val r5 = complete(Seq(Text("a"), Binary(Array.empty)))
+  val r6 = complete(List(Text("a"), Text("b")))
+  val r7 = complete(404, "not found")
+  val r8 = complete(500, Text("error"))
+  val r9 = complete(Text("a"), textSink)
+  val r10 = complete(Text("a"), messageSink)
+  val r11 = complete(Text("a"), Text("b"), Text("c"))
+  val r12 = complete(Batch(Nil), Text("b"))
+  val r13 = complete(5.seconds)
+  val r14 = complete(Duration.Inf)
+  val r15 = complete(Batch(Seq(Text("a"))))
+  val r16 = complete(List(Text("a")).map(t => t.copy(value = t.value * 2)))
+
+  val p1 = path("users")
+  val p2 = path("users", "id")
+  val p3 = path('users)
+  val p4 = path(r2)
+  val p5 = path(r3, r3)
+  val p6 = path(r3, r15)
+  val p7 = path(path(path("a")))
+
+  val c1 = max(col("a"))
+  val c2 = max("a")
+  val c3 = max(col("a"), col("b"))
+  val c4 = max(col("a"), col("b"), col("c"))
+  val c5 = max(Seq(col("a"), col("b")))
+  val c6 = max(lit(1), lit(2L), lit(3.0))
+  val c7 = max(lit("a"), lit(true), lit('c'))
+  val c8 = max(lit(Seq(1, 2, 3)), lit(Seq(1.0)), lit(List(1L)))
+  val c9 = max(lit(None), lit(Some(1)))
+  val c10 = max(max(max(lit(1), lit(2)), lit(3)), max("b"))
+}
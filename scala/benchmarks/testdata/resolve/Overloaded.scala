@@ -0,0 +1,46 @@
+object Overloaded {
+  trait Shape
+  case class Circle(radius: Double) extends Shape
+  case class Rect(width: Double, height: Double) extends Shape
+
+  object Render {
+    def draw(s: String): String = s
+    def draw(i: Int): String = i.toString
+    def draw(l: Long): String = l.toString
+    def draw(d: Double): String = f"$d%.2f"
+    def draw(shape: Shape): String = shape.toString
+    def draw(shapes: Seq[Shape]): String = shapes.map(draw).mkString(", ")
+    def draw(shape: Shape, scale: Double): String = draw(shape) + " x" + draw(scale)
+    def draw[T](opt: Option[T])(implicit ev: T <:< Shape): String = opt.map(o => draw(ev(o))).getOrElse("")
+    def draw(first: Shape, rest: Shape*): String = draw(first +: rest)
+  }
+
+  import Render._
+
+  val circle = Circle(1.0)
+  val rect = Rect(2.0, 3.0)
+
+  val a = draw("text")
+  val b = draw(42)
+  val c = draw(42L)
+  val d = draw(3.14)
+  val e = draw(circle)
+  val f = draw(Seq(circle, rect))
+  val g = draw(rect, 2.0)
+  val h = draw(Some(circle))
+  val i = draw(circle, rect, circle)
+  val j = draw(Seq(circle).head)
+  val k = draw(List(1, 2, 3).sum)
+  val l = draw(List(1.0, 2.0).max)
+  val m = draw(Option(rect))
+  val n = draw(Vector(rect, circle).filter(_.isInstanceOf[Rect]))
+
+  def total(xs: Seq[Int]): Int = xs.foldLeft(0)(_ + _)
+  def total(xs: Seq[Double]): Double = xs.foldLeft(0.0)(_ + _)
+
+  val o = draw(total(Seq(1, 2, 3)))
+  val p = draw(total(Seq(1.0, 2.0)))
+  val q = Math.max(1, 2) + Math.max(1L, 2L) + Math.max(1.0, 2.0)
+  val r = new StringBuilder().append(1).append("a").append(2.0).append('c').append(true).toString
+  val s = String.valueOf(1) + String.valueOf(2.0) + String.valueOf(true) + String.valueOf('c')
+}
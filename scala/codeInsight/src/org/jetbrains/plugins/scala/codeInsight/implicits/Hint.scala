@@ -17,8 +17,10 @@ private case class Hint(parts: Seq[Text],
                         suffix: Boolean,
                         menu: Option[String] = None) {
 
+  def offset: Int = if (suffix) element.getTextRange.getEndOffset else element.getTextRange.getStartOffset
+
   def addTo(model: InlayModel): Inlay = {
-    val offset = if (suffix) element.getTextRange.getEndOffset else element.getTextRange.getStartOffset
+    val offset = this.offset
 
     val existingInlays = model.getInlineElementsInRange(offset, offset).asScala.filter(isImplicitHint)
 
@@ -3,18 +3,20 @@ package org.jetbrains.plugins.scala.codeInsight.implicits
 import java.awt.Color
 
 import com.intellij.codeHighlighting.EditorBoundHighlightingPass
+import com.intellij.openapi.application.{ApplicationManager, ModalityState}
 import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.editor.colors.{CodeInsightColors, EditorColors, EditorColorsScheme}
 import com.intellij.openapi.editor.ex.util.CaretVisualPositionKeeper
 import com.intellij.openapi.editor.markup.TextAttributes
 import com.intellij.openapi.progress.ProgressIndicator
-import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.{Disposer, Key, TextRange}
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.pom.Navigatable
 import com.intellij.psi.PsiElement
 import com.intellij.util.DocumentUtil
 import com.intellij.util.ui.UIUtil
 import org.jetbrains.plugins.scala.annotator.ScalaAnnotator
+import org.jetbrains.plugins.scala.caches.CachesUtil
 import org.jetbrains.plugins.scala.codeInsight.implicits.ImplicitHintsPass._
 import org.jetbrains.plugins.scala.editor.documentationProvider.ScalaDocumentationProvider
 import org.jetbrains.plugins.scala.extensions._
@@ -27,20 +29,38 @@ import org.jetbrains.plugins.scala.lang.psi.implicits.ImplicitCollector._
 import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
 import org.jetbrains.plugins.scala.settings.ScalaProjectSettings
 
-private class ImplicitHintsPass(editor: Editor, rootElement: ScalaPsiElement)
+/**
+  * Hints of the visible part of the editor are computed first and shown as soon as they are ready,
+  * hints of the rest of the file are added in [[doApplyInformationToEditor]].
+  */
+private class ImplicitHintsPass(editor: Editor, rootElement: ScalaPsiElement, visibleRange: TextRange)
   extends EditorBoundHighlightingPass(editor, rootElement.getContainingFile, true) {
 
+  private var visibleHints: Seq[Hint] = Seq.empty
   private var hints: Seq[Hint] = Seq.empty
 
+  //set in EDT, reset in a background thread when collecting starts
+  @volatile
+  private var visibleHintsApplied = false
+
   override def doCollectInformation(indicator: ProgressIndicator): Unit = {
+    visibleHints = Seq.empty
     hints = Seq.empty
+    visibleHintsApplied = false
 
     if (myDocument != null && rootElement.containingVirtualFile.isDefined) {
-      collectConversionsAndArguments()
+      collectConversionsAndArguments(indicator, onlyVisible = false)
     }
   }
 
-  private def collectConversionsAndArguments(): Unit = {
+  /** Used to measure time to the first hints, which user can see */
+  private[implicits] def collectVisibleHints(indicator: ProgressIndicator): Seq[Hint] = {
+    visibleHints = Seq.empty
+    collectConversionsAndArguments(indicator, onlyVisible = true)
+    visibleHints
+  }
+
+  private def collectConversionsAndArguments(indicator: ProgressIndicator, onlyVisible: Boolean): Unit = {
     val settings = ScalaProjectSettings.getInstance(rootElement.getProject)
     val showNotFoundImplicitForFile = ScalaAnnotator.isAdvancedHighlightingEnabled(rootElement) && settings.isShowNotFoundImplicitArguments
 
@@ -84,30 +104,72 @@ private class ImplicitHintsPass(editor: Editor, rootElement: ScalaPsiElement)
       }
     }
 
-    rootElement.depthFirst().foreach {
-      case enum@ScEnumerator.withDesugaredAndEnumeratorToken(desugaredEnum, token) =>
-        val analogCall = desugaredEnum.analogMethodCall
-        def mapBackTo(e: PsiElement)(hint: Hint): Hint = hint.copy(element = e)
-        enum match {
-          case _: ScForBinding | _: ScGuard =>
-            hints ++:= implicitConversionHints(analogCall).map(mapBackTo(enum))
-          case _ =>
-        }
-        hints ++:= implicitArgumentsOrErrorHints(analogCall).map(mapBackTo(token))
-      case e: ScExpression =>
-        hints ++:= implicitConversionHints(e)
-        hints ++:= explicitArgumentHint(e)
-        hints ++:= implicitArgumentsOrErrorHints(e)
-      case c: ScConstructorInvocation =>
-        hints ++:= explicitArgumentHint(c)
-        hints ++:= implicitArgumentsOrErrorHints(c)
-      case _ =>
+    //hints of an element are in reverse order, as the ones of the whole file
+    def hintsOf(element: PsiElement): Seq[Hint] = {
+      var result = Seq.empty[Hint]
+      element match {
+        case enum@ScEnumerator.withDesugaredAndEnumeratorToken(desugaredEnum, token) =>
+          val analogCall = desugaredEnum.analogMethodCall
+          def mapBackTo(e: PsiElement)(hint: Hint): Hint = hint.copy(element = e)
+          enum match {
+            case _: ScForBinding | _: ScGuard =>
+              result ++:= implicitConversionHints(analogCall).map(mapBackTo(enum))
+            case _ =>
+          }
+          result ++:= implicitArgumentsOrErrorHints(analogCall).map(mapBackTo(token))
+        case e: ScExpression =>
+          result ++:= implicitConversionHints(e)
+          result ++:= explicitArgumentHint(e)
+          result ++:= implicitArgumentsOrErrorHints(e)
+        case c: ScConstructorInvocation =>
+          result ++:= explicitArgumentHint(c)
+          result ++:= implicitArgumentsOrErrorHints(c)
+        case _ =>
+      }
+      result
     }
+
+    val cacheKey = HintsSettings(ImplicitHints.enabled, settings.isShowNotFoundImplicitArguments,
+      ScalaAnnotator.isAdvancedHighlightingEnabled(rootElement), editor.getColorsScheme)
+
+    val elements = rootElement.depthFirst().filter(mayHaveHints).toVector
+    val (visibleElements, otherElements) = elements.partition(_.getTextRange.intersects(visibleRange))
+
+    def collect(elements: Seq[PsiElement]): Seq[Hint] =
+      elements.reverseIterator.flatMap { element =>
+        indicator.checkCanceled()
+        cachedHintsOf(element, cacheKey)(hintsOf(element))
+      }.toVector
+
+    //hints of an element in the visible range may be out of it, e.g. hints of a large block
+    val (visible, outOfVisible) = collect(visibleElements).partition(isVisible)
+    visibleHints = visible
+    if (onlyVisible) return
+
+    applyVisibleHintsLater(indicator)
+
+    hints = collect(otherElements) ++ outOfVisible
+  }
+
+  private def isVisible(hint: Hint): Boolean = visibleRange.containsOffset(hint.offset)
+
+  private def applyVisibleHintsLater(indicator: ProgressIndicator): Unit = {
+    val hintsToApply = visibleHints
+    if (hintsToApply.isEmpty || visibleRange.contains(rootElement.getTextRange)) return
+
+    ApplicationManager.getApplication.invokeLater(() => {
+      if (!visibleHintsApplied && !indicator.isCanceled && !myEditor.isDisposed) {
+        regenerateHints(hintsToApply, Seq(visibleRange))
+        visibleHintsApplied = true
+      }
+    }, ModalityState.stateForComponent(myEditor.getComponent))
   }
 
   override def doApplyInformationToEditor(): Unit = {
     val caretKeeper = new CaretVisualPositionKeeper(myEditor)
-    regenerateHints()
+    if (visibleHintsApplied) regenerateHints(hints, rangesOutOfVisible)
+    else regenerateHints(visibleHints ++ hints, Seq(rootElement.getTextRange))
+    visibleHintsApplied = true
     caretKeeper.restoreOriginalLocation(false)
 
     if (rootElement == myFile) {
@@ -115,9 +177,19 @@ private class ImplicitHintsPass(editor: Editor, rootElement: ScalaPsiElement)
     }
   }
 
-  private def regenerateHints(): Unit = {
+  private def rangesOutOfVisible: Seq[TextRange] = {
+    val rootRange = rootElement.getTextRange
+    Seq(
+      (rootRange.getStartOffset, visibleRange.getStartOffset - 1),
+      (visibleRange.getEndOffset + 1, rootRange.getEndOffset)
+    ).collect {
+      case (start, end) if start <= end => new TextRange(start, end)
+    }
+  }
+
+  private def regenerateHints(hints: Seq[Hint], ranges: Seq[TextRange]): Unit = {
     val inlayModel = myEditor.getInlayModel
-    val existingInlays = inlayModel.inlaysIn(rootElement.getTextRange)
+    val existingInlays = ranges.flatMap(inlayModel.inlaysIn(_))
 
     val bulkChange = existingInlays.length + hints.length  > BulkChangeThreshold
 
@@ -131,6 +203,34 @@ private class ImplicitHintsPass(editor: Editor, rootElement: ScalaPsiElement)
 private object ImplicitHintsPass {
   private final val BulkChangeThreshold = 1000
 
+  /** Settings, which affect presentation of the hints */
+  private case class HintsSettings(enabled: Boolean, showNotFound: Boolean, advancedHighlighting: Boolean, scheme: EditorColorsScheme)
+
+  private case class CachedHints(modificationCount: Long, settings: HintsSettings, hints: Seq[Hint])
+
+  private val CachedHintsKey: Key[CachedHints] = Key.create("SCALA_IMPLICIT_HINTS_OF_ELEMENT")
+
+  private def mayHaveHints(element: PsiElement): Boolean = element match {
+    case _: ScExpression | _: ScConstructorInvocation | _: ScEnumerator => true
+    case _ => false
+  }
+
+  /**
+    * Hints are recomputed only if the enclosing code block was changed,
+    * so editing a method body doesn't trigger implicit search in the other members of the file.
+    */
+  private def cachedHintsOf(element: PsiElement, settings: HintsSettings)(compute: => Seq[Hint]): Seq[Hint] = {
+    val modificationCount = CachesUtil.enclosingModificationOwner(element).getModificationCount
+
+    element.getUserData(CachedHintsKey) match {
+      case CachedHints(`modificationCount`, `settings`, hints) => hints
+      case _ =>
+        val hints = compute
+        element.putUserData(CachedHintsKey, CachedHints(modificationCount, settings, hints))
+        hints
+    }
+  }
+
   private def implicitConversionHint(e: ScExpression, conversion: ScalaResolveResult)
                                     (implicit scheme: EditorColorsScheme): Seq[Hint] =
     Seq(Hint(namedBasicPresentation(conversion) :+ Text("("), e, suffix = false, menu = Some(menu.ImplicitConversion)),
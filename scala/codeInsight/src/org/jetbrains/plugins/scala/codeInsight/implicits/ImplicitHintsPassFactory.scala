@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.scala.codeInsight.implicits
 
 import com.intellij.codeHighlighting.{Pass, TextEditorHighlightingPass, TextEditorHighlightingPassFactory, TextEditorHighlightingPassRegistrar}
+import com.intellij.codeInsight.daemon.impl.VisibleHighlightingPassFactory
 import com.intellij.openapi.components.ProjectComponent
 import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.project.Project
@@ -15,7 +16,8 @@ class ImplicitHintsPassFactory(project: Project, registrar: TextEditorHighlighti
   registrar.registerTextEditorHighlightingPass(this, runAfterAnnotator, null, false, -1)
 
   override def createHighlightingPass(file: PsiFile, editor: Editor): TextEditorHighlightingPass = file match {
-    case file: ScalaFile if !ImplicitHints.isUpToDate(editor, file) => new ImplicitHintsPass(editor, file)
+    case file: ScalaFile if !ImplicitHints.isUpToDate(editor, file) =>
+      new ImplicitHintsPass(editor, file, VisibleHighlightingPassFactory.calculateVisibleRange(editor))
     case _ => null
   }
 }
@@ -10,6 +10,7 @@ import org.jetbrains.jps.builders.DirtyFilesHolder
 import org.jetbrains.jps.builders.java.{JavaBuilderUtil, JavaSourceRootDescriptor}
 import org.jetbrains.jps.incremental.messages.{BuildMessage, CompilerMessage}
 import org.jetbrains.jps.incremental.scala.ScalaBuilder.projectSettings
+import org.jetbrains.jps.incremental.scala.data.CompilerJarsCache
 import org.jetbrains.jps.incremental.scala.model.IncrementalityType
 import org.jetbrains.jps.incremental._
 import org.jetbrains.jps.incremental.scala.InitialScalaBuilder._
@@ -30,6 +31,14 @@ class InitialScalaBuilder extends ModuleLevelBuilder(buildCategory) {
 
     if (scalaModules.nonEmpty) {
       checkIncrementalTypeChange(context)
+      CompilerJarsCache.load(context)
+    }
+  }
+
+  override def buildFinished(context: CompileContext): Unit = {
+    if (isScalaProject(context)) {
+      CompilerJarsCache.save(context)
+      ScalaBuilder.Log.info(s"Compiler jars cache: ${CompilerJarsCache.statistics}")
     }
   }
 
@@ -18,12 +18,11 @@ import org.jetbrains.jps.incremental.scala.SbtBuilder._
 import org.jetbrains.jps.incremental.scala.ScalaBuilder._
 import org.jetbrains.jps.incremental.scala.local.IdeClientSbt
 import org.jetbrains.jps.incremental.scala.model.IncrementalityType
-import org.jetbrains.jps.incremental.scala.sbtzinc.{CompilerOptionsStore, ModulesFedToZincStore}
+import org.jetbrains.jps.incremental.scala.sbtzinc.{CompilerOptionsStore, ModulesFedToZincStore, SourceSnapshotStore}
 import org.jetbrains.jps.incremental.scala.sources.SharedSourcesModuleType
 import org.jetbrains.jps.model.module.JpsModule
 
 import _root_.scala.collection.JavaConverters._
-import _root_.scala.collection.mutable
 
 /**
  * @author Pavel Fatin
@@ -53,12 +52,19 @@ class SbtBuilder extends ModuleLevelBuilder(BuilderCategory.TRANSLATOR) {
       }
     }
 
-    if (isDisabled(context) || ChunkExclusionService.isExcluded(chunk))
+    if (isDisabled(context))
+      return ExitCode.NOTHING_DONE
+
+    //snapshots have to see all changes, even in the excluded chunks
+    chunk.getTargets.asScala.foreach(SourceSnapshotStore.update(context, _, dirtyFilesHolder))
+
+    if (ChunkExclusionService.isExcluded(chunk))
       return ExitCode.NOTHING_DONE
 
     updateSharedResources(context, chunk)
 
     context.processMessage(new ProgressMessage("Searching for compilable files..."))
+    val searchStart = System.currentTimeMillis()
 
     val dirtyFilesFromIntellij =
       collectDirtyFiles(dirtyFilesHolder) ++ sourceDependenciesDirtyFiles(chunk, dirtyFilesStorage)
@@ -74,8 +80,11 @@ class SbtBuilder extends ModuleLevelBuilder(BuilderCategory.TRANSLATOR) {
       return ExitCode.NOTHING_DONE
     }
 
-
     val sourceToBuildTarget = collectCompilableFiles(context, chunk)
+
+    Log.info(s"Compilable files of ${chunk.getPresentableShortName} found in ${System.currentTimeMillis() - searchStart} ms, " +
+      s"dirty: ${dirtyFilesFromIntellij.size}, total: ${sourceToBuildTarget.size}")
+
     if (sourceToBuildTarget.isEmpty)
       return ExitCode.NOTHING_DONE
 
@@ -161,27 +170,6 @@ object SbtBuilder {
     result
   }
 
-  private def compilableFiles(context: CompileContext, target: ModuleBuildTarget): Seq[File] = {
-    val result = mutable.ArrayBuffer.empty[File]
-
-    val rootIndex = context.getProjectDescriptor.getBuildRootIndex
-    val excludeIndex = context.getProjectDescriptor.getModuleExcludeIndex
-
-    for (root <- rootIndex.getTargetRoots(target, context).asScala) {
-
-      FileUtil.processFilesRecursively(root.getRootFile, file => {
-        if (!excludeIndex.isExcluded(file)) {
-          val fileName = file.getName
-          if (fileName.endsWith(".scala") || fileName.endsWith(".java")) {
-            result += file
-          }
-        }
-        true
-      })
-    }
-    result
-  }
-
   private def collectCompilableFiles(context: CompileContext,
                                      chunk: ModuleChunk): Map[File, BuildTarget[_ <: BuildRootDescriptor]] = {
 
@@ -190,7 +178,7 @@ object SbtBuilder {
     val fileToTarget =
       for {
         target <- chunk.getTargets.asScala ++ sourceTargets
-        file <- compilableFiles(context, target)
+        file <- SourceSnapshotStore.compilableFiles(context, target)
       } yield {
         file -> target
       }
@@ -106,14 +106,20 @@ object CompilerData extends CompilerDataFactory {
 
     val files = sdk.getProperties.asInstanceOf[LibrarySettings].getCompilerClasspath
 
+    CompilerJarsCache.compilerJarsIn(sdk.getName, files) {
+      readCompilerJars(sdk.getName, files)
+    }
+  }
+
+  private def readCompilerJars(sdkName: String, files: Seq[File]): Either[String, CompilerJars] = {
     val library = find(files, "scala-library", ".jar") match {
-      case Left(error) => Left(error + " in Scala compiler classpath in Scala SDK " + sdk.getName)
+      case Left(error) => Left(error + " in Scala compiler classpath in Scala SDK " + sdkName)
       case right => right
     }
 
     library.flatMap { libraryJar =>
       val compiler = find(files, "scala-compiler", ".jar") match {
-        case Left(error) => Left(error + " in Scala compiler classpath in Scala SDK " + sdk.getName)
+        case Left(error) => Left(error + " in Scala compiler classpath in Scala SDK " + sdkName)
         case right => right
       }
 
@@ -124,7 +130,7 @@ object CompilerData extends CompilerDataFactory {
           version(compilerJar).flatMap {
             case version if version.startsWith("2.10") => // TODO implement a better version comparison
               find(extraJars, "scala-reflect", ".jar").left.toOption
-                      .map(_ + " in Scala compiler classpath in Scala SDK " + sdk.getName)
+                      .map(_ + " in Scala compiler classpath in Scala SDK " + sdkName)
             case _ => None
           }
         }
@@ -145,5 +151,7 @@ object CompilerData extends CompilerDataFactory {
     }
   }
 
-  def version(compiler: File): Option[String] = readProperty(compiler, "compiler.properties", "version.number")
+  def version(compiler: File): Option[String] = CompilerJarsCache.version(compiler) {
+    readProperty(compiler, "compiler.properties", "version.number")
+  }
 }
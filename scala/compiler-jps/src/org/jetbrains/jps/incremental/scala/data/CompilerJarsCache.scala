@@ -0,0 +1,115 @@
+package org.jetbrains.jps.incremental.scala
+package data
+
+import java.io.{File, IOException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+import org.jetbrains.jps.incremental.CompileContext
+
+import scala.collection.JavaConverters._
+import scala.util.Try
+
+/**
+  * Compiler jars of Scala SDKs and versions of compiler jars, keyed by path, size and modification time of the jars.
+  *
+  * Entries live as long as the build process, i.e. between builds when the compile server is used.
+  * Versions are also stored in the project data directory, so a new build process doesn't have to open the jars again.
+  */
+object CompilerJarsCache {
+  private val versionsFileName = "scala-compiler-versions.txt"
+
+  private val FormatVersion = "version 1"
+
+  case class JarStamp(path: String, length: Long, lastModified: Long)
+
+  object JarStamp {
+    def apply(file: File): JarStamp = JarStamp(file.getAbsolutePath, file.length(), file.lastModified())
+  }
+
+  private val versions = new ConcurrentHashMap[JarStamp, Option[String]]()
+
+  private val compilerJars = new ConcurrentHashMap[(String, Seq[JarStamp]), Either[String, CompilerJars]]()
+
+  @volatile
+  private var versionsChanged = false
+
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+
+  def version(compiler: File)(compute: => Option[String]): Option[String] =
+    getOrCompute(versions, JarStamp(compiler)) {
+      versionsChanged = true
+      compute
+    }
+
+  /**
+    * @param sdkName name of the Scala SDK, which is mentioned in the errors
+    * @param files   compiler classpath of the SDK
+    */
+  def compilerJarsIn(sdkName: String, files: Seq[File])
+                    (compute: => Either[String, CompilerJars]): Either[String, CompilerJars] =
+    getOrCompute(compilerJars, (sdkName, files.map(JarStamp(_))))(compute)
+
+  def statistics: String = s"${hits.get} hits, ${misses.get} misses"
+
+  /**
+    * Reads versions stored by the previous build process, doesn't override entries which are already known.
+    * Lines which can't be parsed are skipped, the file is rewritten on the next save then.
+    */
+  def load(context: CompileContext): Unit = {
+    val file = versionsFile(context).filter(Files.exists(_)).getOrElse(return)
+
+    val lines = try Files.readAllLines(file, StandardCharsets.UTF_8).asScala catch {
+      case _: IOException =>
+        versionsChanged = true
+        return
+    }
+    if (lines.headOption.contains(FormatVersion)) {
+      //the last field is empty for jars without a version
+      lines.iterator.drop(1).map(_.split("\t", -1)).foreach {
+        case Array(path, LongValue(length), LongValue(lastModified), version) =>
+          versions.putIfAbsent(JarStamp(path, length, lastModified), Some(version).filter(_.nonEmpty))
+        case _ =>
+          versionsChanged = true
+      }
+    }
+  }
+
+  def save(context: CompileContext): Unit = {
+    if (!versionsChanged) return
+    val file = versionsFile(context).getOrElse(return)
+
+    //stamps of removed or updated jars are not written, they never match again
+    val lines = FormatVersion +: versions.asScala.toSeq.collect {
+      case (stamp @ JarStamp(path, length, lastModified), version) if stamp == JarStamp(new File(path)) =>
+        Seq(path, length, lastModified, version.getOrElse("")).mkString("\t")
+    }
+
+    Files.createDirectories(file.getParent)
+    Files.write(file, lines.asJava, StandardCharsets.UTF_8)
+    versionsChanged = false
+  }
+
+  private def getOrCompute[K, V <: AnyRef](map: ConcurrentHashMap[K, V], key: K)(compute: => V): V =
+    map.get(key) match {
+      case null =>
+        misses.incrementAndGet()
+        val value = compute
+        map.putIfAbsent(key, value)
+        value
+      case value =>
+        hits.incrementAndGet()
+        value
+    }
+
+  private object LongValue {
+    def unapply(string: String): Option[Long] = Try(string.toLong).toOption
+  }
+
+  private def versionsFile(context: CompileContext): Option[Path] =
+    Option(context.getProjectDescriptor.dataManager.getDataPaths.getDataStorageRoot)
+      .map(_.toPath.resolve(versionsFileName))
+}
@@ -32,6 +32,7 @@ class CompilerFactoryImpl(sbtData: SbtData) extends CompilerFactory {
           val classpathOptions = ClasspathOptionsUtil.javac(false)
           JavaTools.directOrFork(scala, classpathOptions, compilerData.javaHome)
         }
+        DefinesClassCache.storeIn(new File(sbtData.interfacesHome.getParentFile, "defines-class-cache"))
         new SbtCompiler(javac, scalac, fileToStore)
 
       case IncrementalityType.IDEA =>
@@ -1,27 +1,184 @@
 package org.jetbrains.jps.incremental.scala.local
 
-import java.io.File
-import java.util.concurrent.ConcurrentHashMap
+import java.io.{File, IOException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util
+import java.util.zip.ZipFile
 
+import com.intellij.openapi.diagnostic.{Logger => JpsLogger}
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.jps.incremental.scala.using
 import sbt.internal.inc.Locate
 import xsbti.compile.DefinesClass
 
-object DefinesClassCache {
-  private var cacheStamp: Long = -1L
-  private val cache = new ConcurrentHashMap[File, DefinesClass]()
+import scala.collection.JavaConverters._
 
-  def definesClassFor(file: File): DefinesClass = {
-    Option(cache.get(file)).getOrElse {
-      val newDefines = Locate.definesClass(file)
-      cache.put(file, newDefines)
-      newDefines
+/**
+  * Tables of classes defined in classpath jars, which are used to find a classpath entry with a class.
+  *
+  * A table of a jar is read on the first lookup of a class in the jar and is kept until the jar is changed.
+  * Least recently used tables are dropped when the total count of their classes exceeds the limit.
+  * Tables are also written to the store directory, so that they are not read from jars again after a restart,
+  * stored tables are deleted along with the dropped ones.
+  *
+  * Directories are not cached, their classes are looked up in the file system.
+  */
+class DefinesClassCache(maxClassCount: Long) {
+  import DefinesClassCache.{ClassTable, FormatVersion, Log, Stamp}
+
+  private val lock = new Object()
+
+  private val tables = new util.LinkedHashMap[String, ClassTable](16, 0.75F, true)
+
+  private var classCount = 0L
+
+  @volatile
+  private var storeDirectory: Option[File] = None
+
+  def storeIn(directory: File): Unit = {
+    storeDirectory = Some(directory)
+  }
+
+  private[local] def cachedClassCount: Long = lock.synchronized(classCount)
+
+  private[local] def isCached(jar: File): Boolean = lock.synchronized(tables.containsKey(jar.getAbsolutePath))
+
+  def definesClassFor(file: File): DefinesClass =
+    if (file.isFile && isArchive(file)) new JarDefinesClass(file)
+    else Locate.definesClass(file)
+
+  private class JarDefinesClass(jar: File) extends DefinesClass {
+    private lazy val table = tableFor(jar)
+
+    override def apply(className: String): Boolean = table.contains(className)
+  }
+
+  private def tableFor(jar: File): ClassTable = {
+    val path = jar.getAbsolutePath
+    val stamp = Stamp(jar)
+
+    val cached = lock.synchronized {
+      tables.get(path) match {
+        case null => None
+        case table if table.stamp == stamp => Some(table)
+        case outdated =>
+          tables.remove(path)
+          classCount -= outdated.size
+          None
+      }
+    }
+
+    cached.getOrElse {
+      loadTable(path, stamp).orElse(readTable(jar, path, stamp)) match {
+        case Some(table) =>
+          put(path, table)
+          table
+        //not cached, the jar may be readable in the next compilation
+        case None => new ClassTable(stamp, Array.empty)
+      }
+    }
+  }
+
+  private def put(path: String, table: ClassTable): Unit = {
+    val evicted = lock.synchronized {
+      Option(tables.put(path, table)).foreach(previous => classCount -= previous.size)
+      classCount += table.size
+
+      val result = Seq.newBuilder[String]
+      val iterator = tables.entrySet().iterator()
+      while (classCount > maxClassCount && iterator.hasNext) {
+        val eldest = iterator.next()
+        if (eldest.getValue ne table) {
+          iterator.remove()
+          classCount -= eldest.getValue.size
+          result += eldest.getKey
+        }
+      }
+      result.result()
+    }
+
+    evicted.flatMap(storeFile).foreach(_.delete())
+  }
+
+  /**
+    * @return None if the jar can't be read
+    */
+  private def readTable(jar: File, path: String, stamp: Stamp): Option[ClassTable] = {
+    val names = try {
+      using(new ZipFile(jar)) { zip =>
+        zip.entries().asScala
+          .map(_.getName)
+          .filter(_.endsWith(".class"))
+          .map(name => name.substring(0, name.length - ".class".length).replace('/', '.'))
+          .toArray
+      }
+    } catch {
+      case e: IOException =>
+        Log.warn(s"Cannot read classes of $jar", e)
+        return None
     }
+    util.Arrays.sort(names.asInstanceOf[Array[AnyRef]])
+
+    val table = new ClassTable(stamp, names)
+    if (names.nonEmpty) storeTable(path, table, names)
+    Some(table)
+  }
+
+  private[local] def storeFile(path: String): Option[File] = storeDirectory.map { directory =>
+    val name = FileUtil.sanitizeFileName(new File(path).getName) + "-" + Integer.toHexString(path.hashCode) + ".classes"
+    new File(directory, name)
+  }
+
+  private def header(path: String, stamp: Stamp) = Seq(FormatVersion, path, stamp.length, stamp.lastModified).mkString("\t")
+
+  private def loadTable(path: String, stamp: Stamp): Option[ClassTable] = storeFile(path).filter(_.exists).flatMap { file =>
+    try {
+      val lines = Files.readAllLines(file.toPath, StandardCharsets.UTF_8)
+      if (!lines.isEmpty && lines.get(0) == header(path, stamp)) {
+        Some(new ClassTable(stamp, lines.subList(1, lines.size).asScala.toArray))
+      } else {
+        file.delete()
+        None
+      }
+    } catch {
+      case e: IOException =>
+        Log.warn(s"Cannot load classes of $path from $file", e)
+        None
+    }
+  }
+
+  private def storeTable(path: String, table: ClassTable, names: Array[String]): Unit = storeFile(path).foreach { file =>
+    try {
+      FileUtil.createParentDirs(file)
+      Files.write(file.toPath, (header(path, table.stamp) +: names.toSeq).asJava, StandardCharsets.UTF_8)
+    } catch {
+      case e: IOException =>
+        Log.warn(s"Cannot store classes of $path to $file", e)
+    }
+  }
+
+  private def isArchive(file: File): Boolean = {
+    val name = file.getName
+    name.endsWith(".jar") || name.endsWith(".zip")
+  }
+}
+
+//shared by all compilations of the compile server
+object DefinesClassCache extends DefinesClassCache(maxClassCount = 2000000) {
+  private val Log: JpsLogger = JpsLogger.getInstance(DefinesClassCache.getClass.getName)
+
+  private val FormatVersion = "version 1"
+
+  private case class Stamp(length: Long, lastModified: Long)
+
+  private object Stamp {
+    def apply(file: File): Stamp = Stamp(file.length(), file.lastModified())
   }
 
-  def invalidateCacheIfRequired(stamp: Long) = synchronized {
-    if (stamp != cacheStamp)
-      cache.clear()
+  private class ClassTable(val stamp: Stamp, sortedNames: Array[String]) {
+    def contains(className: String): Boolean = util.Arrays.binarySearch(sortedNames.asInstanceOf[Array[AnyRef]], className) >= 0
 
-    cacheStamp = stamp
+    def size: Int = sortedNames.length
   }
 }
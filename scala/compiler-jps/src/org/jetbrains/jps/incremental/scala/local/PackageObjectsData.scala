@@ -3,40 +3,218 @@ package local
 
 import java.io._
 
+import com.intellij.openapi.diagnostic.{Logger => JpsLogger}
+import com.intellij.openapi.util.io.FileUtil
 import org.jetbrains.jps.incremental.CompileContext
-import org.jetbrains.jps.incremental.messages.{BuildMessage, CompilerMessage}
+import org.jetbrains.jps.model.serialization.JpsModelSerializationDataService
 
 import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
 
 /**
+  * Dependencies of package objects on sources of their base classes.
+  *
+  * Data is stored in an append-only file: paths (relative to the project root when possible) get ids,
+  * pairs of ids are appended after each build. File is rewritten on `clear` and when it has grown twice
+  * since the last compaction, dropping pairs of deleted files.
+  * Nothing is read until data is requested for the first time.
+  *
   * @author Nikolay.Tropin
   */
-class PackageObjectsData extends Serializable {
+class PackageObjectsData private[local](storageFile: File, projectRoot: Option[File]) {
+
+  import PackageObjectsData._
 
   private val baseSourceToPackageObjects = mutable.HashMap[File, Set[File]]()
   private val packageObjectToBaseSources = mutable.HashMap[File, Set[File]]()
 
+  private var loaded = false
+
+  //paths already written to the storage file, ids are their positions in the file
+  private val pathIds = mutable.HashMap[File, Int]()
+  private val pendingPairs = ArrayBuffer[(File, File)]()
+  private var storedPairs = 0
+  private var pairsAfterCompaction = 0
+  private var rewriteRequired = false
+
   def add(baseSource: File, packageObject: File): Unit = synchronized {
-    baseSourceToPackageObjects.update(baseSource, baseSourceToPackageObjects.getOrElse(baseSource, Set.empty) + packageObject)
-    packageObjectToBaseSources.update(packageObject, packageObjectToBaseSources.getOrElse(packageObject, Set.empty) + baseSource)
+    ensureLoaded()
+
+    if (addPair(baseSource, packageObject))
+      pendingPairs += ((baseSource, packageObject))
   }
 
   def invalidatedPackageObjects(sources: Seq[File]): Set[File] = synchronized {
+    ensureLoaded()
+
     sources.to[Set].flatMap(f => baseSourceToPackageObjects.getOrElse(f, Set.empty)) -- sources
   }
 
   def clear(): Unit = synchronized {
     baseSourceToPackageObjects.clear()
     packageObjectToBaseSources.clear()
+    pendingPairs.clear()
+    loaded = true
+    rewriteRequired = true
+  }
+
+  def save(context: CompileContext): Unit = synchronized {
+    if (!loaded) return
+
+    try {
+      if (rewriteRequired || needsCompaction) rewrite()
+      else if (pendingPairs.nonEmpty) append()
+    } catch {
+      case e: IOException =>
+        Log.warn(s"Could not save data about package objects dependencies to $storageFile", e)
+        rewriteRequired = true
+    }
+  }
+
+  private def addPair(baseSource: File, packageObject: File): Boolean = {
+    val packageObjects = baseSourceToPackageObjects.getOrElse(baseSource, Set.empty)
+    if (packageObjects.contains(packageObject)) false
+    else {
+      baseSourceToPackageObjects.update(baseSource, packageObjects + packageObject)
+      packageObjectToBaseSources.update(packageObject, packageObjectToBaseSources.getOrElse(packageObject, Set.empty) + baseSource)
+      true
+    }
+  }
+
+  private def needsCompaction: Boolean =
+    storedPairs + pendingPairs.size - pairsAfterCompaction > math.max(pairsAfterCompaction, MinPairsToCompact)
+
+  private def ensureLoaded(): Unit = if (!loaded) {
+    loaded = true
+    if (storageFile.exists) {
+      val start = System.currentTimeMillis()
+      try load()
+      catch {
+        case e: Exception =>
+          Log.warn(s"Could not read data about package objects dependencies from $storageFile: \n${e.getMessage}")
+          baseSourceToPackageObjects.clear()
+          packageObjectToBaseSources.clear()
+          rewriteRequired = true
+      }
+      Log.debug(s"Package objects data loaded in ${System.currentTimeMillis() - start} ms, pairs: $storedPairs")
+    } else {
+      //records can be appended only after a header
+      rewriteRequired = true
+    }
   }
 
-  def save(context: CompileContext): Unit = {
-    val file = PackageObjectsData.storageFile(context)
-    PackageObjectsData.synchronized {
-      using(new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) { stream =>
-        stream.writeObject(this)
-        stream.flush()
+  private def load(): Unit = using(new DataInputStream(new BufferedInputStream(new FileInputStream(storageFile)))) { in =>
+    if (in.readInt() != Magic || in.readInt() != Version) {
+      throw new IOException("unknown format")
+    }
+    pairsAfterCompaction = in.readInt()
+
+    val paths = ArrayBuffer[File]()
+    try {
+      var tag = in.read()
+      while (tag != -1) {
+        tag match {
+          case PathTag =>
+            val file = decode(in.readUTF())
+            pathIds.update(file, paths.size)
+            paths += file
+          case PairTag =>
+            val baseSource = paths(in.readInt())
+            val packageObject = paths(in.readInt())
+            addPair(baseSource, packageObject)
+            storedPairs += 1
+          case _ =>
+            throw new IOException(s"unknown record: $tag")
+        }
+        tag = in.read()
       }
+    } catch {
+      //the last build was interrupted while appending, records read before are valid
+      case _: EOFException =>
+        rewriteRequired = true
+    }
+  }
+
+  private def append(): Unit = {
+    using(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storageFile, true)))) { out =>
+      writePairs(out, pendingPairs)
+    }
+    storedPairs += pendingPairs.size
+    pendingPairs.clear()
+  }
+
+  private def rewrite(): Unit = {
+    val start = System.currentTimeMillis()
+
+    val pairs = for {
+      (baseSource, packageObjects) <- baseSourceToPackageObjects.toSeq
+      packageObject <- packageObjects
+    } yield (baseSource, packageObject)
+
+    val (alive, deleted) = pairs.partition {
+      case (baseSource, packageObject) => baseSource.exists && packageObject.exists
+    }
+    deleted.foreach((removePair _).tupled)
+
+    pathIds.clear()
+    FileUtil.createParentDirs(storageFile)
+    using(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storageFile)))) { out =>
+      out.writeInt(Magic)
+      out.writeInt(Version)
+      out.writeInt(alive.size)
+      writePairs(out, alive)
+    }
+
+    storedPairs = alive.size
+    pairsAfterCompaction = alive.size
+    pendingPairs.clear()
+    rewriteRequired = false
+
+    Log.debug(s"Package objects data compacted in ${System.currentTimeMillis() - start} ms, pairs: ${alive.size}, dropped: ${deleted.size}")
+  }
+
+  private def removePair(baseSource: File, packageObject: File): Unit = {
+    def remove(map: mutable.HashMap[File, Set[File]], key: File, value: File): Unit = {
+      val values = map.getOrElse(key, Set.empty) - value
+      if (values.isEmpty) map.remove(key)
+      else map.update(key, values)
+    }
+
+    remove(baseSourceToPackageObjects, baseSource, packageObject)
+    remove(packageObjectToBaseSources, packageObject, baseSource)
+  }
+
+  private def writePairs(out: DataOutputStream, pairs: Seq[(File, File)]): Unit = {
+    def idOf(file: File): Int = pathIds.getOrElse(file, {
+      val id = pathIds.size
+      out.writeByte(PathTag)
+      out.writeUTF(encode(file))
+      pathIds.update(file, id)
+      id
+    })
+
+    pairs.foreach {
+      case (baseSource, packageObject) =>
+        val baseSourceId = idOf(baseSource)
+        val packageObjectId = idOf(packageObject)
+        out.writeByte(PairTag)
+        out.writeInt(baseSourceId)
+        out.writeInt(packageObjectId)
+    }
+  }
+
+  private def encode(file: File): String = projectRoot match {
+    case Some(root) if FileUtil.isAncestor(root, file, true) =>
+      FileUtil.toSystemIndependentName(FileUtil.getRelativePath(root, file))
+    case _ =>
+      FileUtil.toSystemIndependentName(file.getAbsolutePath)
+  }
+
+  private def decode(path: String): File = {
+    val file = new File(FileUtil.toSystemDependentName(path))
+    projectRoot match {
+      case Some(root) if !file.isAbsolute => new File(root, file.getPath)
+      case _ => file
     }
   }
 }
@@ -45,8 +223,18 @@ object PackageObjectsData {
 
   val packageObjectClassName: String = "package$"
 
+  private val Log: JpsLogger = JpsLogger.getInstance(PackageObjectsData.getClass.getName)
+
   private val fileName = "packageObjects.dat"
 
+  private val Magic = 0x504F4244
+  private val Version = 2
+
+  private val PathTag = 1
+  private val PairTag = 2
+
+  private val MinPairsToCompact = 1000
+
   private val instances = mutable.HashMap[File, PackageObjectsData]()
 
   private def storageFile(context: CompileContext): File = {
@@ -54,30 +242,10 @@ object PackageObjectsData {
     new File(storageRoot, fileName)
   }
 
-  def getFor(context: CompileContext): PackageObjectsData = {
-    def warning(message: String) = {
-      context.processMessage(new CompilerMessage("scala", BuildMessage.Kind.WARNING, message))
-    }
+  def getFor(context: CompileContext): PackageObjectsData = synchronized {
+    val file = storageFile(context)
+    def projectRoot = Option(JpsModelSerializationDataService.getBaseDirectory(context.getProjectDescriptor.getProject))
 
-    def tryToReadData(file: File) = {
-      synchronized {
-        try {
-          using(new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) { stream =>
-            stream.readObject().asInstanceOf[PackageObjectsData]
-          }
-        } catch {
-          case e: Exception =>
-            warning(s"Could not read data about package objects dependencies: \n${e.getMessage}")
-            file.delete()
-            new PackageObjectsData()
-        }
-      }
-    }
-
-    def getOrLoadInstance(file: File) = instances.getOrElseUpdate(file, tryToReadData(file))
-
-    Option(storageFile(context))
-      .filter(_.exists)
-      .fold(new PackageObjectsData())(getOrLoadInstance)
+    instances.getOrElseUpdate(file, new PackageObjectsData(file, projectRoot))
   }
-}
\ No newline at end of file
+}
@@ -48,8 +48,6 @@ class SbtCompiler(javaTools: JavaTools, optScalac: Option[ScalaCompiler], fileTo
     val intellijLookup = IntellijExternalLookup(compilationData, client, cacheDetails.isCached)
     val intellijClassfileManager = new IntellijClassfileManager
 
-    DefinesClassCache.invalidateCacheIfRequired(compilationData.zincData.compilationStartDate)
-
     val incOptions = IncOptions.of()
       .withExternalHooks(IntelljExternalHooks(intellijLookup, intellijClassfileManager))
       .withRecompileOnMacroDef(Optional.of(false))
@@ -1,6 +1,7 @@
 package org.jetbrains.jps.incremental.scala.local.worksheet
 
-import java.io.{File, OutputStream}
+import java.io.{File, IOException, OutputStream}
+import java.lang.reflect.Method
 import java.net.{URLClassLoader, URLDecoder}
 import java.util
 
@@ -22,7 +23,9 @@ import xsbti.compile.{ClasspathOptionsUtil, ScalaInstance}
 class ILoopWrapperFactoryHandler {
   import ILoopWrapperFactoryHandler._
   
-  private var replFactory: Option[(Class[_], Any, String)] = None
+  //(factory instance, its run method, scala version), kept between runs so that REPL sessions survive in the factory
+  private var replFactory: Option[(Any, Method, String)] = None
+  private var replFactoryLoader: Option[URLClassLoader] = None
 
   def loadReplWrapperAndRun(commonArguments: Arguments, out: OutputStream, client: Option[Client]) {
     val compilerJars = commonArguments.compilerData.compilerJars.orNull
@@ -33,23 +36,25 @@ class ILoopWrapperFactoryHandler {
     replFactory match {
       case Some((_, _, oldVersion)) if oldVersion == scalaVersion =>
       case _ =>
+        disposeReplFactory()
+
         val loader = createIsolatingClassLoader(getBaseJars(compilerJars))
         val clazz = loader.loadClass(REPL_FQN)
-        replFactory = Option((clazz, clazz.newInstance(), scalaVersion))
+        val m =
+          clazz.getDeclaredMethod(
+            "loadReplWrapperAndRun", 
+            classOf[java.util.List[String]], classOf[String], classOf[File], classOf[File], classOf[java.util.List[File]], 
+            classOf[java.util.List[File]], classOf[java.io.OutputStream], classOf[java.io.File], classOf[Comparable[String]])
+        replFactory = Option((clazz.newInstance(), m, scalaVersion))
+        replFactoryLoader = Option(loader)
     }
 
     client.foreach(_ progress "Running REPL...")
     
     replFactory foreach {
-      case (clazz, instance, _) =>
+      case (instance, m, _) =>
         WorksheetServer.patchSystemOut(out)
 
-        val m =
-          clazz.getDeclaredMethod(
-            "loadReplWrapperAndRun", 
-            classOf[java.util.List[String]], classOf[String], classOf[File], classOf[File], classOf[java.util.List[File]], 
-            classOf[java.util.List[File]], classOf[java.io.OutputStream], classOf[java.io.File], classOf[Comparable[String]])
-        
         withFilteredPath {
           m.invoke(
             instance, scalaToJava(commonArguments.worksheetFiles), commonArguments.compilationData.sources.headOption.map(_.getName).getOrElse(""),
@@ -62,6 +67,26 @@ class ILoopWrapperFactoryHandler {
     }
   }
   
+  //REPL sessions of the previous factory keep its classloader and interpreters alive
+  private def disposeReplFactory(): Unit = {
+    replFactory.foreach {
+      case (instance, _, _) =>
+        try instance.getClass.getMethod("dispose").invoke(instance)
+        catch {
+          case _: ReflectiveOperationException =>
+        }
+    }
+    replFactoryLoader.foreach { loader =>
+      try loader.close()
+      catch {
+        case _: IOException =>
+      }
+    }
+
+    replFactory = None
+    replFactoryLoader = None
+  }
+
   protected def getOrCompileReplLoopFile(sbtData: SbtData, scalaInstance: ScalaInstance, client: Option[Client]): File = {
     val home = sbtData.interfacesHome
     val interfaceJar = sbtData.compilerInterfaceJar
@@ -112,6 +137,9 @@ object ILoopWrapperFactoryHandler {
     "incremental-compiler.jar", "compiler-jps.jar", "hydra-compiler-jps.jar")
 
 
+  //(original class path, filtered class path), class path of the compile server doesn't change between runs
+  @volatile private var filteredPathCache: Option[(String, String)] = None
+
   private def withFilteredPath(action: => Unit) {
     val oldCp = System.getProperty(JAVA_USER_CP_KEY)
 
@@ -120,11 +148,17 @@ object ILoopWrapperFactoryHandler {
       return
     }
 
-    val newCp = oldCp.split(File.pathSeparatorChar).map(
-      new File(_).getAbsoluteFile
-    ).filter {
-      file => file.exists() && !STOP_WORDS.contains(file.getName)
-    }.map(_.getAbsolutePath).mkString(File.pathSeparator)
+    val newCp = filteredPathCache match {
+      case Some((`oldCp`, filtered)) => filtered
+      case _ =>
+        val filtered = oldCp.split(File.pathSeparatorChar).map(
+          new File(_).getAbsoluteFile
+        ).filter {
+          file => file.exists() && !STOP_WORDS.contains(file.getName)
+        }.map(_.getAbsolutePath).mkString(File.pathSeparator)
+        filteredPathCache = Some((oldCp, filtered))
+        filtered
+    }
 
     System.setProperty(JAVA_USER_CP_KEY, newCp)
     
@@ -2,7 +2,7 @@ package org.jetbrains.jps.incremental.scala.local.worksheet
 
 import java.io._
 import java.net.URL
-import java.nio.ByteBuffer
+import java.util.concurrent.{Executors, ScheduledFuture, ThreadFactory, TimeUnit}
 
 import com.intellij.util.Base64Converter
 import com.martiansoftware.nailgun.ThreadLocalPrintStream
@@ -76,37 +76,151 @@ object WorksheetServer {
 
   case class ReplArgs(sessionId: String, codeChunk: String)
   
+  /**
+    * Output lines are coalesced into a single event until the flush interval passes or the chunk becomes too big.
+    * Complete lines are sent by a scheduled flush, so output followed by a long computation isn't held back.
+    * Technical lines (end of a statement, REPL service messages) are sent immediately, so the IDE side
+    * never waits for them.
+    *
+    * Huge outputs are cut here, before they are encoded and sent: too long lines are truncated and lines
+    * of a single statement above [[MAX_STATEMENT_LINES]] are dropped with a note about the count.
+    */
   class MyEncodingOutputStream(delegateOut: PrintStream, standalone: Boolean) extends OutputStream {
-    private var capacity = 1200
-    private var buffer = ByteBuffer.allocate(capacity)
-
-    override def write(b: Int) {
-      if (b == '\r') return
-
-      if (buffer.position() < capacity) buffer.put(b.toByte) else {
-        val copy = buffer.array().clone()
-        capacity *= 2
-        buffer = ByteBuffer.allocate(capacity)
-        buffer put copy
-        buffer put b.toByte
-      }
+    private var buffer = new Array[Byte](INITIAL_CAPACITY)
+    private var size = 0
+    
+    private var lineStart = 0
+    private var lineLength = 0
+    private var lineTruncated = false
+    
+    private var statementLines = 0
+    private var droppedLines = 0
+    private var scheduledFlush: Option[ScheduledFuture[_]] = None
 
-      if (b == '\n') flush()
+    override def write(b: Int): Unit = synchronized {
+      writeByte(b.toByte)
+    }
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = synchronized {
+      var i = off
+      while (i < off + len) {
+        writeByte(b(i))
+        i += 1
+      }
     }
     
     override def close() {
       flush()
     }
 
-    override def flush() {
-      if (buffer.position() == 0) return
-      val event = WorksheetOutputEvent(new String(buffer.array(), 0, buffer.position()))
-      buffer.clear()
+    override def flush(): Unit = synchronized {
+      scheduledFlush.foreach(_.cancel(false))
+      scheduledFlush = None
+      
+      send(size)
+    }
+    
+    //the current line is kept: it may still turn out to be a technical or a dropped one
+    private def flushCompleteLines(): Unit = synchronized {
+      scheduledFlush = None
+      
+      send(lineStart)
+    }
+    
+    private def send(length: Int) {
+      if (length == 0) return
+      
+      val event = WorksheetOutputEvent(new String(buffer, 0, length))
+      val rest = java.util.Arrays.copyOfRange(buffer, length, size)
+      
+      if (buffer.length > MAX_CHUNK_SIZE) buffer = new Array[Byte](INITIAL_CAPACITY)
+      size = 0
+      lineStart -= length
+      rest.foreach(append)
+      
       val encode = Base64Converter.encode(event.toBytes)
       delegateOut.write(if (standalone && !encode.endsWith("=")) (encode + "=").getBytes else encode.getBytes)
     }
+
+    private def writeByte(b: Byte) {
+      if (b == '\r' || lineTruncated && b != '\n') return
+      
+      if (b == '\n') lineEnd() 
+      else if (lineLength >= MAX_LINE_LENGTH) {
+        //don't cut a multi-byte char
+        while (size > lineStart && (buffer(size - 1) & 0xC0) == 0x80) size -= 1
+        if (size > lineStart && (buffer(size - 1) & 0x80) != 0) size -= 1
+        TRUNCATED_LINE_SUFFIX.foreach(append)
+        lineTruncated = true
+      } else {
+        append(b)
+        lineLength += 1
+      }
+    }
+    
+    private def lineEnd() {
+      val isTechnical = TECHNICAL_LINE_PREFIXES.exists(lineStartsWith)
+      
+      if (isTechnical) {
+        if (droppedLines > 0) {
+          val line = java.util.Arrays.copyOfRange(buffer, lineStart, size)
+          size = lineStart
+          s"... $droppedLines more lines are not shown\n".getBytes.foreach(append)
+          line.foreach(append)
+        }
+        statementLines = 0
+        droppedLines = 0
+      } else {
+        statementLines += 1
+      }
+      
+      lineLength = 0
+      lineTruncated = false
+      
+      if (statementLines > MAX_STATEMENT_LINES) {
+        size = lineStart
+        droppedLines += 1
+        return
+      }
+      
+      append('\n'.toByte)
+      lineStart = size
+      
+      if (isTechnical || size >= MAX_CHUNK_SIZE) flush() 
+      else if (scheduledFlush.isEmpty) 
+        scheduledFlush = Some(FLUSH_SCHEDULER.schedule(new Runnable {
+          override def run(): Unit = flushCompleteLines()
+        }, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS))
+    }
+    
+    private def lineStartsWith(prefix: Array[Byte]): Boolean = 
+      size - lineStart >= prefix.length && prefix.indices.forall(i => buffer(lineStart + i) == prefix(i))
+
+    private def append(b: Byte) {
+      if (size == buffer.length) buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2)
+      buffer(size) = b
+      size += 1
+    }
   }
   
+  private val INITIAL_CAPACITY = 1200
+  private val MAX_CHUNK_SIZE = 64 * 1024
+  private val MAX_LINE_LENGTH = 16 * 1024
+  private val MAX_STATEMENT_LINES = 10000
+  private val FLUSH_INTERVAL_MS = 50
+  
+  private lazy val FLUSH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+    override def newThread(r: Runnable): Thread = {
+      val thread = new Thread(r, "Worksheet output flush")
+      thread.setDaemon(true)
+      thread
+    }
+  })
+  
+  private val TRUNCATED_LINE_SUFFIX = " ...".getBytes
+  //end of statement, end of output and REPL service messages
+  private val TECHNICAL_LINE_PREFIXES = Seq("###worksheet###", "$$worksheet$$").map(_.getBytes)
+  
   class MyUpdatePrintWriter(stream: OutputStream) extends PrintWriter(stream) {
     private var curHash = stream.hashCode()
     
@@ -1,10 +1,10 @@
 package org.jetbrains.jps.incremental.scala.local.worksheet.compatibility;
 
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.incremental.scala.local.worksheet.ILoopWrapper;
 import org.jetbrains.jps.incremental.scala.local.worksheet.WorksheetServer;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
@@ -14,6 +14,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -32,11 +33,19 @@ public class JavaILoopWrapperFactory {
 
   //maximum count of repl sessions handled at any time 
   private final static int REPL_SESSION_LIMIT = 5;
+  //session of a worksheet that wasn't run for this time is discarded with its classloader on the next run of any worksheet
+  private final static long REPL_SESSION_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
   private final static Map<String, Consumer<ILoopWrapper>> commands = 
       Collections.singletonMap(":reset", ILoopWrapper::reset);
   
   private final MySimpleCache cache = new MySimpleCache(REPL_SESSION_LIMIT);
-  
+
+  /**
+   * Discards all REPL sessions, called when the factory is replaced, e.g. for another Scala version.
+   */
+  public void dispose() {
+    cache.discardAll();
+  }
   
   public void loadReplWrapperAndRun(
       List<String> worksheetArgsString, String nameForSt, 
@@ -58,13 +67,21 @@ public class JavaILoopWrapperFactory {
 
     onProgress.accept("Retrieving REPL instance...");
    
-    ILoopWrapper inst = cache.getOrCreate(
+    ReplSession session = cache.getOrCreate(
         replArgs.getSessionId(),
-        () -> createILoopWrapper(worksheetArgs, iLoopFile, new WorksheetServer.MyUpdatePrintWriter(outStream)),
-        ILoopWrapper::shutdown
+        () -> createReplSession(worksheetArgs, iLoopFile, new WorksheetServer.MyUpdatePrintWriter(outStream))
     );
-    if (inst == null) return;
-    
+    if (session == null) return;
+
+    try {
+      runChunks(session, replArgs, outStream, onProgress);
+    } finally {
+      cache.release(replArgs.getSessionId());
+    }
+  }
+
+  private void runChunks(ReplSession session, ReplArgsJava replArgs, OutputStream outStream, Consumer<String> onProgress) {
+    ILoopWrapper inst = session.wrapper;
     PrintWriter out = inst.getOutputWriter();
     if (out instanceof WorksheetServer.MyUpdatePrintWriter) ((WorksheetServer.MyUpdatePrintWriter) out).updateOut(outStream);
 
@@ -73,8 +90,8 @@ public class JavaILoopWrapperFactory {
     out.flush();
     
     String code = new String(Base64.getDecoder().decode(replArgs.getCodeChunk()), StandardCharsets.UTF_8);
-    String[] statements = code.split(Pattern.quote("\n$\n$\n"));
-    
+    List<String> statements = Arrays.asList(code.split(Pattern.quote("\n$\n$\n")));
+
     for (String statement : statements) {
       if (statement.startsWith(":")) {
         Consumer<ILoopWrapper> action = commands.get(statement);
@@ -99,7 +116,7 @@ public class JavaILoopWrapperFactory {
     out.flush();
   }
   
-  private ILoopWrapper createILoopWrapper(WorksheetArgsJava worksheetArgs, File iLoopFile, PrintWriter out) {
+  private ReplSession createReplSession(WorksheetArgsJava worksheetArgs, File iLoopFile, PrintWriter out) {
     URLClassLoader loader;
     Class<?> clazz;
     
@@ -132,113 +149,127 @@ public class JavaILoopWrapperFactory {
     try {
       ILoopWrapper inst = (ILoopWrapper) clazz.getConstructor(PrintWriter.class, List.class).newInstance(out, stringCp);
       inst.init();
-      return inst;
+      return new ReplSession(inst, loader);
     } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+      try {
+        loader.close();
+      } catch (IOException ignored) {
+      }
       return null;
     }
   }
   
   
+  /**
+   * Keeps REPL sessions (interpreter state together with its classloader) per worksheet file.
+   * Least recently used session which is not in use is discarded when the limit is reached, sessions idle for longer than
+   * {@link #REPL_SESSION_IDLE_TIMEOUT_MS} are discarded on next access.
+   */
   private static class MySimpleCache {
     private final int limit;
-    private final ReplSessionComparator comparator;
-    private final PriorityQueue<ReplSession> sessionsQueue;
+    private final LinkedHashMap<String, ReplSession> sessions;
     
     MySimpleCache(int limit) {
       this.limit = limit;
-      this.comparator = new ReplSessionComparator();
-      this.sessionsQueue = new PriorityQueue<>(limit);
+      this.sessions = new LinkedHashMap<>(limit, 0.75f, true);
     }
-    
-    ILoopWrapper getOrCreate(String id, Supplier<ILoopWrapper> onCreation, Consumer<ILoopWrapper> onDiscard) {
-      ReplSession existing = findById(id);
+
+    synchronized ReplSession getOrCreate(String id, Supplier<ReplSession> onCreation) {
+      evictIdle();
+      
+      ReplSession existing = id == null ? null : sessions.get(id);
       
       if (existing != null) {
-        comparator.inc(id);
-        return existing.wrapper;
+        existing.acquire();
+        return existing;
       }
       
-      if (sessionsQueue.size() >= limit) {
-        ReplSession anOldSession = sessionsQueue.poll();
+      trimToSize(limit - 1);
+      
+      ReplSession newSession = onCreation.get();
+      if (newSession == null) return null;
+      
+      newSession.acquire();
+      sessions.put(id, newSession);
+      return newSession;
+    }
+    
+    //sessions which are evaluating are never discarded, the limit may be exceeded until they are released
+    private void trimToSize(int size) {
+      Iterator<ReplSession> iterator = sessions.values().iterator();
+      
+      while (sessions.size() > size && iterator.hasNext()) {
+        ReplSession session = iterator.next();
         
-        if (anOldSession != null) {
-          onDiscard.accept(anOldSession.wrapper);
-          comparator.remove(anOldSession.id);
+        if (!session.inUse) {
+          iterator.remove();
+          session.discard();
         }
       }
-      
-      ReplSession newSession = new ReplSession(id, onCreation.get());
-
-      comparator.put(id);
-      sessionsQueue.offer(newSession);
-
-      return newSession.wrapper;
     }
     
-    private ReplSession findById(String id) {
-      if (id == null) return null;
-      for (ReplSession s : sessionsQueue) {
-        if (s != null && id.equals(s.id)) return s;
-      }
+    synchronized void release(String id) {
+      ReplSession session = id == null ? null : sessions.get(id);
+      if (session != null) session.release();
       
-      return null;
+      trimToSize(limit);
     }
     
-    private class ReplSessionComparator implements Comparator<ReplSession> {
-      private final HashMap<String, Integer> storage = new HashMap<>();
-
-      private void inc(String id) {
-        storage.compute(id, (k, v) -> (v == null) ? null : v + 1);
-      }
-
-      private void dec(String id) {
-        storage.compute(id, (k, v) -> (v == null) ? null : v - 1);
-      }
-
-      private void put(String id) {
-        storage.put(id, 10);
+    synchronized void evictIdle() {
+      long now = System.currentTimeMillis();
+      Iterator<ReplSession> iterator = sessions.values().iterator();
+      
+      while (iterator.hasNext()) {
+        ReplSession session = iterator.next();
+        
+        if (!session.inUse && now - session.lastAccess > REPL_SESSION_IDLE_TIMEOUT_MS) {
+          iterator.remove();
+          session.discard();
+        }
       }
+    }
 
-      private void remove(String id) {
-        storage.remove(id);
+    synchronized void discardAll() {
+      for (ReplSession session : sessions.values()) {
+        session.discard();
       }
+      sessions.clear();
+    }
+  }
 
-      @Override
-      public int compare(ReplSession x, ReplSession y) {
-        if (x == null) {
-          return y == null ? 0 : 1;
-        }
-
-        if (y == null) return -1;
-
-        if (!storage.containsKey(x.id)) return 1;
-        if (!storage.containsKey(y.id)) return -1;
+  private static class ReplSession {
+    final ILoopWrapper wrapper;
+    final URLClassLoader loader;
+    long lastAccess;
+    boolean inUse;
 
-        return (int) storage.get(y.id) - storage.get(x.id);
-      }
+    private ReplSession(ILoopWrapper wrapper, URLClassLoader loader) {
+      this.wrapper = wrapper;
+      this.loader = loader;
+      this.lastAccess = System.currentTimeMillis();
+    }
 
-      @Override
-      public boolean equals(Object obj) {
-        return this == obj;
-      }
+    void acquire() {
+      inUse = true;
+      lastAccess = System.currentTimeMillis();
     }
 
-    private class ReplSession implements Comparable<ReplSession> {
-      final String id;
-      final ILoopWrapper wrapper;
+    void release() {
+      inUse = false;
+      lastAccess = System.currentTimeMillis();
+    }
 
-      private ReplSession(String id, ILoopWrapper wrapper) {
-        this.id = id;
-        this.wrapper = wrapper;
+    void discard() {
+      try {
+        wrapper.shutdown();
+      } catch (Exception ignored) {
+        //session is being discarded anyway
       }
 
-      @Override
-      public int compareTo(@NotNull ReplSession o) {
-        return MySimpleCache.this.comparator.compare(this, o);
+      try {
+        loader.close();
+      } catch (IOException ignored) {
       }
-    }    
-    
+    }
   }
-  
-
 }
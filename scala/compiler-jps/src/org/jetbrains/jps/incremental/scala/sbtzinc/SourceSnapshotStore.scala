@@ -0,0 +1,188 @@
+package org.jetbrains.jps.incremental.scala.sbtzinc
+
+import java.io.{File, IOException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption._
+import java.nio.file._
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.jps.builders.DirtyFilesHolder
+import org.jetbrains.jps.builders.java.JavaSourceRootDescriptor
+import org.jetbrains.jps.incremental.{CompileContext, ModuleBuildTarget}
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.Try
+
+/**
+  * Compilable files of build targets, kept between builds to avoid walking all source roots on each build.
+  *
+  * Snapshot of a target is updated with dirty and removed files reported by JPS.
+  * Timestamp of each root is stored after an update, a root is scanned again when its timestamp has changed.
+  */
+object SourceSnapshotStore {
+  private val cacheDir = "sbt-sources-cache"
+  private val targetCacheFileSuffix = "_sources.txt"
+
+  private val Version = "version 1"
+  private val RootPrefix = "root\t"
+
+  private class RootSnapshot(var timestamp: Long, val files: mutable.LinkedHashSet[String])
+
+  private type Snapshot = mutable.LinkedHashMap[String, RootSnapshot]
+
+  private type Holder = DirtyFilesHolder[JavaSourceRootDescriptor, ModuleBuildTarget]
+
+  /**
+    * Applies changes of the target files to its snapshot, if the snapshot exists.
+    * Should be called on each build of the target, otherwise the snapshot would miss the changes.
+    */
+  def update(context: CompileContext, target: ModuleBuildTarget, dirtyFilesHolder: Holder): Unit = {
+    val cacheFile = cacheFileFor(context, target)
+    if (!Files.exists(cacheFile)) return
+
+    val excludeIndex = context.getProjectDescriptor.getModuleExcludeIndex
+    val dirtyFiles = mutable.ArrayBuffer.empty[(String, String)]
+
+    dirtyFilesHolder.processDirtyFiles((dirtyTarget, file, root) => {
+      if (dirtyTarget == target && isCompilable(file) && !excludeIndex.isExcluded(file)) {
+        dirtyFiles += ((root.getRootFile.getPath, file.getPath))
+      }
+      true
+    })
+
+    val removedFiles = dirtyFilesHolder.getRemovedFiles(target).asScala.map(FileUtil.toSystemDependentName).toSeq
+
+    update(cacheFile, dirtyFiles, removedFiles)
+  }
+
+  /**
+    * @param dirtyFiles   paths of dirty compilable files with paths of their roots
+    * @param removedFiles paths of removed files
+    */
+  private[sbtzinc] def update(cacheFile: Path, dirtyFiles: Seq[(String, String)], removedFiles: Seq[String]): Unit = {
+    val snapshot = read(cacheFile).getOrElse(return)
+
+    var changed = false
+
+    dirtyFiles.foreach { case (root, file) =>
+      snapshot.get(root).foreach { rootSnapshot =>
+        changed |= rootSnapshot.files.add(file)
+      }
+    }
+
+    removedFiles.foreach { path =>
+      snapshot.valuesIterator.foreach { rootSnapshot =>
+        changed |= rootSnapshot.files.remove(path)
+      }
+    }
+
+    if (changed) {
+      snapshot.foreach {
+        case (root, rootSnapshot) => rootSnapshot.timestamp = new File(root).lastModified()
+      }
+      write(cacheFile, snapshot)
+    }
+  }
+
+  /**
+    * Scala and Java files in the source roots of the target.
+    */
+  def compilableFiles(context: CompileContext, target: ModuleBuildTarget): Seq[File] = {
+    val rootIndex = context.getProjectDescriptor.getBuildRootIndex
+    val roots = rootIndex.getTargetRoots(target, context).asScala.map(_.getRootFile).toSeq
+    val excludeIndex = context.getProjectDescriptor.getModuleExcludeIndex
+
+    compilableFiles(cacheFileFor(context, target), roots, excludeIndex.isExcluded)
+  }
+
+  private[sbtzinc] def compilableFiles(cacheFile: Path, roots: Seq[File], isExcluded: File => Boolean): Seq[File] = {
+    val snapshot = read(cacheFile).getOrElse(mutable.LinkedHashMap.empty[String, RootSnapshot])
+    val rootPaths = roots.map(_.getPath).toSet
+
+    var changed = false
+
+    snapshot.keys.filterNot(rootPaths.contains).toList.foreach { removedRoot =>
+      snapshot.remove(removedRoot)
+      changed = true
+    }
+
+    roots.foreach { root =>
+      val timestamp = root.lastModified()
+      val upToDate = snapshot.get(root.getPath).exists(_.timestamp == timestamp)
+      if (!upToDate) {
+        snapshot.update(root.getPath, new RootSnapshot(timestamp, scan(root, isExcluded)))
+        changed = true
+      }
+    }
+
+    if (changed) write(cacheFile, snapshot)
+
+    roots.flatMap(root => snapshot(root.getPath).files.iterator.map(new File(_)))
+  }
+
+  private def isCompilable(file: File): Boolean = {
+    val fileName = file.getName
+    fileName.endsWith(".scala") || fileName.endsWith(".java")
+  }
+
+  private def scan(root: File, isExcluded: File => Boolean): mutable.LinkedHashSet[String] = {
+    val result = mutable.LinkedHashSet.empty[String]
+
+    FileUtil.processFilesRecursively(root, file => {
+      if (!isExcluded(file) && isCompilable(file)) {
+        result += file.getPath
+      }
+      true
+    })
+    result
+  }
+
+  private def cacheFileFor(context: CompileContext, target: ModuleBuildTarget): Path = {
+    val dataPath = context.getProjectDescriptor.dataManager.getDataPaths.getTargetsDataRoot.toPath
+    val fileName = FileUtil.sanitizeFileName(target.getTargetType.getTypeId + "_" + target.getId) + targetCacheFileSuffix
+    dataPath.resolve(cacheDir).resolve(fileName)
+  }
+
+  /**
+    * @return None if there is no snapshot or it can't be read, all roots of the target are scanned then
+    */
+  private def read(cacheFile: Path): Option[Snapshot] = {
+    if (!Files.exists(cacheFile)) return None
+
+    val lines = try Files.readAllLines(cacheFile, StandardCharsets.UTF_8).asScala catch {
+      case _: IOException => return None
+    }
+    if (lines.headOption.contains(Version)) {
+      val snapshot = mutable.LinkedHashMap.empty[String, RootSnapshot]
+      var current: RootSnapshot = null
+
+      lines.iterator.drop(1).foreach {
+        case line if line.startsWith(RootPrefix) =>
+          val (path, timestamp) = parseRoot(line).getOrElse(return None)
+          current = new RootSnapshot(timestamp, mutable.LinkedHashSet.empty)
+          snapshot.update(path, current)
+        case line if current != null =>
+          current.files += line
+        case _ =>
+      }
+      Some(snapshot)
+    } else None
+  }
+
+  private def parseRoot(line: String): Option[(String, Long)] = line.split("\t", -1) match {
+    case Array(_, path, timestamp) => Try(timestamp.toLong).toOption.map((path, _))
+    case _ => None
+  }
+
+  private def write(cacheFile: Path, snapshot: Snapshot): Unit = {
+    if (!Files.exists(cacheFile.getParent)) {
+      Files.createDirectories(cacheFile.getParent)
+    }
+
+    val lines = Iterator(Version) ++ snapshot.iterator.flatMap {
+      case (root, rootSnapshot) => Iterator(RootPrefix + root + "\t" + rootSnapshot.timestamp) ++ rootSnapshot.files.iterator
+    }
+    Files.write(cacheFile, lines.toIterable.asJava, StandardCharsets.UTF_8, WRITE, TRUNCATE_EXISTING, CREATE)
+  }
+}
@@ -0,0 +1,183 @@
+package org.jetbrains.jps.incremental.scala
+package local
+
+import java.io.{File, FileOutputStream}
+import java.util.zip.{ZipEntry, ZipOutputStream}
+
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+class DefinesClassCacheTest {
+
+  private var root: File = _
+  private var storeDirectory: File = _
+
+  @Before
+  def setUp(): Unit = {
+    root = FileUtil.createTempDirectory("definesClassCache", null)
+    storeDirectory = new File(root, "store")
+  }
+
+  @After
+  def tearDown(): Unit = FileUtil.delete(root)
+
+  private def newCache(maxClassCount: Long = 100): DefinesClassCache = {
+    val cache = new DefinesClassCache(maxClassCount)
+    cache.storeIn(storeDirectory)
+    cache
+  }
+
+  private def jar(name: String, classes: String*): File = {
+    val file = new File(root, name)
+    val lastModified = if (file.exists()) file.lastModified() else -1L
+
+    using(new ZipOutputStream(new FileOutputStream(file))) { zip =>
+      zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"))
+      zip.closeEntry()
+      classes.foreach { className =>
+        zip.putNextEntry(new ZipEntry(className.replace('.', '/') + ".class"))
+        zip.closeEntry()
+      }
+    }
+    //the stamp of a rewritten jar has to differ even on file systems with coarse timestamps
+    if (lastModified >= 0) file.setLastModified(lastModified + 2000)
+    file
+  }
+
+  private def storeFileOf(cache: DefinesClassCache, jar: File): File =
+    cache.storeFile(jar.getAbsolutePath).get
+
+  @Test
+  def classesOfJarAreFound(): Unit = {
+    val cache = newCache()
+    val a = jar("a.jar", "a.A", "a.B")
+
+    val definesClass = cache.definesClassFor(a)
+    assertTrue(definesClass("a.A"))
+    assertTrue(definesClass("a.B"))
+    assertFalse(definesClass("a.C"))
+    assertFalse(definesClass("META-INF.MANIFEST"))
+
+    assertTrue(cache.isCached(a))
+    assertEquals(2, cache.cachedClassCount)
+    assertTrue(storeFileOf(cache, a).exists())
+  }
+
+  @Test
+  def classesOfDirectoryAreFound(): Unit = {
+    val cache = newCache()
+    val directory = new File(root, "classes")
+    FileUtil.writeToFile(new File(directory, "a/A.class"), "")
+
+    assertTrue(cache.definesClassFor(directory)("a.A"))
+    assertFalse(cache.definesClassFor(directory)("a.B"))
+    assertEquals(0, cache.cachedClassCount)
+  }
+
+  @Test
+  def rewrittenJarIsReadAgain(): Unit = {
+    val cache = newCache()
+    val a = jar("a.jar", "a.A")
+    assertTrue(cache.definesClassFor(a)("a.A"))
+
+    jar("a.jar", "a.B", "a.C")
+
+    val definesClass = cache.definesClassFor(a)
+    assertFalse(definesClass("a.A"))
+    assertTrue(definesClass("a.B"))
+    assertEquals(2, cache.cachedClassCount)
+  }
+
+  @Test
+  def storedTableIsUsedAfterRestart(): Unit = {
+    val a = jar("a.jar", "a.A")
+    newCache().definesClassFor(a)("a.A")
+
+    //the jar is not readable anymore, but its stamp is the same
+    val stamp = (a.length(), a.lastModified())
+    FileUtil.writeToFile(a, new Array[Byte](a.length().toInt))
+    a.setLastModified(stamp._2)
+    assertEquals(stamp, (a.length(), a.lastModified()))
+
+    assertTrue(newCache().definesClassFor(a)("a.A"))
+  }
+
+  @Test
+  def outdatedStoredTableIsReplaced(): Unit = {
+    val a = jar("a.jar", "a.A")
+    val first = newCache()
+    first.definesClassFor(a)("a.A")
+    val storeFile = storeFileOf(first, a)
+    val storedText = FileUtil.loadFile(storeFile)
+
+    jar("a.jar", "a.B")
+
+    val second = newCache()
+    assertTrue(second.definesClassFor(a)("a.B"))
+    assertNotEquals(storedText, FileUtil.loadFile(storeFile))
+  }
+
+  @Test
+  def unreadableJarIsNotCached(): Unit = {
+    val cache = newCache()
+    val broken = new File(root, "broken.jar")
+    FileUtil.writeToFile(broken, "not a zip")
+
+    assertFalse(cache.definesClassFor(broken)("a.A"))
+    assertFalse(cache.isCached(broken))
+    assertEquals(0, cache.cachedClassCount)
+  }
+
+  @Test
+  def leastRecentlyUsedTableIsEvicted(): Unit = {
+    val cache = newCache(maxClassCount = 5)
+    val a = jar("a.jar", "a.A", "a.B")
+    val b = jar("b.jar", "b.A", "b.B")
+    val c = jar("c.jar", "c.A", "c.B")
+
+    cache.definesClassFor(a)("a.A")
+    cache.definesClassFor(b)("b.A")
+    //a is used again, so b becomes the least recently used one
+    cache.definesClassFor(a)("a.A")
+    cache.definesClassFor(c)("c.A")
+
+    assertTrue(cache.isCached(a))
+    assertFalse(cache.isCached(b))
+    assertTrue(cache.isCached(c))
+    assertEquals(4, cache.cachedClassCount)
+
+    assertTrue(storeFileOf(cache, a).exists())
+    assertFalse(storeFileOf(cache, b).exists())
+    assertTrue(storeFileOf(cache, c).exists())
+  }
+
+  @Test
+  def tableAboveLimitIsKept(): Unit = {
+    val cache = newCache(maxClassCount = 2)
+    val a = jar("a.jar", "a.A")
+    val b = jar("b.jar", "b.A", "b.B", "b.C")
+
+    cache.definesClassFor(a)("a.A")
+    assertTrue(cache.definesClassFor(b)("b.C"))
+
+    assertFalse(cache.isCached(a))
+    assertTrue(cache.isCached(b))
+    assertEquals(3, cache.cachedClassCount)
+  }
+
+  @Test
+  def countOfReplacedTableIsSubtracted(): Unit = {
+    val cache = newCache()
+    val a = jar("a.jar", "a.A", "a.B", "a.C")
+    val b = jar("b.jar", "b.A")
+
+    cache.definesClassFor(a)("a.A")
+    cache.definesClassFor(b)("b.A")
+    assertEquals(4, cache.cachedClassCount)
+
+    jar("a.jar", "a.D")
+    cache.definesClassFor(a)("a.D")
+    assertEquals(2, cache.cachedClassCount)
+  }
+}
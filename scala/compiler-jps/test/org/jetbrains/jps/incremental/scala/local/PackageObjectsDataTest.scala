@@ -0,0 +1,83 @@
+package org.jetbrains.jps.incremental.scala
+package local
+
+import java.io.File
+
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+class PackageObjectsDataTest {
+
+  private var root: File = _
+  private var storageFile: File = _
+
+  @Before
+  def setUp(): Unit = {
+    root = FileUtil.createTempDirectory("packageObjectsData", null)
+    storageFile = new File(root, "data/packageObjects.dat")
+  }
+
+  @After
+  def tearDown(): Unit = FileUtil.delete(root)
+
+  private def source(name: String): File = {
+    val file = new File(root, s"src/$name.scala")
+    FileUtil.writeToFile(file, "")
+    file
+  }
+
+  private def newData() = new PackageObjectsData(storageFile, Some(root))
+
+  @Test
+  def firstSaveWritesHeader(): Unit = {
+    val base = source("Base")
+    val packageObject = source("package")
+
+    val data = newData()
+    data.add(base, packageObject)
+    data.save(null)
+
+    assertEquals(Set(packageObject), newData().invalidatedPackageObjects(Seq(base)))
+  }
+
+  @Test
+  def appendAfterReload(): Unit = {
+    val base1 = source("Base1")
+    val base2 = source("Base2")
+    val packageObject1 = source("package1")
+    val packageObject2 = source("package2")
+
+    val data = newData()
+    data.add(base1, packageObject1)
+    data.save(null)
+
+    val reloaded = newData()
+    assertEquals(Set(packageObject1), reloaded.invalidatedPackageObjects(Seq(base1)))
+
+    val lengthBeforeAppend = storageFile.length()
+    reloaded.add(base1, packageObject2)
+    reloaded.add(base2, packageObject2)
+    reloaded.save(null)
+    assertTrue("pairs should be appended", storageFile.length() > lengthBeforeAppend)
+
+    val reloadedAgain = newData()
+    assertEquals(Set(packageObject1, packageObject2), reloadedAgain.invalidatedPackageObjects(Seq(base1)))
+    assertEquals(Set(packageObject2), reloadedAgain.invalidatedPackageObjects(Seq(base2)))
+  }
+
+  @Test
+  def corruptFileIsRewritten(): Unit = {
+    val base = source("Base")
+    val packageObject = source("package")
+
+    FileUtil.writeToFile(storageFile, "corrupt")
+
+    val data = newData()
+    assertEquals(Set.empty, data.invalidatedPackageObjects(Seq(base)))
+    data.add(base, packageObject)
+    data.save(null)
+
+    assertEquals(Set(packageObject), newData().invalidatedPackageObjects(Seq(base)))
+  }
+}
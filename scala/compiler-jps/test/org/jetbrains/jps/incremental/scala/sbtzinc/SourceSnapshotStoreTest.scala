@@ -0,0 +1,155 @@
+package org.jetbrains.jps.incremental.scala
+package sbtzinc
+
+import java.io.File
+import java.nio.file.{Files, Path}
+
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+class SourceSnapshotStoreTest {
+
+  private var root: File = _
+  private var sourceRoot: File = _
+  private var cacheFile: Path = _
+
+  @Before
+  def setUp(): Unit = {
+    root = FileUtil.createTempDirectory("sourceSnapshotStore", null)
+    sourceRoot = new File(root, "src")
+    cacheFile = new File(root, "cache/target_sources.txt").toPath
+    //files are added to the package, so that the timestamp of the source root is not changed
+    assertTrue(new File(sourceRoot, "pkg").mkdirs())
+  }
+
+  @After
+  def tearDown(): Unit = FileUtil.delete(root)
+
+  private def source(name: String): File = {
+    val file = new File(sourceRoot, s"pkg/$name")
+    FileUtil.writeToFile(file, "")
+    file
+  }
+
+  private def compilableFiles(isExcluded: File => Boolean = _ => false): Seq[String] =
+    SourceSnapshotStore.compilableFiles(cacheFile, Seq(sourceRoot), isExcluded).map(_.getName).sorted
+
+  private def update(dirty: Seq[File] = Seq.empty, removed: Seq[File] = Seq.empty): Unit =
+    SourceSnapshotStore.update(cacheFile, dirty.map(file => (sourceRoot.getPath, file.getPath)), removed.map(_.getPath))
+
+  @Test
+  def scanOnFirstBuild(): Unit = {
+    source("A.scala")
+    source("B.java")
+    source("readme.txt")
+
+    assertEquals(Seq("A.scala", "B.java"), compilableFiles())
+    assertTrue(Files.exists(cacheFile))
+  }
+
+  @Test
+  def excludedFilesAreSkipped(): Unit = {
+    source("A.scala")
+    source("Excluded.scala")
+
+    assertEquals(Seq("A.scala"), compilableFiles(_.getName.startsWith("Excluded")))
+  }
+
+  @Test
+  def updateAddsDirtyFiles(): Unit = {
+    source("A.scala")
+    compilableFiles()
+
+    val b = source("B.scala")
+    //not reported as dirty, so it's not found without a scan
+    source("C.scala")
+    update(dirty = Seq(b))
+
+    assertEquals(Seq("A.scala", "B.scala"), compilableFiles())
+  }
+
+  @Test
+  def updateDropsRemovedFiles(): Unit = {
+    val a = source("A.scala")
+    source("B.scala")
+    compilableFiles()
+
+    FileUtil.delete(a)
+    update(removed = Seq(a))
+
+    assertEquals(Seq("B.scala"), compilableFiles())
+  }
+
+  @Test
+  def updateWithoutSnapshotDoesNothing(): Unit = {
+    update(dirty = Seq(source("A.scala")))
+
+    assertFalse(Files.exists(cacheFile))
+  }
+
+  @Test
+  def rootIsRescannedWhenItsTimestampChanges(): Unit = {
+    source("A.scala")
+    compilableFiles()
+
+    source("B.scala")
+    assertEquals(Seq("A.scala"), compilableFiles())
+
+    assertTrue(sourceRoot.setLastModified(sourceRoot.lastModified() + 10000))
+    assertEquals(Seq("A.scala", "B.scala"), compilableFiles())
+  }
+
+  @Test
+  def removedRootIsDropped(): Unit = {
+    source("A.scala")
+    compilableFiles()
+
+    val otherRoot = new File(root, "other")
+    assertEquals(Seq.empty, SourceSnapshotStore.compilableFiles(cacheFile, Seq(otherRoot), _ => false))
+
+    val text = FileUtil.loadFile(cacheFile.toFile)
+    assertFalse(text.contains(sourceRoot.getPath))
+  }
+
+  @Test
+  def corruptSnapshotIsDiscarded(): Unit = {
+    source("A.scala")
+    writeCache(
+      "version 1",
+      s"root\t${sourceRoot.getPath}\tnot a timestamp",
+      new File(sourceRoot, "pkg/Stale.scala").getPath
+    )
+
+    update(dirty = Seq(source("B.scala")))
+    assertEquals(Seq("A.scala", "B.scala"), compilableFiles())
+  }
+
+  @Test
+  def truncatedRootLineIsDiscarded(): Unit = {
+    source("A.scala")
+    writeCache(
+      "version 1",
+      s"root\t${sourceRoot.getPath}",
+      new File(sourceRoot, "pkg/Stale.scala").getPath
+    )
+
+    assertEquals(Seq("A.scala"), compilableFiles())
+  }
+
+  @Test
+  def snapshotOfOtherVersionIsDiscarded(): Unit = {
+    source("A.scala")
+    writeCache(
+      "version 0",
+      s"root\t${sourceRoot.getPath}\t${sourceRoot.lastModified()}",
+      new File(sourceRoot, "pkg/Stale.scala").getPath
+    )
+
+    assertEquals(Seq("A.scala"), compilableFiles())
+    assertTrue(FileUtil.loadFile(cacheFile.toFile).startsWith("version 1"))
+  }
+
+  private def writeCache(lines: String*): Unit =
+    FileUtil.writeToFile(cacheFile.toFile, lines.mkString("\n"))
+}
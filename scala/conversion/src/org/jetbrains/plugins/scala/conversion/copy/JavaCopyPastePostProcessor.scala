@@ -11,14 +11,11 @@ import com.intellij.openapi.project.{DumbService, Project}
 import com.intellij.openapi.util.{Ref, TextRange}
 import com.intellij.psi._
 import com.intellij.psi.codeStyle.CodeStyleManager
-import org.jetbrains.plugins.scala.conversion.ast.{LiteralExpression, MainConstruction, TypedElement}
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
 import org.jetbrains.plugins.scala.lang.refactoring._
 import org.jetbrains.plugins.scala.settings._
 
-import scala.collection.mutable
-
 /**
   * User: Alexander Podkhalyuzin
   * Date: 30.11.2009
@@ -54,36 +51,15 @@ class JavaCopyPastePostProcessor extends SingularCopyPastePostProcessor[Converte
             }
         }
 
-      import JavaToScala._
-      val associationsHelper = mutable.ListBuffer.empty[AssociationHelper]
-      val resultNode = new MainConstruction
       val (topElements, dropElements) = getTopElements(file, startOffsets, endOffsets)
-      for (part <- topElements) {
-        part match {
-          case TextPart(s) =>
-            resultNode.addChild(LiteralExpression(s))
-          case ElementPart(comment: PsiComment) =>
-            if (!dropElements.contains(comment))
-              resultNode.addChild(LiteralExpression(comment.getText))
-            dropElements.add(comment)
-          case ElementPart(element) =>
-            val result = convertPsiToIntermediate(element, null)(associationsHelper, data, dropElements, textMode = false)
-            resultNode.addChild(result)
-        }
-      }
-
-      val visitor = visitors.PrintWithComments(resultNode)
-
-      val updatedAssociations = associationsHelper.collect {
-        case AssociationHelper(itype: TypedElement, path) => Association(path, visitor(itype.getType))
-      } ++ associationsHelper.collect {
-        case AssociationHelper(itype, path) => Association(path, visitor(itype))
+      val (text, associations) = JavaPartsConverter.convert(topElements, data, dropElements)(file.getProject) match {
+        case Some(converted) => converted
+        case _ => return None
       }
 
-      val text = visitor()
       val oldText = getTextBetweenOffsets(file, startOffsets, endOffsets)
       val result = ConvertedCode(
-        updatedAssociations.toArray,
+        associations.toArray,
         text,
         compareTextNEq(oldText, text)
       )
@@ -0,0 +1,162 @@
+package org.jetbrains.plugins.scala
+package conversion
+package copy
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.intellij.codeInsight.editorActions.ReferenceData
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.progress.{ProcessCanceledException, ProgressManager}
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.{Key, TextRange, ThrowableComputable}
+import com.intellij.psi.util.{CachedValueProvider, CachedValuesManager, PsiModificationTracker}
+import com.intellij.psi.{PsiComment, PsiElement, PsiFile}
+import org.jetbrains.plugins.scala.conversion.ConverterUtil.{ElementPart, Part, TextPart}
+import org.jetbrains.plugins.scala.conversion.JavaToScala.AssociationHelper
+import org.jetbrains.plugins.scala.conversion.ast.{MainConstruction, TypedElement}
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.dependency.Path
+import org.jetbrains.plugins.scala.lang.refactoring.Association
+
+import scala.collection.mutable
+
+/**
+  * Converts top-level parts of a java selection one by one, checking for cancellation between them.
+  * When invoked from EDT, conversion runs in a read action under a modal cancellable progress.
+  *
+  * Printed text of converted parts is kept in the java file until the next PSI change,
+  * so copying the same or an overlapping selection again doesn't convert its members anew.
+  */
+object JavaPartsConverter {
+
+  private case class PartKey(range: TextRange, textHash: Int, droppedOffsets: Seq[Int])
+
+  /**
+    * @param typedAssociations ranges of types of typed elements, relative to the start of the text
+    * @param otherAssociations ranges of other elements, relative to the start of the text
+    */
+  private case class ConvertedPart(text: String,
+                                   typedAssociations: Seq[(Path, TextRange)],
+                                   otherAssociations: Seq[(Path, TextRange)],
+                                   usedComments: Set[PsiElement])
+
+  private val cacheKey = Key.create[ConcurrentHashMap[PartKey, ConvertedPart]]("scala.java.converted.parts")
+
+  /**
+    * @return converted text and associations, `None` if conversion is cancelled by user
+    */
+  def convert(parts: Seq[Part], references: Seq[ReferenceData], dropElements: mutable.HashSet[PsiElement])
+             (implicit project: Project): Option[(String, Seq[Association])] = {
+    def doConvert() = inReadAction {
+      convertParts(parts, references, dropElements)
+    }
+
+    val application = ApplicationManager.getApplication
+    if (application.isUnitTestMode || !application.isDispatchThread) Some(doConvert())
+    else try {
+      val result = ProgressManager.getInstance.runProcessWithProgressSynchronously(
+        new ThrowableComputable[(String, Seq[Association]), Exception] {
+          override def compute(): (String, Seq[Association]) = doConvert()
+        },
+        ScalaConversionBundle.message("scala.copy.converting"),
+        true,
+        project
+      )
+      Some(result)
+    } catch {
+      case _: ProcessCanceledException => None
+    }
+  }
+
+  private def convertParts(parts: Seq[Part], references: Seq[ReferenceData], dropElements: mutable.HashSet[PsiElement]): (String, Seq[Association]) = {
+    val indicator = ProgressManager.getInstance.getProgressIndicator
+    if (indicator != null) indicator.setIndeterminate(false)
+
+    val text = new StringBuilder
+    val typedAssociations = mutable.ListBuffer.empty[Association]
+    val otherAssociations = mutable.ListBuffer.empty[Association]
+
+    def shifted(associations: Seq[(Path, TextRange)], offset: Int) = associations.map {
+      //elements which are not printed keep the empty range at the start
+      case (path, range) if range.isEmpty && range.getStartOffset == 0 => Association(path, range)
+      case (path, range) => Association(path, range.shiftRight(offset))
+    }
+
+    for ((part, index) <- parts.zipWithIndex) {
+      ProgressManager.checkCanceled()
+      if (indicator != null) indicator.setFraction(index.toDouble / parts.size)
+
+      part match {
+        case TextPart(s) =>
+          text.append(s)
+        case ElementPart(comment: PsiComment) =>
+          if (!dropElements.contains(comment))
+            text.append(comment.getText)
+          dropElements.add(comment)
+        case ElementPart(element) =>
+          val converted = convertElement(element, references, dropElements)
+          typedAssociations ++= shifted(converted.typedAssociations, text.length)
+          otherAssociations ++= shifted(converted.otherAssociations, text.length)
+          text.append(converted.text)
+          dropElements ++= converted.usedComments
+      }
+    }
+
+    (text.result(), typedAssociations ++ otherAssociations)
+  }
+
+  private def convertElement(element: PsiElement,
+                             references: Seq[ReferenceData],
+                             dropElements: mutable.HashSet[PsiElement]): ConvertedPart = {
+    val range = element.getTextRange
+    //the same element is converted differently if some of its comments are already printed
+    val droppedOffsets = dropElements.toSeq
+      .map(_.getTextRange)
+      .filter(range.contains)
+      .map(_.getStartOffset)
+      .sorted
+    val key = PartKey(range, element.getText.hashCode, droppedOffsets)
+
+    cacheFor(element.getContainingFile) match {
+      case null => convertElement(element, references, dropElements, key)
+      case cache =>
+        cache.get(key) match {
+          case null =>
+            val converted = convertElement(element, references, dropElements, key)
+            cache.put(key, converted)
+            converted
+          case converted => converted
+        }
+    }
+  }
+
+  //nodes are printed right away, so cached parts share neither nodes nor associations between conversions
+  private def convertElement(element: PsiElement,
+                             references: Seq[ReferenceData],
+                             dropElements: mutable.HashSet[PsiElement],
+                             key: PartKey): ConvertedPart = {
+    val usedBefore = dropElements.toSet
+    val associationsHelper = mutable.ListBuffer.empty[AssociationHelper]
+    val node = JavaToScala.convertPsiToIntermediate(element, null)(associationsHelper, references, dropElements, textMode = false)
+
+    val resultNode = new MainConstruction
+    resultNode.addChild(node)
+    val visitor = visitors.PrintWithComments(resultNode)
+
+    val typedAssociations = associationsHelper.toList.collect {
+      case AssociationHelper(itype: TypedElement, path) => (path, visitor(itype.getType))
+    }
+    val otherAssociations = associationsHelper.toList.collect {
+      case AssociationHelper(itype, path) => (path, visitor(itype))
+    }
+
+    ConvertedPart(visitor(), typedAssociations, otherAssociations, dropElements.toSet -- usedBefore)
+  }
+
+  private def cacheFor(file: PsiFile): ConcurrentHashMap[PartKey, ConvertedPart] =
+    if (file == null) null
+    else CachedValuesManager.getCachedValue(file, cacheKey, new CachedValueProvider[ConcurrentHashMap[PartKey, ConvertedPart]] {
+      override def compute(): CachedValueProvider.Result[ConcurrentHashMap[PartKey, ConvertedPart]] =
+        CachedValueProvider.Result.create(new ConcurrentHashMap[PartKey, ConvertedPart](), PsiModificationTracker.MODIFICATION_COUNT)
+    })
+}
@@ -55,18 +55,12 @@ object Cached {
         val mapAndCounterRef = generateTermName(name.toString, "$mapAndCounter")
         val timestampedDataRef = generateTermName(name.toString,  "$valueAndCounter")
 
-        val analyzeCaches = analyzeCachesEnabled(c)
-        val defdefFQN = thisFunctionFQN(name.toString)
 
         //DefDef parameters
         val flatParams = paramss.flatten
         val paramNames = flatParams.map(_.name)
         val hasParameters: Boolean = flatParams.nonEmpty
 
-        val analyzeCachesField =
-          if(analyzeCaches) q"private val $cacheStatsName = $cacheStatisticsFQN($keyId, $defdefFQN)"
-          else EmptyTree
-
         val actualCalculation = transformRhsToAnalyzeCaches(c)(cacheStatsName, retTp, rhs)
 
         val currModCount = q"val currModCount = $modTracker.getModificationCount()"
@@ -81,14 +75,13 @@ object Cached {
               new _root_.scala.volatile()
               private val $mapAndCounterRef: $atomicReferenceTypeFQN[$timestampedTypeFQN[$mapType]] =
                 new $atomicReferenceTypeFQN($timestampedFQN(null, -1L))
-
-              ..$analyzeCachesField
            """
 
           val getOrUpdateMapDef = q"""
               def getOrUpdateMap() = {
                 val timestampedMap = $mapAndCounterRef.get
                 if (timestampedMap.modCount < currModCount) {
+                  if (timestampedMap.modCount != -1L) $cacheStatsName.cacheInvalidated()
                   $mapAndCounterRef.compareAndSet(timestampedMap, $timestampedFQN($createNewMap, currModCount))
                 }
                 $mapAndCounterRef.get.data
@@ -96,6 +89,9 @@ object Cached {
             """
 
           def updatedRhs = q"""
+             val $cacheStatsName = ${cacheStatistics(keyId, name.toString)}
+             $cacheStatsName.aboutToEnterCachedArea()
+
              def $cachedFunName(): $retTp = {
                $actualCalculation
              }
@@ -130,8 +126,6 @@ object Cached {
               new _root_.scala.volatile()
               private val $timestampedDataRef: $atomicReferenceTypeFQN[$timestampedTypeFQN[$retTp]] =
                 new $atomicReferenceTypeFQN($timestampedFQN(${defaultValue(c)(retTp)}, -1L))
-
-            ..$analyzeCachesField
           """
 
           val getOrUpdateValue =
@@ -139,6 +133,7 @@ object Cached {
                val timestamped = $timestampedDataRef.get
                if (timestamped.modCount == currModCount) timestamped.data
                else {
+                 if (timestamped.modCount != -1L) $cacheStatsName.cacheInvalidated()
                  val stackStamp = $recursionManagerFQN.markStack()
 
                  val computed = $cachedFunName()
@@ -153,6 +148,9 @@ object Cached {
 
           val updatedRhs =
             q"""
+               val $cacheStatsName = ${cacheStatistics(keyId, name.toString)}
+               $cacheStatsName.aboutToEnterCachedArea()
+
                def $cachedFunName(): $retTp = {
                  $actualCalculation
                }
@@ -52,8 +52,6 @@ object CachedInUserData {
         //generated names
         val keyId = c.freshName(name.toString + "cacheKey")
         val cacheStatsName = generateTermName(name.toString, "cacheStats")
-        val analyzeCaches = CachedMacroUtil.analyzeCachesEnabled(c)
-        val defdefFQN = q"""getClass.getName ++ "." ++ ${name.toString}"""
         val elemName = generateTermName(name.toString, "element")
         val dataName = generateTermName(name.toString, "data")
         val keyVarName = generateTermName(name.toString, "key")
@@ -64,9 +62,9 @@ object CachedInUserData {
         val dataValue = if (hasParams) q"(..$parameterNames)" else q"()"
         val getOrCreateCachedHolder =
           if (hasParams)
-            q"$cachesUtilFQN.getOrCreateCachedMap[$elemName.type, $dataType, $resultType]($elemName, $keyVarName, () => $modTracker)"
+            q"$cachesUtilFQN.getOrCreateCachedMap[$elemName.type, $dataType, $resultType]($elemName, $keyVarName, () => $modTracker, $cacheStatsName)"
           else
-            q"$cachesUtilFQN.getOrCreateCachedRef[$elemName.type, $resultType]($elemName, $keyVarName, () => $modTracker)"
+            q"$cachesUtilFQN.getOrCreateCachedRef[$elemName.type, $resultType]($elemName, $keyVarName, () => $modTracker, $cacheStatsName)"
 
         val getFromHolder =
           if (hasParams) q"$holderName.get($dataName)"
@@ -81,15 +79,13 @@ object CachedInUserData {
           transformRhsToAnalyzeCaches(c)(cacheStatsName, retTp, rhs)
         }
 
-        val analyzeCachesEnterCacheArea =
-          if (analyzeCaches) q"$cacheStatsName.aboutToEnterCachedArea()"
-          else EmptyTree
-
         val computation = if (hasReturnStatements(c)(actualCalculation)) q"$cachedFunName()" else q"$actualCalculation"
 
         val updatedRhs = q"""
+          val $cacheStatsName = ${cacheStatistics(keyId, name.toString)}
+          $cacheStatsName.aboutToEnterCachedArea()
+
           def $cachedFunName(): $retTp = $actualCalculation
-          ..$analyzeCachesEnterCacheArea
 
           val $dataName = $dataValue
           val $keyVarName = ${getOrCreateKey(c, hasParams)(q"$keyId", dataType, resultType)}
@@ -111,8 +107,6 @@ object CachedInUserData {
           """
         val updatedDef = DefDef(mods, name, tpParams, paramss, retTp, updatedRhs)
         val res = q"""
-          ${if (analyzeCaches) q"private val $cacheStatsName = $cacheStatisticsFQN($keyId, $defdefFQN)" else EmptyTree}
-
           ..$updatedDef
           """
         println(res)
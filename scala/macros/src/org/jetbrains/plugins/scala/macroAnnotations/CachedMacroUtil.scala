@@ -10,7 +10,8 @@ import scala.reflect.macros.whitebox
   */
 object CachedMacroUtil {
   val debug: Boolean = false
-  //to analyze caches pass in the following compiler flag: "-Xmacro-settings:analyze-caches"
+  //hits, misses and calculation times are always collected, see CacheStatistics
+  //to analyze caches in more detail pass in the following compiler flag: "-Xmacro-settings:analyze-caches"
   val ANALYZE_CACHES: String = "analyze-caches"
 
   def println(a: Any): Unit = {
@@ -101,6 +102,17 @@ object CachedMacroUtil {
   }
 
 
+  /**
+    * Statistics of a cache are always collected. They are kept in a static registry by the key id,
+    * like keys of user data caches, so that no fields are added to instances of the annotated classes.
+    * Name is known at compile time: file and function name.
+    */
+  def cacheStatistics(keyId: String, name: String)(implicit c: whitebox.Context): c.universe.Tree = {
+    import c.universe.Quasiquote
+    val fileName = c.enclosingPosition.source.file.name.stripSuffix(".scala")
+    q"$cacheStatisticsFQN($keyId, ${s"$fileName.$name"})"
+  }
+
   def thisFunctionFQN(name: String)(implicit c: whitebox.Context): c.universe.Tree = {
     import c.universe.Quasiquote
     q"""getClass.getName ++ "." ++ $name"""
@@ -135,9 +147,11 @@ object CachedMacroUtil {
       """
     } else
       q"""
+          val startTime = $cacheStatsName.recalculationStarted()
           val res = {
             $rhs
           }
+          $cacheStatsName.recalculationFinished(startTime)
           res.asInstanceOf[$retTp]
        """
   }
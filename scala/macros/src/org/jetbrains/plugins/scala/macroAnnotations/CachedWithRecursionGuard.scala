@@ -54,8 +54,6 @@ object CachedWithRecursionGuard {
         //generated names
         val keyId = c.freshName(name.toString + "cacheKey")
         val cacheStatsName = generateTermName(name.toString, "cacheStats")
-        val analyzeCaches = CachedMacroUtil.analyzeCachesEnabled(c)
-        val defdefFQN = q"""getClass.getName ++ "." ++ ${name.toString}"""
         val computedValue = generateTermName(name.toString, "computedValue")
         val guard = generateTermName(name.toString, "guard")
         val defValueName = generateTermName(name.toString, "defaultValue")
@@ -69,9 +67,9 @@ object CachedWithRecursionGuard {
         val dataValue = if (hasParams) q"(..$parameterNames)" else q"()"
         val getOrCreateCachedHolder =
           if (hasParams)
-            q"$cachesUtilFQN.getOrCreateCachedMap[$elementType, $dataType, $resultType]($elemName, $keyVarName, () => $modTracker)"
+            q"$cachesUtilFQN.getOrCreateCachedMap[$elementType, $dataType, $resultType]($elemName, $keyVarName, () => $modTracker, $cacheStatsName)"
           else
-            q"$cachesUtilFQN.getOrCreateCachedRef[$elementType, $resultType]($elemName, $keyVarName, () => $modTracker)"
+            q"$cachesUtilFQN.getOrCreateCachedRef[$elementType, $resultType]($elemName, $keyVarName, () => $modTracker, $cacheStatsName)"
 
         val getFromHolder =
           if (hasParams) q"$holderName.get($dataName)"
@@ -95,7 +93,8 @@ object CachedWithRecursionGuard {
         val calculationWithAllTheChecks = doPreventingRecursion(c)(withProbablyRecursiveException, guard, dataForGuardName, retTp)
 
         val updatedRhs = q"""
-          ${if (analyzeCaches) q"$cacheStatsName.aboutToEnterCachedArea()" else EmptyTree}
+          val $cacheStatsName = ${cacheStatistics(keyId, name.toString)}
+          $cacheStatsName.aboutToEnterCachedArea()
 
           val $elemName = $element
           val $dataName = $dataValue
@@ -123,8 +122,6 @@ object CachedWithRecursionGuard {
           """
         val updatedDef = DefDef(mods, name, tpParams, paramss, retTp, updatedRhs)
         val res = q"""
-          ${if (analyzeCaches) q"private val $cacheStatsName = $cacheStatisticsFQN($keyId, $defdefFQN)" else EmptyTree}
-
           ..$updatedDef
           """
         println(res)
@@ -31,8 +31,6 @@ object CachedWithoutModificationCount {
     import c.universe._
     implicit val x: c.type = c
 
-    val analyzeCaches = analyzeCachesEnabled(c)
-
     def parameters: (Boolean, ValueWrapper, List[Tree]) = {
       @tailrec
       def valueWrapperParam(valueWrapper: Tree): ValueWrapper = valueWrapper match {
@@ -68,16 +66,12 @@ object CachedWithoutModificationCount {
         val cachedFunName = generateTermName(name.toString, "$cachedFun")
         val cacheStatsName = generateTermName(name.toString, "cacheStats")
         val keyId = c.freshName(name.toString + "cacheKey")
-        val defdefFQN = thisFunctionFQN(name.toString)
 
         //DefDef parameters
         val flatParams = paramss.flatten
         val paramNames = flatParams.map(_.name)
         val hasParameters: Boolean = flatParams.nonEmpty
 
-        val analyzeCachesField =
-          if (analyzeCaches) q"private val $cacheStatsName = $cacheStatisticsFQN($keyId, $defdefFQN)"
-          else EmptyTree
         val wrappedRetTp: Tree = valueWrapper match {
           case ValueWrapper.None => retTp
           case ValueWrapper.WeakReference => tq"_root_.java.lang.ref.WeakReference[$retTp]"
@@ -91,14 +85,12 @@ object CachedWithoutModificationCount {
         val fields = if (hasParameters) {
           q"""
             private val $mapName = new java.util.concurrent.ConcurrentHashMap[(..${flatParams.map(_.tpt)}), $wrappedRetTp]()
-            ..$analyzeCachesField
             ..$addToBuffers
           """
         } else {
           q"""
             new _root_.scala.volatile()
             private var $cacheVarName: $wrappedRetTp = null.asInstanceOf[$wrappedRetTp]
-            ..$analyzeCachesField
           """
         }
 
@@ -129,7 +121,7 @@ object CachedWithoutModificationCount {
 
         val functionContents =
           q"""
-            ${if (analyzeCaches) q"$cacheStatsName.aboutToEnterCachedArea()" else EmptyTree}
+            $cacheStatsName.aboutToEnterCachedArea()
             ..${if (hasParameters) getValuesFromMap else EmptyTree}
             val cacheHasExpired = $hasCacheExpired
             if (cacheHasExpired) {
@@ -165,6 +157,8 @@ object CachedWithoutModificationCount {
         val actualCalculation = transformRhsToAnalyzeCaches(c)(cacheStatsName, retTp, rhs)
         val updatedRhs =
           q"""
+          val $cacheStatsName = ${cacheStatistics(keyId, name.toString)}
+
           def $cachedFunName(): $retTp = {
             $actualCalculation
           }
@@ -19,7 +19,7 @@ import static org.jetbrains.plugins.scala.testingSupport.TestRunnerUtil.escapeSt
 import static org.jetbrains.plugins.scala.testingSupport.TestRunnerUtil.formatTimestamp;
 
 /**
- * Reporter for sequential execution of scalaTest test suites. Do not use it with -P key (parallel execution of suites).
+ * Reporter for scalaTest test suites, events of suites executed in parallel (-P key) are ordered by {@link ParallelTreeBuilder}.
  * @author Alexander Podkhalyuzin
  */
 public class ScalaTestReporterWithLocation implements Reporter {
@@ -162,7 +162,13 @@ public class ScalaTestReporterWithLocation implements Reporter {
                     " captureStandardOutput='true'";
             treeBuilder.openSuite(message, suiteStarting);
         } else if (event instanceof SuiteCompleted) {
-            String suiteName = ((SuiteCompleted) event).suiteName();
+            SuiteCompleted suiteCompleted = (SuiteCompleted) event;
+            Option<String> suiteClassName = suiteCompleted.suiteClassName();
+            Option<Object> duration = suiteCompleted.duration();
+            if (suiteClassName instanceof Some && duration instanceof Some) {
+                SuiteDurations.record(suiteClassName.get(), (Long) duration.get());
+            }
+            String suiteName = suiteCompleted.suiteName();
             String message = "testSuiteFinished name='" + escapeString(suiteName) + "'";
             treeBuilder.closeSuite(message, (SuiteCompleted) event);
         } else if (event instanceof SuiteAborted) {
@@ -8,6 +8,7 @@ import scala.Option;
 import scala.Some$;
 import scala.collection.immutable.Map;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -55,6 +56,9 @@ public class ScalaTestRunner {
     boolean showProgressMessages = true;
     boolean useVersionFromOptions = false;
     boolean isOlderScalaVersionFromOptions = false;
+    boolean locationReporterUsed = false;
+    int parallelSuites = -1;
+    File durationsFile = null;
     int i = 0;
     String[] newArgs  = TestRunnerUtil.getNewArgs(args);
     while (i < newArgs.length) {
@@ -74,6 +78,15 @@ public class ScalaTestRunner {
         ++i;
         showProgressMessages = Boolean.parseBoolean(newArgs[i]);
         ++i;
+      } else if (newArgs[i].equals("-parallelSuites")) {
+        ++i;
+        parallelSuites = Integer.parseInt(newArgs[i]);
+        if (parallelSuites == 0) parallelSuites = Runtime.getRuntime().availableProcessors();
+        ++i;
+      } else if (newArgs[i].equals("-suiteDurations")) {
+        ++i;
+        durationsFile = new File(newArgs[i]);
+        ++i;
       } else if (newArgs[i].equals("-failedTests")) {
         failedUsed = true;
         ++i;
@@ -92,12 +105,11 @@ public class ScalaTestRunner {
         isOlderScalaVersionFromOptions = isOlderScalaVersionFromOptions(newArgs[i]);
         ++i;
       } else if (newArgs[i].equals("-C")) {
-        if (useVersionFromOptions) {
-          argsArray.add(isOlderScalaVersionFromOptions ? "-r" : newArgs[i]);
-        } else {
-          argsArray.add(isOlderScalaTestVersion() ? "-r" : newArgs[i]);
-        }
+        boolean isOlder = useVersionFromOptions ? isOlderScalaVersionFromOptions : isOlderScalaTestVersion();
+        argsArray.add(isOlder ? "-r" : newArgs[i]);
         if (i + 1 < newArgs.length) argsArray.add(newArgs[i + 1].equals(reporterQualName) ? newArgs[i + 1] + "WithLocation" : newArgs[i + 1]);
+        // only the reporter of newer ScalaTest versions tells apart events of the interleaved suites
+        locationReporterUsed = !isOlder && i + 1 < newArgs.length && newArgs[i + 1].equals(reporterQualName);
         i += 2;
       } else {
         argsArray.add(newArgs[i]);
@@ -105,6 +117,15 @@ public class ScalaTestRunner {
       }
     }
 
+    // suites are distributed by ScalaTest between threads in the order of -s arguments,
+    // events of the interleaved suites are put into the tree by ParallelTreeBuilder
+    boolean parallel = parallelSuites > 0 && locationReporterUsed && classesToTests.size() > 1;
+    if (parallel) {
+      argsArray.add("-P" + parallelSuites);
+    }
+    java.util.Map<String, Long> previousDurations = durationsFile != null ?
+        SuiteDurations.load(durationsFile) : Collections.<String, Long>emptyMap();
+
     TestRunnerUtil.configureReporter(reporterQualName, showProgressMessages);
     if (failedUsed) {
       // TODO: How to support -s -i -t here, to support rerunning nested suite's test.
@@ -118,7 +139,11 @@ public class ScalaTestRunner {
       }
 
     } else {
-      for (String className : classesToTests.keySet()) {
+      Collection<String> classes = classesToTests.keySet();
+      if (parallel && durationsFile != null) {
+        classes = SuiteDurations.longestFirst(classes, previousDurations);
+      }
+      for (String className : classes) {
         argsArray.add("-s");
         argsArray.add(className);
         for (String test: classesToTests.get(className)) {
@@ -129,6 +154,10 @@ public class ScalaTestRunner {
 
     }
     Runner.run(argsArray.toArray(new String[argsArray.size()]));
+
+    if (durationsFile != null) {
+      SuiteDurations.save(durationsFile, previousDurations);
+    }
   }
 
   private static void runScalaTest1(String[] args) throws ClassNotFoundException, IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException, IOException {
@@ -0,0 +1,88 @@
+package org.jetbrains.plugins.scala.testingSupport.scalaTest;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.jetbrains.plugins.scala.testingSupport.TestRunnerUtil.escapeString;
+
+/**
+ * Durations of suites recorded by the reporter. They are kept between runs to start the longest suites first
+ * when suites are executed in parallel, so that threads finish at about the same time.
+ */
+public class SuiteDurations {
+  private static final ConcurrentHashMap<String, Long> recorded = new ConcurrentHashMap<String, Long>();
+
+  public static void record(String suiteClassName, long duration) {
+    recorded.put(suiteClassName, duration);
+  }
+
+  public static Map<String, Long> load(File file) {
+    HashMap<String, Long> result = new HashMap<String, Long>();
+    if (!file.exists()) return result;
+
+    Properties properties = new Properties();
+    try {
+      InputStream stream = new FileInputStream(file);
+      try {
+        properties.load(stream);
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      return result;
+    }
+
+    for (String className : properties.stringPropertyNames()) {
+      try {
+        result.put(className, Long.parseLong(properties.getProperty(className)));
+      } catch (NumberFormatException ignore) {
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Durations of the suites which were not run this time are kept.
+   */
+  public static void save(File file, Map<String, Long> previous) {
+    Properties properties = new Properties();
+    for (Map.Entry<String, Long> entry : previous.entrySet()) {
+      properties.setProperty(entry.getKey(), entry.getValue().toString());
+    }
+    for (Map.Entry<String, Long> entry : recorded.entrySet()) {
+      properties.setProperty(entry.getKey(), entry.getValue().toString());
+    }
+
+    try {
+      OutputStream stream = new FileOutputStream(file);
+      try {
+        properties.store(stream, "ScalaTest suite durations, ms");
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      String message = escapeString("Cannot save suite durations to " + file + ": " + e.getMessage());
+      System.out.println("\n##teamcity[message text='" + message + "' status='ERROR'" + "]");
+    }
+  }
+
+  /**
+   * Suites without a recorded duration go first, they may be the longest ones.
+   */
+  public static List<String> longestFirst(Collection<String> classes, final Map<String, Long> durations) {
+    ArrayList<String> result = new ArrayList<String>(classes);
+    Collections.sort(result, new Comparator<String>() {
+      @Override
+      public int compare(String first, String second) {
+        return Long.compare(durationOf(second), durationOf(first));
+      }
+
+      private long durationOf(String className) {
+        Long duration = durations.get(className);
+        return duration == null ? Long.MAX_VALUE : duration;
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,59 @@
+package org.jetbrains.plugins.scala.actions
+
+import com.intellij.openapi.actionSystem.{AnAction, AnActionEvent, CommonDataKeys}
+import com.intellij.openapi.progress.{ProgressIndicator, ProgressManager, Task}
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.{VfsUtilCore, VirtualFile, VirtualFileVisitor}
+import com.intellij.psi.PsiManager
+import org.jetbrains.plugins.scala.editor.importOptimizer.ScalaBatchImportOptimizer
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+
+import scala.collection.mutable
+
+/**
+  * Optimizes imports of all Scala files in the selected files and directories with [[ScalaBatchImportOptimizer]].
+  */
+class OptimizeImportsInScalaFilesAction extends AnAction("Optimize Imports in Scala Files") {
+
+  override def update(e: AnActionEvent): Unit = {
+    val enabled = e.getProject != null && selectedFiles(e).nonEmpty
+    e.getPresentation.setEnabledAndVisible(enabled)
+  }
+
+  def actionPerformed(e: AnActionEvent) {
+    implicit val project: Project = e.getProject
+    if (project == null) return
+
+    val roots = selectedFiles(e)
+    if (roots.isEmpty) return
+
+    ProgressManager.getInstance().run(new Task.Backgroundable(project, "Optimizing imports", true) {
+      override def run(indicator: ProgressIndicator): Unit = {
+        val files = inReadAction(scalaFiles(roots))
+        ScalaBatchImportOptimizer.optimize(files, indicator)
+      }
+    })
+  }
+
+  private def selectedFiles(e: AnActionEvent): Seq[VirtualFile] =
+    Option(CommonDataKeys.VIRTUAL_FILE_ARRAY.getData(e.getDataContext)).toSeq.flatten
+
+  private def scalaFiles(roots: Seq[VirtualFile])(implicit project: Project): Seq[ScalaFile] = {
+    val psiManager = PsiManager.getInstance(project)
+    val result = mutable.ArrayBuffer.empty[ScalaFile]
+
+    roots.foreach { root =>
+      VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor[Unit]() {
+        override def visitFile(file: VirtualFile): Boolean = {
+          if (!file.isDirectory) psiManager.findFile(file) match {
+            case scalaFile: ScalaFile if !scalaFile.isCompiled && scalaFile.isWritable => result += scalaFile
+            case _ =>
+          }
+          true
+        }
+      })
+    }
+    result.distinct
+  }
+}
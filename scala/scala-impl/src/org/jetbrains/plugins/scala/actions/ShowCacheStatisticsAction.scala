@@ -0,0 +1,28 @@
+package org.jetbrains.plugins.scala.actions
+
+import com.intellij.openapi.actionSystem._
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.project.Project
+import com.intellij.testFramework.LightVirtualFile
+import org.jetbrains.plugins.scala.statistics.CacheStatistics
+
+/**
+  * Internal action: opens a report of cached functions, ranked by time spent in their calculations.
+  */
+class ShowCacheStatisticsAction extends AnAction("Show Scala Cache Statistics") {
+  def actionPerformed(e: AnActionEvent) {
+    val report = CacheStatistics.report()
+    ShowCacheStatisticsAction.LOG.info(report)
+
+    CommonDataKeys.PROJECT.getData(e.getDataContext) match {
+      case project: Project =>
+        FileEditorManager.getInstance(project).openFile(new LightVirtualFile("scala-cache-statistics.txt", report), true)
+      case _ =>
+    }
+  }
+}
+
+object ShowCacheStatisticsAction {
+  private val LOG = Logger.getInstance(classOf[ShowCacheStatisticsAction])
+}
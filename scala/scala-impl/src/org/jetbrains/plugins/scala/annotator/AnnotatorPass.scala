@@ -0,0 +1,94 @@
+package org.jetbrains.plugins.scala
+package annotator
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import com.intellij.openapi.progress.ProgressManager
+import org.jetbrains.plugins.scala.lang.psi.api.base.ScReference
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScExpression
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScExpression.ExpressionTypeResult
+import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
+import org.jetbrains.plugins.scala.util.UIFreezingGuard
+
+/**
+  * Resolve results and expression types computed during one highlighting pass of a file.
+  *
+  * The same references and expressions are checked by several annotators, e.g. by overriding,
+  * reference and function annotators. Within a pass PSI doesn't change, so results are memoised
+  * here without looking up modification counts of the enclosing elements.
+  */
+final class AnnotatorPass {
+
+  private val resolveResults = new ConcurrentHashMap[ScReference, Array[ScalaResolveResult]]()
+  private val typesAfterImplicitConversion = new ConcurrentHashMap[ScExpression, ExpressionTypeResult]()
+
+  private val hits = new LongAdder
+  private val misses = new LongAdder
+
+  def multiResolve(reference: ScReference): Array[ScalaResolveResult] =
+    memoised(resolveResults, reference)(reference.multiResolveScala(false))
+
+  /**
+    * Same as [[ScReference.bind]]: resolve on EDT is limited by [[UIFreezingGuard.resolveTimeoutMs]].
+    * Result of a resolve which timed out is not memoised.
+    */
+  def bind(reference: ScReference): Option[ScalaResolveResult] = {
+    ProgressManager.checkCanceled()
+    val timeoutMs = UIFreezingGuard.resolveTimeoutMs
+
+    val results =
+      if (timeoutMs < 0) multiResolve(reference)
+      else UIFreezingGuard.withTimeout(timeoutMs, multiResolve(reference), ScalaResolveResult.EMPTY_ARRAY)(reference.getProject)
+
+    results match {
+      case Array(result) => Some(result)
+      case _ => None
+    }
+  }
+
+  def typeAfterImplicitConversion(expression: ScExpression): ExpressionTypeResult =
+    memoised(typesAfterImplicitConversion, expression)(expression.getTypeAfterImplicitConversion())
+
+  def statistics: String = s"${hits.sum} hits, ${misses.sum} misses"
+
+  private def memoised[K, V <: AnyRef](map: ConcurrentHashMap[K, V], key: K)(compute: => V): V =
+    map.get(key) match {
+      case null =>
+        misses.increment()
+        val value = compute
+        map.putIfAbsent(key, value)
+        value
+      case value =>
+        hits.increment()
+        value
+    }
+}
+
+object AnnotatorPass {
+
+  private val current = new ThreadLocal[AnnotatorPass]
+
+  /** Runs the body with the pass available to annotators on the current thread. */
+  def runWith[T](pass: AnnotatorPass)(body: => T): T = {
+    val previous = current.get
+    current.set(pass)
+    try body
+    finally current.set(previous)
+  }
+
+  def multiResolve(reference: ScReference): Array[ScalaResolveResult] = current.get match {
+    case null => reference.multiResolveScala(false)
+    case pass => pass.multiResolve(reference)
+  }
+
+  def bind(reference: ScReference): Option[ScalaResolveResult] = current.get match {
+    case null => reference.bind()
+    case pass => pass.bind(reference)
+  }
+
+  def typeAfterImplicitConversion(expression: ScExpression): ExpressionTypeResult = current.get match {
+    case null => expression.getTypeAfterImplicitConversion()
+    case pass => pass.typeAfterImplicitConversion(expression)
+  }
+}
@@ -33,7 +33,7 @@ object AnnotatorUtils {
   def checkConformance(expression: ScExpression, typeElement: ScTypeElement, holder: AnnotationHolder) {
     implicit val ctx: ProjectContext = expression
 
-    expression.getTypeAfterImplicitConversion().tr.foreach {actual =>
+    AnnotatorPass.typeAfterImplicitConversion(expression).tr.foreach {actual =>
       val expected = typeElement.calcType
       if (!actual.conforms(expected)) {
         val expr = expression match {
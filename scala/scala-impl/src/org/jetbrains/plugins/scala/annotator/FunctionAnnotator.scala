@@ -145,7 +145,7 @@ trait FunctionAnnotator {
     case returnStmt: ScReturn => (returnStmt.expr, Unit)
     case _ => (Some(element), Any)
   }) match {
-    case (Some(expression: ScExpression), _) => expression.getTypeAfterImplicitConversion().tr
+    case (Some(expression: ScExpression), _) => AnnotatorPass.typeAfterImplicitConversion(expression).tr
     case (_, default) => Right(default)
   }
 }
@@ -83,7 +83,7 @@ abstract class ScalaAnnotator protected()(implicit val project: Project) extends
         }
 
         if (isAdvancedHighlightingEnabled(element)) {
-          expr.getTypeAfterImplicitConversion() match {
+          AnnotatorPass.typeAfterImplicitConversion(expr) match {
             case ExpressionTypeResult(Right(t), _, Some(implicitFunction)) =>
               highlightImplicitView(expr, implicitFunction.element, t, expr, holder)
             case _ =>
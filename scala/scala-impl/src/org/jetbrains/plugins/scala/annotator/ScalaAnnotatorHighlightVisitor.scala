@@ -1,11 +1,22 @@
 package org.jetbrains.plugins.scala
 package annotator
 
+import java.util.concurrent.ConcurrentHashMap
+
 import com.intellij.codeInsight.daemon.impl._
 import com.intellij.codeInsight.daemon.impl.analysis.{HighlightInfoHolder, HighlightingLevelManager}
+import com.intellij.concurrency.JobLauncher
+import com.intellij.lang.annotation.Annotation
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.{DumbService, Project}
+import com.intellij.openapi.util.registry.Registry
 import com.intellij.psi._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScTypeDefinition
+
+import scala.collection.JavaConverters._
 
 /**
  * User: Alexander Podkhalyuzin
@@ -13,7 +24,8 @@ import com.intellij.psi._
  */
 final class ScalaAnnotatorHighlightVisitor(project: Project) extends HighlightVisitor {
 
-  import extensions.PsiFileExt
+  import ScalaAnnotatorHighlightVisitor._
+  import extensions.{PsiElementExt, PsiFileExt}
   import usageTracker.ScalaRefCountHolder
 
   override def order: Int = 0
@@ -21,6 +33,9 @@ final class ScalaAnnotatorHighlightVisitor(project: Project) extends HighlightVi
   private var myHolder: HighlightInfoHolder = _
   private var myRefCountHolder: ScalaRefCountHolder = _
   private var myAnnotationHolder: AnnotationHolderImpl = _
+  private var myPass: AnnotatorPass = _
+  //annotations of elements of top-level members, computed concurrently before the pass
+  private var myPrecomputed: ConcurrentHashMap[PsiElement, Seq[Annotation]] = _
 
   override def suitableForFile(file: PsiFile): Boolean = file.hasScalaPsi
 
@@ -36,8 +51,13 @@ final class ScalaAnnotatorHighlightVisitor(project: Project) extends HighlightVi
       highlighter.AnnotatorHighlighter.highlightElement(element, myAnnotationHolder)
     }
 
-    if (ApplicationManager.getApplication.isUnitTestMode || manager.shouldInspect(file)) {
-      ScalaAnnotator(project).annotate(element, myAnnotationHolder)
+    val precomputed = if (myPrecomputed == null) null else myPrecomputed.remove(element)
+    if (precomputed != null) {
+      precomputed.foreach(myAnnotationHolder.add)
+    } else if (ApplicationManager.getApplication.isUnitTestMode || manager.shouldInspect(file)) {
+      AnnotatorPass.runWith(myPass) {
+        ScalaAnnotator(project).annotate(element, myAnnotationHolder)
+      }
     }
 
     myAnnotationHolder.forEach { annotation =>
@@ -50,30 +70,87 @@ final class ScalaAnnotatorHighlightVisitor(project: Project) extends HighlightVi
               updateWholeFile: Boolean,
               holder: HighlightInfoHolder,
               analyze: Runnable): Boolean = {
-//    val time = System.currentTimeMillis()
+    val time = System.currentTimeMillis()
+    val pass = new AnnotatorPass
     var success = true
     try {
       myHolder = holder
       myAnnotationHolder = new AnnotationHolderImpl(holder.getAnnotationSession)
+      myPass = pass
       if (updateWholeFile) {
         myRefCountHolder = ScalaRefCountHolder.getInstance(file)
-        success = myRefCountHolder.analyze(analyze, file)
+        success = myRefCountHolder.analyze(() => {
+          if (Registry.is(ConcurrentAnnotationKey)) annotateTopLevelMembers(file)
+          analyze.run()
+        }, file)
       } else {
         myRefCountHolder = null
         analyze.run()
       }
     } finally {
+      if (Registry.is(LogPassTimeKey)) {
+        val passTime = System.currentTimeMillis() - time
+        Log.info(s"File: ${file.getName}, time: $passTime ms, whole file: $updateWholeFile, pass cache: ${pass.statistics}")
+      }
+
       myHolder = null
       myAnnotationHolder = null
       myRefCountHolder = null
+      myPass = null
+      myPrecomputed = null
     }
-    // TODO We should probably create a dedicated registry property that enables printing of the running time.
-    // Otherwise, the output always pollutes the console, even when there's no need for that data.
-    // IDEA's "internal mode" is a too coarse-grained switch for that.
-//    val method: Long = System.currentTimeMillis() - time
-//    if (method > 100 && ApplicationManager.getApplication.isInternal) println(s"File: ${file.getName}, Time: $method")
     success
   }
 
+  /**
+    * Annotates elements of independent top-level type definitions concurrently,
+    * [[visit]] then reports the computed annotations instead of annotating the elements again.
+    * Is done only when the whole file is highlighted and annotators are enabled for the file.
+    */
+  private def annotateTopLevelMembers(file: PsiFile): Unit = file match {
+    case scalaFile: ScalaFile if !DumbService.getInstance(project).isDumb &&
+      HighlightingLevelManager.getInstance(project).shouldInspect(file) &&
+      ScalaRefCountHolder.findDirtyScope(file)(project).forall(_.forall(_ == file.getTextRange)) =>
+
+      val members = scalaFile.typeDefinitions
+      if (members.size < 2) return
+
+      val precomputed = new ConcurrentHashMap[PsiElement, Seq[Annotation]]()
+      val pass = myPass
+      val session = myHolder.getAnnotationSession
+      val annotator = ScalaAnnotator(project)
+
+      JobLauncher.getInstance().invokeConcurrentlyUnderProgress(members.asJava, ProgressManager.getInstance.getProgressIndicator, true, false, (member: ScTypeDefinition) => {
+        val memberHolder = new AnnotationHolderImpl(session)
+        AnnotatorPass.runWith(pass) {
+          member.depthFirst().foreach { element =>
+            ProgressManager.checkCanceled()
+            annotator.annotate(element, memberHolder)
+            precomputed.put(element, memberHolder.asScala.toList)
+            memberHolder.clear()
+          }
+        }
+        true
+      })
+
+      myPrecomputed = precomputed
+    case _ =>
+  }
+
   override def clone = new ScalaAnnotatorHighlightVisitor(project)
-}
\ No newline at end of file
+}
+
+object ScalaAnnotatorHighlightVisitor {
+
+  private val Log = Logger.getInstance(classOf[ScalaAnnotatorHighlightVisitor])
+
+  val ConcurrentAnnotationKey = "scala.annotator.concurrent.top.level"
+
+  val LogPassTimeKey = "scala.annotator.log.pass.time"
+
+  Registry.addKey(ConcurrentAnnotationKey,
+    "Annotate top-level type definitions of a Scala file concurrently when the whole file is highlighted", false, false)
+
+  Registry.addKey(LogPassTimeKey,
+    "Log time of Scala annotator passes and hits of the per-pass resolve cache", false, false)
+}
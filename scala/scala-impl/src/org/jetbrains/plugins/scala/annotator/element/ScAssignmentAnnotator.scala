@@ -2,6 +2,7 @@ package org.jetbrains.plugins.scala.annotator.element
 
 import com.intellij.lang.annotation.AnnotationHolder
 import com.intellij.psi.{PsiClass, PsiField, PsiMethod}
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.annotator.AnnotatorUtils.registerTypeMismatchError
 import org.jetbrains.plugins.scala.codeInspection.varCouldBeValInspection.ValToVarQuickFix
 import org.jetbrains.plugins.scala.extensions._
@@ -23,13 +24,13 @@ object ScAssignmentAnnotator extends ElementAnnotator[ScAssignment] {
     element.leftExpression match {
       case _: ScMethodCall =>
       case ref: ScReferenceExpression =>
-        ref.bind() match {
+        AnnotatorPass.bind(ref) match {
           case Some(r) if r.isDynamic && r.name == DynamicResolveProcessor.UPDATE_DYNAMIC => //ignore
           case Some(r) if !r.isNamedParameter =>
             def checkVariable() {
               left.`type`().foreach { lType =>
                 right.foreach { expression =>
-                  expression.getTypeAfterImplicitConversion().tr.foreach { rType =>
+                  AnnotatorPass.typeAfterImplicitConversion(expression).tr.foreach { rType =>
                     if(!ScalaPsiUtil.isUnderscoreEq(element, rType)) {
                       registerTypeMismatchError(rType, lType, holder, expression)
                     }
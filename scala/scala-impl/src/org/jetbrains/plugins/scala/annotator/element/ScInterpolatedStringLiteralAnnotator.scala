@@ -5,6 +5,7 @@ import com.intellij.lang.annotation.{AnnotationHolder, AnnotationSession}
 import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiElement
 import org.jetbrains.plugins.scala.ScalaBundle
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.annotator.annotationHolder.DelegateAnnotationHolder
 import org.jetbrains.plugins.scala.annotator.usageTracker.UsageTracker.registerUsedImports
 import org.jetbrains.plugins.scala.lang.psi.api.base.ScInterpolatedStringLiteral
@@ -54,7 +55,7 @@ object ScInterpolatedStringLiteralAnnotator extends ElementAnnotator[ScInterpola
       ScReferenceAnnotator.annotateReference(ref, fakeAnnotator)
     }
 
-    ref.bind() match {
+    AnnotatorPass.bind(ref) match {
       case Some(srr) =>
         registerUsedImports(ref, srr)
         annotateDesugared()
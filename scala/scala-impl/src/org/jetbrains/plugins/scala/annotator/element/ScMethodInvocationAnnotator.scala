@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.scala.annotator.element
 
 import com.intellij.lang.annotation.AnnotationHolder
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.annotator.AnnotatorUtils.registerTypeMismatchError
 import org.jetbrains.plugins.scala.annotator.createFromUsage.{CreateApplyQuickFix, InstanceOfClass}
 import org.jetbrains.plugins.scala.lang.psi.api.base.ScReference
@@ -23,7 +24,7 @@ object ScMethodInvocationAnnotator extends ElementAnnotator[MethodInvocation] {
     //do we need to check it:
     call.getEffectiveInvokedExpr match {
       case ref: ScReference =>
-        ref.bind() match {
+        AnnotatorPass.bind(ref) match {
           case Some(r) if r.notCheckedResolveResult || r.isDynamic => //it's unhandled case
           case _ =>
             call.applyOrUpdateElement match {
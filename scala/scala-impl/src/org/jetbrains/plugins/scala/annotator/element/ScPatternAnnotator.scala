@@ -2,6 +2,7 @@ package org.jetbrains.plugins.scala.annotator.element
 
 import com.intellij.lang.annotation.AnnotationHolder
 import org.jetbrains.plugins.scala.ScalaBundle
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.ScalaPsiUtil
 import org.jetbrains.plugins.scala.lang.psi.api.base.ScStableCodeReference
@@ -126,7 +127,7 @@ object ScPatternAnnotator extends ElementAnnotator[ScPattern] {
         }
         reference match {
           case Some(ref) =>
-            ref.bind() match {
+            AnnotatorPass.bind(ref) match {
               case Some(ScalaResolveResult(fun: ScFunction, substitutor)) if fun.name == "unapply" => fun.returnType match {
                 case Right(rt) =>
                   val expected = ScPattern.expectedNumberOfExtractorArguments(substitutor(rt), pattern, ScPattern.isOneArgCaseClassMethod(fun))
@@ -203,7 +204,7 @@ object ScPatternAnnotator extends ElementAnnotator[ScPattern] {
     import pattern.projectContext
 
     def constrPatternType(patternRef: ScStableCodeReference): Option[ScType] = {
-      patternRef.bind() match {
+      AnnotatorPass.bind(patternRef) match {
         case Some(srr) =>
           srr.getElement match {
             case fun: ScFunction if fun.parameters.count(!_.isImplicitParameter) == 1 =>
@@ -7,6 +7,7 @@ import com.intellij.openapi.util.Condition
 import com.intellij.psi._
 import com.intellij.psi.util.PsiTreeUtil
 import org.jetbrains.plugins.scala.ScalaBundle
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.annotator.AnnotatorUtils.{highlightImplicitView, registerTypeMismatchError}
 import org.jetbrains.plugins.scala.annotator.UnresolvedReferenceFixProvider
 import org.jetbrains.plugins.scala.annotator.createFromUsage._
@@ -55,7 +56,7 @@ object ScReferenceAnnotator extends ElementAnnotator[ScReference] {
   }
 
   def annotateReference(reference: ScReference, holder: AnnotationHolder) {
-    for {r <- reference.multiResolveScala(false)} {
+    for {r <- AnnotatorPass.multiResolve(reference)} {
 
       UsageTracker.registerUsedImports(reference, r)
 
@@ -191,7 +192,7 @@ object ScReferenceAnnotator extends ElementAnnotator[ScReference] {
       Seq(new ScalaImportTypeFix(classes, refElement))
     }
 
-    val resolve = refElement.multiResolveScala(false)
+    val resolve = AnnotatorPass.multiResolve(refElement)
     def processError(countError: Boolean, fixes: => Seq[IntentionAction]) {
       lazy val cachedFixes = fixes
       //todo remove when resolve of unqualified expression will be fully implemented
@@ -322,7 +323,7 @@ object ScReferenceAnnotator extends ElementAnnotator[ScReference] {
       val parent = refElement.getParent
       def addCreateApplyOrUnapplyFix(messageKey: String, fix: ScTypeDefinition => IntentionAction): Boolean = {
         val refWithoutArgs = ScalaPsiElementFactory.createReferenceFromText(refElement.getText, parent.getContext, parent)
-        if (refWithoutArgs != null && refWithoutArgs.multiResolveScala(false).exists(!_.getElement.isInstanceOf[PsiPackage])) {
+        if (refWithoutArgs != null && AnnotatorPass.multiResolve(refWithoutArgs).exists(!_.getElement.isInstanceOf[PsiPackage])) {
           // We can't resolve the method call A(arg1, arg2), but we can resolve A. Highlight this differently.
           val error = ScalaBundle.message(messageKey, refElement.refName)
           val annotation = holder.createErrorAnnotation(refElement.nameId, error)
@@ -365,7 +366,7 @@ object ScReferenceAnnotator extends ElementAnnotator[ScReference] {
   }
 
   private def checkQualifiedReferenceElement(refElement: ScReference, holder: AnnotationHolder, typeAware: Boolean) {
-    val resolve = refElement.multiResolveScala(false)
+    val resolve = AnnotatorPass.multiResolve(refElement)
 
     UsageTracker.registerUsedElementsAndImports(refElement, resolve, checkWrite = true)
 
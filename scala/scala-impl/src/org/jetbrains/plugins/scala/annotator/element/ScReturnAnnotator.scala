@@ -3,6 +3,7 @@ package org.jetbrains.plugins.scala.annotator.element
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.lang.annotation.{Annotation, AnnotationHolder}
 import org.jetbrains.plugins.scala.ScalaBundle
+import org.jetbrains.plugins.scala.annotator.AnnotatorPass
 import org.jetbrains.plugins.scala.annotator.usageTracker.UsageTracker.registerUsedImports
 import org.jetbrains.plugins.scala.lang.psi.api.expr.{ScExpression, ScReturn}
 import org.jetbrains.plugins.scala.lang.psi.types.api
@@ -22,7 +23,7 @@ object ScReturnAnnotator extends ElementAnnotator[ScReturn] {
     function.returnType match {
       case Right(tp) if function.hasAssign && !tp.equiv(api.Unit) =>
         val importUsed = element.expr.toSet[ScExpression]
-          .flatMap(_.getTypeAfterImplicitConversion().importsUsed)
+          .flatMap(AnnotatorPass.typeAfterImplicitConversion(_).importsUsed)
 
         registerUsedImports(element, importUsed)
       case _ =>
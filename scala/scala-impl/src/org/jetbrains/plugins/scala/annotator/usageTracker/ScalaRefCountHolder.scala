@@ -10,10 +10,15 @@ import com.intellij.concurrency.JobScheduler
 import com.intellij.openapi.components.ProjectComponent
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
-import com.intellij.openapi.util.{LowMemoryWatcher, Ref, TextRange}
+import com.intellij.openapi.util.{Key, LowMemoryWatcher, Ref, TextRange}
 import com.intellij.psi._
 import com.intellij.util.containers.{ContainerUtil, hash}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScPackaging
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.usages._
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.templates.ScTemplateBody
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScTypeDefinition
+
+import scala.annotation.tailrec
 
 /**
  * User: Alexander Podkhalyuzin
@@ -30,20 +35,23 @@ final class ScalaRefCountHolder private() {
 
   private val myState = new ju.concurrent.atomic.AtomicReference(VIRGIN)
 
-  private val myImportUsed = ContainerUtil.newConcurrentSet[ImportUsed]
-  private val myValueUsed = ContainerUtil.newConcurrentSet[ValueUsed]
+  //usages are recorded per top-level member, the file itself stands for elements outside of members
+  private val myMemberUsages = new ju.concurrent.ConcurrentHashMap[PsiElement, MemberUsages]
+
+  //usages recorded by the running highlighting pass, known usages answer queries until the pass is completed
+  private val myPassUsages = new ju.concurrent.atomic.AtomicReference[ju.concurrent.ConcurrentHashMap[PsiElement, MemberUsages]]
 
-  def registerImportUsed(used: ImportUsed): Unit = {
-    myImportUsed.add(used)
+  def registerImportUsed(place: PsiElement, used: ImportUsed): Unit = {
+    usagesOf(place).importUsed.add(used)
   }
 
-  def registerValueUsed(used: ValueUsed): Unit = {
-    myValueUsed.add(used)
+  def registerValueUsed(place: PsiElement, used: ValueUsed): Unit = {
+    usagesOf(place).valueUsed.add(used)
   }
 
   def usageFound(used: ImportUsed): Boolean = {
     assertState()
-    myImportUsed.contains(used)
+    recorded.exists(_.importUsed.contains(used))
   }
 
   def isValueWriteUsed(element: PsiNamedElement): Boolean = isValueUsed {
@@ -56,7 +64,25 @@ final class ScalaRefCountHolder private() {
 
   private def isValueUsed(used: ValueUsed): Boolean = {
     assertState()
-    myValueUsed.contains(used)
+    recorded.exists(_.valueUsed.contains(used))
+  }
+
+  /**
+    * Answers from usages of unchanged members, doesn't require a completed highlighting pass.
+    *
+    * @return `None` if the import is not used by recorded members and some members of the file are not recorded yet
+    */
+  def isImportUsed(used: ImportUsed, file: PsiFile): Option[Boolean] = measured {
+    query(file)(_.importUsed.contains(used))
+  }
+
+  /**
+    * @see [[isImportUsed]]
+    */
+  def isValueUsed(element: PsiNamedElement, file: PsiFile): Option[Boolean] = measured {
+    query(file) { usages =>
+      usages.valueUsed.contains(ReadValueUsed(element)) || usages.valueUsed.contains(WriteValueUsed(element))
+    }
   }
 
   def analyze(analyze: Runnable, file: PsiFile): Boolean = {
@@ -67,19 +93,20 @@ final class ScalaRefCountHolder private() {
       try {
         assertState(WRITE)
 
-        val defaultRange = Some(file.getTextRange)
-        dirtyScope.getOrElse(defaultRange) match {
-          case `defaultRange` =>
-            myImportUsed.clear()
-            myValueUsed.clear()
-          case Some(_) =>
-            clear(myImportUsed)(_.element.isValid)
-            clear(myValueUsed)(_.isValid)
-          case _ =>
+        //usages of changed members are recorded again, usages of others are kept
+        val dropped = dropOutdated(file)
+        if (Log.isDebugEnabled) {
+          Log.debug(s"${file.getName}: ${myMemberUsages.size} members kept, $dropped members to record, $statistics")
         }
 
+        val passUsages = new ju.concurrent.ConcurrentHashMap[PsiElement, MemberUsages]
+        myPassUsages.set(passUsages)
+
         analyze.run()
+
+        replaceUsages(passUsages, file, dirtyScope.getOrElse(Some(file.getTextRange)))
       } finally {
+        myPassUsages.set(null)
         setReady(WRITE)
       }
 
@@ -103,6 +130,81 @@ final class ScalaRefCountHolder private() {
       false
     }
 
+  private def recorded: Iterator[MemberUsages] = {
+    import collection.JavaConverters._
+    myMemberUsages.values.iterator.asScala
+  }
+
+  private def usagesOf(place: PsiElement): MemberUsages = {
+    val member = memberOf(place)
+    val stamp = stampOf(member)
+
+    val usages = myPassUsages.get match {
+      case null => myMemberUsages
+      case passUsages => passUsages
+    }
+    usages.compute(member, (_, memberUsages) =>
+      if (memberUsages != null && memberUsages.stamp == stamp) memberUsages
+      else new MemberUsages(stamp)
+    )
+  }
+
+  /**
+    * Members in the dirty scope are annotated completely, their usages are replaced with the ones
+    * recorded by the pass, so that facts of removed usages don't outlive them.
+    * Usages recorded outside of the dirty scope are added to the known ones.
+    */
+  private def replaceUsages(passUsages: ju.concurrent.ConcurrentHashMap[PsiElement, MemberUsages],
+                            file: PsiFile,
+                            dirtyRange: Option[TextRange]): Unit = {
+    dirtyRange.foreach { range =>
+      membersOf(file)
+        .filter(member => range.intersects(member.getTextRange))
+        .foreach { member =>
+          val usages = passUsages.remove(member) match {
+            case null => new MemberUsages(stampOf(member))
+            case fresh => fresh
+          }
+          myMemberUsages.put(member, usages)
+        }
+    }
+
+    passUsages.forEach { (member, fresh) =>
+      myMemberUsages.merge(member, fresh, (known, _) =>
+        if (known.stamp == fresh.stamp) {
+          known.importUsed.addAll(fresh.importUsed)
+          known.valueUsed.addAll(fresh.valueUsed)
+          known
+        } else fresh
+      )
+    }
+  }
+
+  private def dropOutdated(file: PsiFile): Int = {
+    var dropped = 0
+    val iterator = myMemberUsages.entrySet.iterator
+    while (iterator.hasNext) {
+      val entry = iterator.next()
+      val member = entry.getKey
+      if (!member.isValid || member.getContainingFile != file || stampOf(member) != entry.getValue.stamp) {
+        iterator.remove()
+        dropped += 1
+      }
+    }
+    dropped
+  }
+
+  private def query(file: PsiFile)(isUsed: MemberUsages => Boolean): Option[Boolean] = {
+    def isRecorded(member: PsiElement) = myMemberUsages.get(member) match {
+      case null => false
+      case usages => usages.stamp == stampOf(member)
+    }
+
+    if (recorded.exists(isUsed)) Some(true)
+    else if (membersOf(file).forall(isRecorded)) Some(false)
+    else None
+  }
+
   private def setReady(expect: Int): Unit = {
     val value = myState.compareAndSet(expect, READY)
     Log.assertTrue(value, myState.get)
@@ -125,6 +227,97 @@ object ScalaRefCountHolder {
     val READ = 3
   }
 
+  private class MemberUsages(val stamp: Long) {
+    val importUsed: ju.Set[ImportUsed] = ContainerUtil.newConcurrentSet[ImportUsed]
+    val valueUsed: ju.Set[ValueUsed] = ContainerUtil.newConcurrentSet[ValueUsed]
+  }
+
+  private val queries = new ju.concurrent.atomic.LongAdder
+  private val queriesTimeNs = new ju.concurrent.atomic.LongAdder
+
+  /** Count and average latency of queries answered without a completed highlighting pass */
+  def statistics: String = {
+    val count = queries.sum
+    val average = if (count == 0) 0 else queriesTimeNs.sum / count / 1000
+    s"$count queries, $average us on average"
+  }
+
+  private def measured[T](body: => T): T = {
+    val start = System.nanoTime()
+    try body
+    finally {
+      queries.increment()
+      queriesTimeNs.add(System.nanoTime() - start)
+    }
+  }
+
+  /**
+    * Top-level statements of a file and members of its top-level type definitions.
+    * Elements of headers of top-level type definitions belong to the definitions themselves.
+    */
+  private def membersOf(file: PsiFile): Seq[PsiElement] = {
+    def membersIn(statements: Seq[PsiElement]): Seq[PsiElement] = statements.flatMap {
+      case packaging: ScPackaging => membersIn(packaging.getChildren)
+      case definition: ScTypeDefinition =>
+        definition +: definition.extendsBlock.templateBody.toSeq.flatMap(_.getChildren)
+      case statement => Seq(statement)
+    }
+
+    file +: membersIn(file.getChildren)
+  }
+
+  private def memberOf(place: PsiElement): PsiElement = {
+    @tailrec
+    def outermost(element: PsiElement): PsiElement = element.getParent match {
+      case null | _: PsiFile | _: ScPackaging => element
+      case body: ScTemplateBody if isTopLevel(body) => element
+      case parent => outermost(parent)
+    }
+
+    def isTopLevel(body: ScTemplateBody) = body.getParent.getParent match {
+      case definition: ScTypeDefinition => definition.getParent match {
+        case _: PsiFile | _: ScPackaging => true
+        case _ => false
+      }
+      case _ => false
+    }
+
+    place match {
+      case file: PsiFile => file
+      case _ if !place.isValid => place.getContainingFile
+      case _ => outermost(place)
+    }
+  }
+
+  /** Length and hash of the text of a member, stamps of a file are computed once for each modification of the file */
+  private def stampOf(member: PsiElement): Long = member match {
+    case file: PsiFile => file.getModificationStamp
+    case _ =>
+      val file = member.getContainingFile
+      val stamps = memberStamps(file)
+      stamps.get(member) match {
+        case null =>
+          val text = member.getText
+          val stamp = (text.length.toLong << 32) | (text.hashCode & 0xFFFFFFFFL)
+          stamps.put(member, stamp)
+          stamp
+        case stamp => stamp
+      }
+  }
+
+  private val stampsKey = Key.create[(Long, ju.Map[PsiElement, java.lang.Long])]("scala.ref.count.member.stamps")
+
+  private def memberStamps(file: PsiFile): ju.Map[PsiElement, java.lang.Long] = {
+    val modificationStamp = file.getModificationStamp
+    file.getUserData(stampsKey) match {
+      case (`modificationStamp`, stamps) => stamps
+      case _ =>
+        val stamps = new ju.concurrent.ConcurrentHashMap[PsiElement, java.lang.Long]
+        file.putUserData(stampsKey, (modificationStamp, stamps))
+        stamps
+    }
+  }
+
   def apply(element: PsiNamedElement): ScalaRefCountHolder =
     getInstance(element.getContainingFile)
 
@@ -152,16 +345,6 @@ object ScalaRefCountHolder {
           case _ => None
         }
     }
-
-  private def clear[T](used: ju.Set[T])
-                      (isValid: T => Boolean): Unit = used.synchronized {
-    val valuesIterator = used.iterator
-    while (valuesIterator.hasNext) {
-      if (!isValid(valuesIterator.next)) {
-        valuesIterator.remove()
-      }
-    }
-  }
 }
 
 final class ScalaRefCountHolderComponent(project: Project) extends ProjectComponent {
@@ -30,7 +30,7 @@ object UsageTracker {
     elem.getContainingFile match {
       case scalaFile: ScalaFile =>
         val refHolder = ScalaRefCountHolder.getInstance(scalaFile)
-        imports.foreach(refHolder.registerImportUsed)
+        imports.foreach(refHolder.registerImportUsed(elem, _))
       case _ =>
     }
   }
@@ -44,11 +44,11 @@ object UsageTracker {
     val imports = file.getAllImportUsed
     val refHolder = ScalaRefCountHolder.getInstance(file)
 
-    refHolder.retrieveUnusedReferencesInfo { () =>
+    def collectUnused(isUsed: ImportUsed => Boolean): Unit =
       imports.groupBy(_.importExpr).foreach {
         case (expr, importsUsed) if expr.nonEmpty =>
           val toHighlight =
-            importsUsed.filterNot(imp => refHolder.usageFound(imp) || imp.isAlwaysUsed)
+            importsUsed.filterNot(imp => isUsed(imp) || imp.isAlwaysUsed)
 
           if (toHighlight.size == importsUsed.size)
             redundant += ImportExprUsed(expr.get)
@@ -56,7 +56,13 @@ object UsageTracker {
             redundant ++= toHighlight
         case _ =>
       }
+
+    val success = refHolder.retrieveUnusedReferencesInfo { () =>
+      collectUnused(refHolder.usageFound)
     }
+    //highlighting is in progress, usages of unchanged members are known
+    if (!success) collectUnused(refHolder.isImportUsed(_, file).getOrElse(true))
+
     ScalaScriptImportsUtil.filterScriptImportsInUnused(file, redundant)
   }
 
@@ -73,9 +79,9 @@ object UsageTracker {
         case _ => ReadValueUsed(named)
       }
       val holder = ScalaRefCountHolder.getInstance(file)
-      holder.registerValueUsed(value)
+      holder.registerValueUsed(element, value)
       // For use of unapply method, see SCL-3463
-      resolveResult.parentElement.foreach(parent => holder.registerValueUsed(ReadValueUsed(parent)))
+      resolveResult.parentElement.foreach(parent => holder.registerValueUsed(element, ReadValueUsed(parent)))
     }
   }
 
@@ -20,6 +20,7 @@ import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
 import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.typedef.ScObjectImpl
 import org.jetbrains.plugins.scala.lang.psi.types.ScType
 import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
+import org.jetbrains.plugins.scala.statistics.CacheStatistics
 
 import scala.annotation.tailrec
 import scala.util.control.ControlThrowable
@@ -118,14 +119,22 @@ object CachesUtil {
 
   def getOrCreateCachedMap[Dom: ProjectUserDataHolder, Data, Result](elem: Dom,
                                                                      key: Key[CachedMap[Data, Result]],
-                                                                     dependencyItem: () => Object): ConcurrentMap[Data, Result] = {
+                                                                     dependencyItem: () => Object,
+                                                                     statistics: CacheStatistics): ConcurrentMap[Data, Result] = {
 
     val cachedValue = elem.getUserData(key) match {
       case null =>
         val manager = CachedValuesManager.getManager(elem.getProject)
         val provider = new CachedValueProvider[ConcurrentMap[Data, Result]] {
-          def compute(): CachedValueProvider.Result[ConcurrentMap[Data, Result]] =
+          //compute may be called from different threads
+          @volatile
+          private var computed = false
+
+          def compute(): CachedValueProvider.Result[ConcurrentMap[Data, Result]] = {
+            if (computed) statistics.cacheInvalidated()
+            computed = true
             new CachedValueProvider.Result(ContainerUtil.newConcurrentMap(), dependencyItem())
+          }
         }
         val newValue = manager.createCachedValue(provider, false)
         elem.putUserDataIfAbsent(key, newValue)
@@ -136,13 +145,21 @@ object CachesUtil {
 
   def getOrCreateCachedRef[Dom: ProjectUserDataHolder, Result](elem: Dom,
                                                                key: Key[CachedRef[Result]],
-                                                               dependencyItem: () => Object): AtomicReference[Result] = {
+                                                               dependencyItem: () => Object,
+                                                               statistics: CacheStatistics): AtomicReference[Result] = {
     val cachedValue = elem.getUserData(key) match {
       case null =>
         val manager = CachedValuesManager.getManager(elem.getProject)
         val provider = new CachedValueProvider[AtomicReference[Result]] {
-          def compute(): CachedValueProvider.Result[AtomicReference[Result]] =
+          //compute may be called from different threads
+          @volatile
+          private var computed = false
+
+          def compute(): CachedValueProvider.Result[AtomicReference[Result]] = {
+            if (computed) statistics.cacheInvalidated()
+            computed = true
             new CachedValueProvider.Result(new AtomicReference[Result](), dependencyItem())
+          }
         }
         val newValue = manager.createCachedValue(provider, false)
         elem.putUserDataIfAbsent(key, newValue)
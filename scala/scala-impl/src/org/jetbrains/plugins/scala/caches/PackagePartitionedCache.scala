@@ -0,0 +1,102 @@
+package org.jetbrains.plugins.scala
+package caches
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.SofterReference
+import org.jetbrains.plugins.scala.statistics.CacheStatistics
+
+import scala.collection.JavaConverters._
+
+/**
+  * Cache of values which depend only on classes of a single package, e.g. class lookups by qualified name.
+  *
+  * Entries are partitioned by package, so that a top-level change drops only the partitions
+  * of the changed packages, their subpackages and their parent packages.
+  * In the dropped partitions only entries with a search scope containing one of the changed files are removed.
+  *
+  * @param packageOf package which the value of a key depends on
+  * @param scopeOf   search scope of a key, `null` if the value doesn't depend on a scope
+  */
+class PackagePartitionedCache[K, V](id: String,
+                                    packageOf: K => String,
+                                    scopeOf: K => GlobalSearchScope) {
+
+  import PackagePartitionedCache._
+
+  private val partitions = new ConcurrentHashMap[String, ConcurrentHashMap[K, SofterReference[V]]]()
+
+  private val statistics = CacheStatistics(id, id)
+
+  def getOrCompute(key: K)(compute: => V): V = {
+    statistics.aboutToEnterCachedArea()
+
+    val partition = partitions.computeIfAbsent(packageOf(key), _ => new ConcurrentHashMap())
+    partition.get(key) match {
+      case null => computeAndPut(partition, key, compute)
+      case reference =>
+        reference.get() match {
+          case null => computeAndPut(partition, key, compute)
+          case value => value
+        }
+    }
+  }
+
+  /**
+    * @param packages qualified names of the changed packages
+    * @param files    changed files, entries with any scope are removed if empty
+    * @return count of partitions affected by the change
+    */
+  def invalidate(packages: Set[String], files: Seq[VirtualFile]): Int = {
+    val affected = partitions.keySet().asScala.filter { partitionPackage =>
+      packages.exists(isRelated(_, partitionPackage))
+    }
+
+    affected.foreach { partitionPackage =>
+      partitions.get(partitionPackage) match {
+        case null =>
+        case partition if files.isEmpty =>
+          partitions.remove(partitionPackage, partition)
+        case partition =>
+          partition.keySet().removeIf { key =>
+            val scope = scopeOf(key)
+            scope == null || files.exists(scope.contains)
+          }
+      }
+    }
+
+    if (affected.nonEmpty) statistics.cacheInvalidated()
+    affected.size
+  }
+
+  def clear(): Unit = {
+    if (!partitions.isEmpty) statistics.cacheInvalidated()
+    partitions.clear()
+  }
+
+  private def computeAndPut(partition: ConcurrentHashMap[K, SofterReference[V]], key: K, compute: => V): V = {
+    statistics.recalculatingCache()
+
+    val value = compute
+    partition.put(key, new SofterReference(value))
+    value
+  }
+}
+
+object PackagePartitionedCache {
+
+  /** Package of a class with the given qualified name or qualified name of its outer class */
+  def parentOf(fqn: String): String = fqn.lastIndexOf('.') match {
+    case -1 => ""
+    case idx => fqn.substring(0, idx)
+  }
+
+  /** Either one of the packages is the same as the other one or nested into it */
+  def isRelated(changedPackage: String, cachedPackage: String): Boolean =
+    isSameOrNested(changedPackage, cachedPackage) || isSameOrNested(cachedPackage, changedPackage)
+
+  private def isSameOrNested(name: String, parent: String): Boolean =
+    parent.isEmpty || name == parent || name.startsWith(parent) && name.charAt(parent.length) == '.'
+}
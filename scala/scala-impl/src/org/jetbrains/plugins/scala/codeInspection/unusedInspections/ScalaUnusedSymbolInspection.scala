@@ -28,7 +28,9 @@ class ScalaUnusedSymbolInspection extends HighlightingPassInspection {
         used |= refCounter.isValueReadUsed(element) || refCounter.isValueWriteUsed(element)
       }
 
-      !success || used //want to return true if it was a failure
+      //highlighting is in progress, usages of unchanged members are known
+      if (!success) refCounter.isValueUsed(element, element.getContainingFile).getOrElse(true)
+      else used
     } else {
       //need to look for references because file is not highlighted
       ReferencesSearch.search(element, element.getUseScope).findFirst() != null
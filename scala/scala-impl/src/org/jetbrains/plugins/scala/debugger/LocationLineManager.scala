@@ -1,14 +1,12 @@
 package org.jetbrains.plugins.scala.debugger
 
-import java.util
-
 import com.intellij.debugger.SourcePosition
-import com.intellij.debugger.engine.{DebugProcess, SyntheticTypeComponentProvider}
+import com.intellij.debugger.engine.SyntheticTypeComponentProvider
 import com.intellij.debugger.jdi.GeneratedLocation
 import com.intellij.debugger.settings.DebuggerSettings
 import com.intellij.psi.util.PsiTreeUtil
 import com.intellij.psi.{PsiDocumentManager, PsiElement}
-import com.sun.jdi.{AbsentInformationException, Location, Method, ReferenceType}
+import com.sun.jdi.{Location, Method, ReferenceType}
 import org.jetbrains.plugins.scala.debugger.evaluation.util.DebuggerUtil
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.api.base.patterns.ScCaseClauses
@@ -16,7 +14,6 @@ import org.jetbrains.plugins.scala.lang.psi.api.expr.{ScBlock, ScBlockStatement,
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScEarlyDefinitions
 
 import scala.collection.JavaConverters._
-import scala.util.Try
 
 /**
   * @author Nikolay.Tropin
@@ -30,17 +27,16 @@ trait LocationLineManager {
   private val syntheticProvider = SyntheticTypeComponentProvider.EP_NAME.findExtension(classOf[ScalaSyntheticProvider])
 
   def clearLocationLineCaches(): Unit = {
-    customizedLocationsCache.clear()
-    lineToCustomizedLocationCache.clear()
-    seenRefTypes.clear()
+    lineTables.clear()
   }
 
   def exactLineNumber(location: Location): Int = location match {
     case gen: GeneratedLocation =>
       gen.lineNumber()
     case _ =>
-      checkAndUpdateCaches(location.declaringType())
-      customizedLocationsCache.getOrElse(location, ScalaPositionManager.checkedLineNumber(location))
+      lineTable(location.declaringType())
+        .customLine(location)
+        .getOrElse(ScalaPositionManager.checkedLineNumber(location))
   }
 
   def shouldSkip(location: Location): Boolean = {
@@ -51,42 +47,26 @@ trait LocationLineManager {
   }
 
   def locationsOfLine(refType: ReferenceType, line: Int): Seq[Location] = {
-    val jvmLocations: util.List[Location] =
-      try {
-        if (debugProcess.getVirtualMachineProxy.versionHigher("1.4"))
-          refType.locationsOfLine(DebugProcess.JAVA_STRATUM, null, line + 1)
-        else refType.locationsOfLine(line + 1)
-      } catch {
-        case _: AbsentInformationException => return Seq.empty
-      }
-
-    checkAndUpdateCaches(refType)
+    val table = lineTable(refType)
 
-    val nonCustomized = jvmLocations.asScala.filterNot(customizedLocationsCache.contains)
-    val customized = customizedLocations(refType, line)
+    val nonCustomized = table.jvmLocationsOfLine(line).filterNot(table.isCustomized)
+    val customized = table.customizedLocationsOfLine(line)
     (nonCustomized ++ customized).filter(!shouldSkip(_))
   }
 
-  private def customizedLocations(refType: ReferenceType, line: Int): Seq[Location] = {
-    lineToCustomizedLocationCache.getOrElse((refType, line), Seq.empty)
-  }
-
-  private def checkAndUpdateCaches(refType: ReferenceType): Unit = {
-    if (!seenRefTypes.contains(refType)) inReadAction(computeCustomizedLocationsFor(refType))
-  }
-
-  private def cacheCustomLine(location: Location, customLine: Int): Unit = location match {
-    case _: GeneratedLocation => //don't cache, equals is broken
-    case _ =>
-      customizedLocationsCache.put(location, customLine)
-
-      val key = (location.declaringType(), customLine)
-      val old = lineToCustomizedLocationCache.getOrElse(key, Seq.empty)
-      lineToCustomizedLocationCache.update(key, (old :+ location).sortBy(_.codeIndex()))
+  private def lineTable(refType: ReferenceType): LocationLineTable = lineTables.get(refType) match {
+    case Some(table) => table
+    case None =>
+      val table = LocationLineTable.build(refType, debugProcess)
+      lineTables.put(refType, table)
+      inReadAction(computeCustomizedLocationsFor(table))
+      table.sortCustomizedLocations()
+      table
   }
 
-  private def computeCustomizedLocationsFor(refType: ReferenceType): Unit = {
-    seenRefTypes += refType
+  private def computeCustomizedLocationsFor(table: LocationLineTable): Unit = {
+    import table.{cacheCustomLine, isCustomized}
+    val refType = table.refType
 
     val generatingElem = findElementByReferenceType(refType).orNull
     if (generatingElem == null) return
@@ -96,7 +76,7 @@ trait LocationLineManager {
     if (document == null) return
 
     def elementStartLine(e: PsiElement) = document.getLineNumber(e.getTextOffset)
-    def locationsOfLine(m: Method, line: Int) = Try(m.locationsOfLine(line + 1).asScala).getOrElse(Seq.empty)
+    def locationsOfLine(m: Method, line: Int) = table.jvmLocationsOfLine(m, line)
 
     //scalac sometimes generates very strange line numbers for <init> method
     def customizeLineForConstructors(): Unit = {
@@ -125,7 +105,7 @@ trait LocationLineManager {
 
       val methods = refType.methodsByName("<init>").asScala.filter(_.declaringType() == refType)
       for {
-        location <- methods.flatMap(_.allLineLocations().asScala)
+        location <- methods.flatMap(table.locationsOf)
       } {
         if (shouldPointAtStartLine(location)) {
           val significantElem = DebuggerUtil.getSignificantElement(generatingElem)
@@ -154,7 +134,7 @@ trait LocationLineManager {
           }
           if (bytes.isEmpty) return
 
-          method.allLineLocations().asScala.foreach {
+          table.locationsOf(method).foreach {
             case loc if readIload(loc.codeIndex().toInt, bytecodes) == bytes =>
               cacheCustomLine(loc, -1)
             case _ =>
@@ -180,7 +160,7 @@ trait LocationLineManager {
           if (code.nonEmpty) Some(code) else None
         }
 
-        val notCustomizedYet = caseLinesLocations.map(_.filter(!customizedLocationsCache.contains(_)))
+        val notCustomizedYet = caseLinesLocations.map(_.filterNot(isCustomized))
         val repeating = notCustomizedYet.filter(_.size > 1)
         val lastLocations = repeating.map(_.last)
         val withStoreCode = for (loc <- lastLocations; code <- storeCode(loc)) yield (loc, code)
@@ -192,14 +172,14 @@ trait LocationLineManager {
         val bytes = loadCode(codes.head)
         if (bytes.isEmpty) return
 
-        val loadLocations = method.allLineLocations().asScala.filter { l =>
+        val loadLocations = table.locationsOf(method).filter { l =>
           readLoadCode(l.codeIndex().toInt, bytecodes) == bytes
         }
         loadLocations.foreach(cacheCustomLine(_, -1))
       }
 
       def skipBaseLineExtraLocations(method: Method, locations: Seq[Location]): Unit = {
-        val filtered = locations.filter(!customizedLocationsCache.contains(_))
+        val filtered = locations.filterNot(isCustomized)
         if (filtered.size <= 1) return
 
         val bytecodes =
@@ -231,12 +211,7 @@ trait LocationLineManager {
       }
 
       def customizeFor(caseClauses: ScCaseClauses): Unit = {
-        def tooSmall(m: Method) = {
-          try m.allLineLocations().size() <= 3
-          catch {
-            case _: AbsentInformationException => true
-          }
-        }
+        def tooSmall(m: Method) = table.locationsOf(m).size <= 3
 
         val baseLine = caseClauses.getParent match {
           case ms: ScMatch => ms.expression.map(elementStartLine)
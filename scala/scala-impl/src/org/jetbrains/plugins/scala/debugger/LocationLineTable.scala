@@ -0,0 +1,129 @@
+package org.jetbrains.plugins.scala.debugger
+
+import java.util
+
+import com.intellij.debugger.engine.DebugProcess
+import com.intellij.debugger.jdi.GeneratedLocation
+import com.sun.jdi.{AbsentInformationException, Location, Method, ReferenceType}
+import gnu.trove.{TIntObjectHashMap, TObjectIntHashMap}
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+
+/**
+  * Line information of a single [[ReferenceType]], built once from all its line locations.
+  *
+  * Jvm line numbers and customized line numbers are both zero-based, as in [[ScalaPositionManager.checkedLineNumber]].
+  * Table is shared by stepping, breakpoints and [[LocationLineManager.exactLineNumber]].
+  */
+private[debugger] class LocationLineTable private(val refType: ReferenceType, allLocations: Seq[Location]) {
+
+  import LocationLineTable._
+
+  private val jvmLines = new TIntObjectHashMap[Seq[Location]]()
+  private val methodLocations = new util.HashMap[Method, Seq[Location]]()
+
+  private val customLines = new TObjectIntHashMap[Location]()
+  private val customLineToLocations = new TIntObjectHashMap[mutable.ArrayBuffer[Location]]()
+
+  init()
+
+  private def init(): Unit = {
+    val byLine = new TIntObjectHashMap[mutable.ArrayBuffer[Location]]()
+    val byMethod = new util.HashMap[Method, mutable.ArrayBuffer[Location]]()
+
+    allLocations.foreach { location =>
+      val line = ScalaPositionManager.checkedLineNumber(location)
+      bufferFor(byLine, line) += location
+
+      var methodBuffer = byMethod.get(location.method())
+      if (methodBuffer == null) {
+        methodBuffer = mutable.ArrayBuffer.empty
+        byMethod.put(location.method(), methodBuffer)
+      }
+      methodBuffer += location
+    }
+
+    byLine.forEachEntry((line, locations) => {
+      jvmLines.put(line, locations.sortBy(_.codeIndex()).toVector)
+      true
+    })
+    byMethod.asScala.foreach {
+      case (method, locations) => methodLocations.put(method, locations.sortBy(_.codeIndex()).toVector)
+    }
+  }
+
+  /** Jvm locations on the `line` without taking customizations into account */
+  def jvmLocationsOfLine(line: Int): Seq[Location] = {
+    val result = jvmLines.get(line)
+    if (result == null) Seq.empty else result
+  }
+
+  def jvmLocationsOfLine(method: Method, line: Int): Seq[Location] =
+    jvmLocationsOfLine(line).filter(_.method() == method)
+
+  def locationsOf(method: Method): Seq[Location] = {
+    val result = methodLocations.get(method)
+    if (result == null) Seq.empty else result
+  }
+
+  def isCustomized(location: Location): Boolean = customLines.containsKey(location)
+
+  def customLine(location: Location): Option[Int] =
+    if (customLines.containsKey(location)) Some(customLines.get(location))
+    else None
+
+  def customizedLocationsOfLine(line: Int): Seq[Location] = {
+    val result = customLineToLocations.get(line)
+    if (result == null) Seq.empty else result
+  }
+
+  private[debugger] def cacheCustomLine(location: Location, customLine: Int): Unit = location match {
+    case _: GeneratedLocation => //don't cache, equals is broken
+    case _ =>
+      if (customLines.containsKey(location)) {
+        val oldLine = customLines.get(location)
+        val oldBuffer = customLineToLocations.get(oldLine)
+        if (oldBuffer != null) oldBuffer -= location
+      }
+      customLines.put(location, customLine)
+      bufferFor(customLineToLocations, customLine) += location
+  }
+
+  /** Should be called once after all customizations are registered, instead of re-sorting on each insert */
+  private[debugger] def sortCustomizedLocations(): Unit = {
+    customLineToLocations.forEachValue { buffer =>
+      val sorted = buffer.sortBy(_.codeIndex())
+      buffer.clear()
+      buffer ++= sorted
+      true
+    }
+  }
+}
+
+private[debugger] object LocationLineTable {
+
+  /** Reads all line locations of `refType` with a single request to the debuggee */
+  def build(refType: ReferenceType, debugProcess: DebugProcess): LocationLineTable = {
+    val locations =
+      try {
+        val jvmLocations =
+          if (debugProcess.getVirtualMachineProxy.versionHigher("1.4"))
+            refType.allLineLocations(DebugProcess.JAVA_STRATUM, null)
+          else refType.allLineLocations()
+        jvmLocations.asScala
+      } catch {
+        case _: AbsentInformationException => Seq.empty
+      }
+    new LocationLineTable(refType, locations)
+  }
+
+  private def bufferFor(map: TIntObjectHashMap[mutable.ArrayBuffer[Location]], key: Int): mutable.ArrayBuffer[Location] = {
+    var buffer = map.get(key)
+    if (buffer == null) {
+      buffer = mutable.ArrayBuffer.empty
+      map.put(key, buffer)
+    }
+    buffer
+  }
+}
@@ -990,9 +990,7 @@ object ScalaPositionManager {
     val refTypeToElementCache: mutable.HashMap[ReferenceType, Option[SmartPsiElementPointer[PsiElement]]] =
       mutable.HashMap[ReferenceType, Option[SmartPsiElementPointer[PsiElement]]]()
 
-    val customizedLocationsCache: mutable.HashMap[Location, Int] = mutable.HashMap[Location, Int]()
-    val lineToCustomizedLocationCache: mutable.HashMap[(ReferenceType, Int), Seq[Location]] = mutable.HashMap[(ReferenceType, Int), Seq[Location]]()
-    val seenRefTypes: mutable.Set[ReferenceType] = mutable.Set[ReferenceType]()
+    val lineTables: mutable.HashMap[ReferenceType, LocationLineTable] = mutable.HashMap[ReferenceType, LocationLineTable]()
     val sourceNames: mutable.HashMap[ReferenceType, Option[String]] = mutable.HashMap[ReferenceType, Option[String]]()
 
     def cachedSourceName(refType: ReferenceType): Option[String] =
@@ -1004,9 +1002,7 @@ object ScalaPositionManager {
       refTypeToFileCache.clear()
       refTypeToElementCache.clear()
 
-      customizedLocationsCache.clear()
-      lineToCustomizedLocationCache.clear()
-      seenRefTypes.clear()
+      lineTables.clear()
       sourceNames.clear()
     }
   }
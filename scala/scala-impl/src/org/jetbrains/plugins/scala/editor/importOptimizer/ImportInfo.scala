@@ -110,7 +110,13 @@ case class ImportInfo(prefixQualifier: String,
 
 object ImportInfo {
 
-  def apply(imp: ScImportExpr, isImportUsed: ImportUsed => Boolean): Option[ImportInfo] = {
+  def apply(imp: ScImportExpr, isImportUsed: ImportUsed => Boolean): Option[ImportInfo] =
+    apply(imp, isImportUsed, None)
+
+  /**
+    * @param sharedCache resolve results shared with the other files optimized in the same batch
+    */
+  def apply(imp: ScImportExpr, isImportUsed: ImportUsed => Boolean, sharedCache: Option[SharedImportResolveCache]): Option[ImportInfo] = {
     val qualifier = imp.qualifier
     if (qualifier == null) return None //ignore invalid imports
 
@@ -187,7 +193,12 @@ object ImportInfo {
       if (isImportUsed(importUsed)) {
         importsUsed += importUsed
         hasWildcard = true
-        val (namesForWildcard, implicitNames) = collectAllNamesAndImplicitsFromWildcard(prefixQualifier, imp)
+        val (namesForWildcard, implicitNames) = sharedCache match {
+          case Some(cache) if !isRelative => cache.wildcardNamesAndImplicits(imp, prefixQualifier) {
+            collectAllNamesAndImplicitsFromWildcard(prefixQualifier, imp)
+          }
+          case _ => collectAllNamesAndImplicitsFromWildcard(prefixQualifier, imp)
+        }
         allNames ++= namesForWildcard
         allNamesForWildcard = namesForWildcard
         hasNonUsedImplicits = (implicitNames -- singleNames).nonEmpty
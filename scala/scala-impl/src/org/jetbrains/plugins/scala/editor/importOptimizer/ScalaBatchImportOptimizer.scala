@@ -0,0 +1,92 @@
+package org.jetbrains.plugins.scala.editor.importOptimizer
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.intellij.concurrency.JobLauncher
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.{ProgressIndicator, SensitiveProgressWrapper}
+import com.intellij.openapi.project.Project
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+
+import scala.collection.JavaConverters._
+
+/**
+  * Optimizes imports of many files at once: imports of the files are analyzed concurrently under one progress indicator,
+  * resolve results of wildcard imports are shared between files of the same package,
+  * optimized imports are applied in a single command.
+  */
+object ScalaBatchImportOptimizer {
+
+  private val Log = Logger.getInstance(getClass)
+
+  private val CommandName = "Optimize Imports"
+
+  case class FileStatistics(file: ScalaFile, analysisTimeMs: Long, fileLength: Int)
+
+  case class BatchStatistics(files: Seq[FileStatistics], totalTimeMs: Long, sharedResolveHits: Long, sharedResolveMisses: Long) {
+
+    def filesPerSecond: Double =
+      if (totalTimeMs == 0) files.size else files.size * 1000.0 / totalTimeMs
+
+    override def toString: String =
+      f"Imports of ${files.size} files optimized in $totalTimeMs ms ($filesPerSecond%.1f files/s), " +
+        s"shared resolve hits: $sharedResolveHits, misses: $sharedResolveMisses"
+  }
+
+  /**
+    * Should be called from a background thread.
+    */
+  def optimize(files: Seq[ScalaFile], indicator: ProgressIndicator)
+              (implicit project: Project): BatchStatistics = {
+    val start = System.currentTimeMillis()
+    val sharedCache = new SharedImportResolveCache
+
+    val prepared = new ConcurrentLinkedQueue[(ScalaFile, Runnable)]()
+    val statistics = new ConcurrentLinkedQueue[FileStatistics]()
+    val processed = new AtomicInteger(0)
+
+    indicator.setIndeterminate(false)
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files.asJava, indicator, true, false, (file: ScalaFile) => {
+      val fileStart = System.currentTimeMillis()
+
+      if (file.isValid) {
+        //text and fraction of each file are not shown, the total fraction is updated instead
+        val fileIndicator = new SensitiveProgressWrapper(indicator)
+        ScalaImportOptimizer.findOptimizerFor(file).foreach {
+          case optimizer: ScalaImportOptimizer =>
+            prepared.add((file, optimizer.processFile(file, fileIndicator, Some(sharedCache))))
+          case optimizer =>
+            prepared.add((file, optimizer.processFile(file)))
+        }
+
+        val fileStatistics = FileStatistics(file, System.currentTimeMillis() - fileStart, file.getTextLength)
+        statistics.add(fileStatistics)
+        if (Log.isDebugEnabled) {
+          Log.debug(s"Imports of ${file.getName} (${fileStatistics.fileLength} chars) analyzed in ${fileStatistics.analysisTimeMs} ms")
+        }
+      }
+
+      indicator.setFraction(processed.incrementAndGet().toDouble / files.size)
+      indicator.setText2(file.getName)
+      true
+    })
+
+    indicator.checkCanceled()
+    indicator.setText2("Applying changes")
+
+    invokeAndWait {
+      executeWriteActionCommand(CommandName) {
+        prepared.asScala.foreach {
+          case (file, runnable) if file.isValid => runnable.run()
+          case _ =>
+        }
+      }
+    }
+
+    val result = BatchStatistics(statistics.asScala.toSeq, System.currentTimeMillis() - start, sharedCache.hits, sharedCache.misses)
+    Log.info(result.toString)
+    result
+  }
+}
@@ -51,7 +51,8 @@ class ScalaImportOptimizer extends ImportOptimizer {
 
   def processFile(file: PsiFile): Runnable = processFile(file, null)
 
-  def processFile(file: PsiFile, progressIndicator: ProgressIndicator = null): Runnable = {
+  def processFile(file: PsiFile, progressIndicator: ProgressIndicator = null,
+                  sharedCache: Option[SharedImportResolveCache] = None): Runnable = {
     def collectImportHoldersAndUsers: (util.ArrayList[ScImportsHolder], util.ArrayList[PsiElement]) = {
       val holders = new util.ArrayList[ScImportsHolder]()
       val users = new util.ArrayList[PsiElement]()
@@ -137,7 +138,7 @@ class ScalaImportOptimizer extends ImportOptimizer {
         ScalaScriptImportsUtil.isImportUsed(importUsed)
     }
 
-    val rangeInfos = collectRanges(createInfo(_, isImportUsed))
+    val rangeInfos = collectRanges(createInfo(_, isImportUsed, sharedCache))
 
     val optimized = rangeInfos.map(range => (range, optimizedImportInfos(range, importsSettings)))
 
@@ -853,8 +854,9 @@ object ScalaImportOptimizer {
   }
 
 
-  def createInfo(imp: ScImportStmt, isImportUsed: ImportUsed => Boolean = _ => true): Seq[ImportInfo] =
-    imp.importExprs.flatMap(ImportInfo(_, isImportUsed))
+  def createInfo(imp: ScImportStmt, isImportUsed: ImportUsed => Boolean = _ => true,
+                 sharedCache: Option[SharedImportResolveCache] = None): Seq[ImportInfo] =
+    imp.importExprs.flatMap(ImportInfo(_, isImportUsed, sharedCache))
 
 
 }
@@ -0,0 +1,57 @@
+package org.jetbrains.plugins.scala.editor.importOptimizer
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScPackaging
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.ScImportExpr
+
+/**
+  * Resolve results of import expressions shared between the files of the same package,
+  * which are optimized in one batch by [[ScalaBatchImportOptimizer]].
+  *
+  * Only top-level imports with absolute qualifiers are shared, names imported by them don't depend on the file.
+  */
+final class SharedImportResolveCache {
+
+  private val wildcardNames = new ConcurrentHashMap[(String, String), (Set[String], Set[String])]()
+
+  private val hitsCounter = new LongAdder
+  private val missesCounter = new LongAdder
+
+  /**
+    * @param qualifier fully qualified prefix of the wildcard import
+    * @return names and implicit names imported by the wildcard
+    */
+  def wildcardNamesAndImplicits(imp: ScImportExpr, qualifier: String)
+                               (compute: => (Set[String], Set[String])): (Set[String], Set[String]) =
+    packageOf(imp) match {
+      case Some(packageName) =>
+        val key = (packageName, qualifier)
+        wildcardNames.get(key) match {
+          case null =>
+            missesCounter.increment()
+            val result = compute
+            wildcardNames.putIfAbsent(key, result)
+            result
+          case result =>
+            hitsCounter.increment()
+            result
+        }
+      case None => compute
+    }
+
+  def hits: Long = hitsCounter.sum()
+
+  def misses: Long = missesCounter.sum()
+
+  private def packageOf(imp: ScImportExpr): Option[String] = imp.getParent match {
+    case null => None
+    case importStmt => importStmt.getParent match {
+      case packaging: ScPackaging => Some(packaging.fullPackageName)
+      case _: ScalaFile => Some("")
+      case _ => None
+    }
+  }
+}
@@ -64,7 +64,17 @@ object Dependency {
     }.toList
 
   def collect(range: TextRange)
-             (implicit file: ScalaFile): Iterable[(Path, Seq[ScReference])] = {
+             (implicit file: ScalaFile): Iterable[(Path, Seq[ScReference])] = for {
+    references <- referenceGroups(range)
+    path <- pathsFor(references, range)
+  } yield (path, references)
+
+  /**
+    * Unqualified references in the range, grouped by name, kinds and an estimate of their resolve scope.
+    * References of a group have the same dependencies, so it's enough to resolve only one of them.
+    */
+  def referenceGroups(range: TextRange)
+                     (implicit file: ScalaFile): Iterable[Seq[ScReference]] = {
     def scopeEstimate(e: PsiElement): Option[PsiElement] =
       e.parentsInFile.flatMap {
         _.prevSiblings
@@ -74,17 +84,20 @@ object Dependency {
         case parents: ScTemplateParents => parents
       }
 
-    val groupedReferences = unqualifiedReferencesInRange(range).groupBy { reference =>
+    unqualifiedReferencesInRange(range).groupBy { reference =>
       (reference.refName, scopeEstimate(reference), reference.getKinds(incomplete = false))
     }.values
-
-    for {
-      references <- groupedReferences
-      Dependency(target, path) <- dependenciesFor(references.head)
-      if ApplicationManager.getApplication.isUnitTestMode || !isInternal(target, range)
-    } yield (path, references)
   }
 
+  /**
+    * Paths of the external dependencies of a group of references from [[referenceGroups]].
+    */
+  def pathsFor(references: Seq[ScReference], range: TextRange)
+              (implicit file: ScalaFile): Seq[Path] = for {
+    Dependency(target, path) <- dependenciesFor(references.head)
+    if ApplicationManager.getApplication.isUnitTestMode || !isInternal(target, range)
+  } yield path
+
   private def isInternal(target: PsiElement, range: TextRange)
                         (implicit scalaFile: ScalaFile): Boolean =
     target.getContainingFile match {
@@ -24,7 +24,8 @@ import org.jetbrains.plugins.scala.lang.formatting.scalafmt.dynamic.{ScalafmtDyn
 import org.jetbrains.plugins.scala.lang.formatting.scalafmt.{ScalafmtDynamicConfigManager, ScalafmtNotifications}
 import org.jetbrains.plugins.scala.lang.formatting.settings.ScalaCodeStyleSettings
 import org.jetbrains.plugins.scala.lang.lexer.ScalaTokenTypes
-import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.{ScalaFile, ScalaPsiElement}
+import org.jetbrains.plugins.scala.lang.psi.api.base.ScStableCodeReference
 import org.jetbrains.plugins.scala.lang.psi.api.expr.{ScBlock, ScBlockStatement, ScExpression}
 import org.jetbrains.plugins.scala.lang.psi.api.statements.ScPatternDefinition
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScPackaging
@@ -153,11 +154,12 @@ object ScalaFmtPreFormatProcessor {
     }
   }
 
-  private def formatInSingleFile(elements: Seq[PsiElement], config: ScalafmtDynamicConfig, shouldWrap: Boolean)
+  private def formatInSingleFile(elements: Seq[PsiElement], config: ScalafmtDynamicConfig, shouldWrap: Boolean,
+                                 incremental: Boolean = false)
                                 (implicit project: Project): Option[WrappedCode] = {
     val wrappedCode: WrappedCode =
       if (shouldWrap) {
-        wrap(elements)
+        wrap(elements, incremental)
       } else {
         val elementsText = elements.foldLeft("") { case (acc, element) => acc + element.getText }
         new WrappedCode(elementsText, wrapped = false, wrappedInHelperClass = false)
@@ -198,8 +200,9 @@ object ScalaFmtPreFormatProcessor {
     *    }
     *  }
     * }}}
+    * In incremental mode only the enclosing top-level definition is copied instead of the whole file.
     */
-  private def wrap(elements: Seq[PsiElement])(implicit project: Project): WrappedCode = {
+  private def wrap(elements: Seq[PsiElement], incremental: Boolean = false)(implicit project: Project): WrappedCode = {
     require(elements.nonEmpty, "expected elements to be non empty")
 
     val firstElement = elements.head
@@ -207,10 +210,13 @@ object ScalaFmtPreFormatProcessor {
 
     assert(elements.forall(_.getParent == firstElement.getParent), "elements should have the same parent")
 
-    val rootNodeCopy: PsiFile = findPsiFileRoot(firstElement).copy().asInstanceOf[PsiFile]
+    val definitionCopy = if (incremental) copyOfTopLevelDefinition(firstElement, lastElement) else None
+    val (rootNodeCopy, copyShift) = definitionCopy.getOrElse {
+      (findPsiFileRoot(firstElement).copy().asInstanceOf[PsiFile], 0)
+    }
 
-    val firstElementInCopy = findElementAtRange(rootNodeCopy, firstElement.getTextRange)
-    val lastElementInCopy = findElementAtRange(rootNodeCopy, lastElement.getTextRange)
+    val firstElementInCopy = findElementAtRange(rootNodeCopy, firstElement.getTextRange.shiftLeft(copyShift))
+    val lastElementInCopy = findElementAtRange(rootNodeCopy, lastElement.getTextRange.shiftLeft(copyShift))
 
     val elementsInCopy = this.getElementsOfRange(firstElementInCopy, lastElementInCopy).toArray
 
@@ -258,6 +264,157 @@ object ScalaFmtPreFormatProcessor {
     doWrap(firstElementInCopy.getParent, startMarkers ++ elementsInCopy ++ endMarkers)
   }
 
+  /**
+    * @return file with the text of the top-level definition enclosing the elements, preceded with its package clauses,
+    *         and the shift of the definition offset in the copy relative to the original file
+    */
+  private def copyOfTopLevelDefinition(first: PsiElement, last: PsiElement)
+                                      (implicit project: Project): Option[(PsiFile, Int)] = {
+    val topLevel = first.withParentsInFile.find(e => packagePrefix(e.getParent).isDefined)
+    for {
+      definition <- topLevel
+      if definition.getTextRange.contains(last.getTextRange)
+      prefix <- packagePrefix(definition.getParent)
+    } yield {
+      val copy = PsiFileFactory.getInstance(project).createFileFromText(DummyWrapperClassName, ScalaFileType.INSTANCE, prefix + definition.getText)
+      (copy, definition.getTextRange.getStartOffset - prefix.length)
+    }
+  }
+
+  // top-level definitions of packagings with explicit braces are not supported
+  private def packagePrefix(parent: PsiElement): Option[String] = parent match {
+    case _: ScalaFile => Some("")
+    case packaging: ScPackaging if !packaging.isExplicit =>
+      packagePrefix(packaging.getParent).map(_ + s"package ${packaging.packageName}\n")
+    case _ => None
+  }
+
+  /** @return None if the file has packagings with explicit braces */
+  private def topLevelDefinitions(file: PsiFile): Option[Seq[PsiElement]] = {
+    @tailrec
+    def definitionsIn(parent: PsiElement): Option[Seq[PsiElement]] = {
+      val children = parent.children.filter {
+        case _: ScStableCodeReference => false
+        case _: ScalaPsiElement => true
+        case _ => false
+      }.toList
+
+      children match {
+        case (packaging: ScPackaging) :: Nil if !packaging.isExplicit => definitionsIn(packaging)
+        case _ if children.exists(_.isInstanceOf[ScPackaging]) => None
+        case _ => Some(children)
+      }
+    }
+
+    definitionsIn(file)
+  }
+
+  /** @return members of the template body of a type definition, which are formatted separately from each other */
+  private def membersOf(element: PsiElement): Option[Seq[PsiElement]] = element match {
+    case definition: ScTypeDefinition =>
+      Option(definition.physicalExtendsBlock).flatMap(_.templateBody).map {
+        _.children.filter {
+          case _: ScMember | _: ScBlockStatement | _: ScImportStmt => true
+          case _ => false
+        }.toList
+      }
+    case _ => None
+  }
+
+  // hash of the definition text without its members, it includes the whitespaces between the members
+  private def skeletonHash(definition: PsiElement, members: Seq[PsiElement])(implicit fileText: String): Int = {
+    val builder = new java.lang.StringBuilder
+    var offset = definition.getTextRange.getStartOffset
+    members.foreach { member =>
+      builder.append(fileText, offset, member.getTextRange.getStartOffset).append('\u0000')
+      offset = member.getTextRange.getEndOffset
+    }
+    builder.append(fileText, offset, definition.getTextRange.getEndOffset)
+    builder.toString.hashCode
+  }
+
+  private def formattedUnitsHashes(element: PsiElement)(implicit fileText: String): Seq[Int] = {
+    val nested = membersOf(element) match {
+      case Some(members) => skeletonHash(element, members) +: members.flatMap(formattedUnitsHashes)
+      case None => Seq.empty
+    }
+    getText(element).hashCode +: nested
+  }
+
+  /**
+    * @return the smallest elements to format: a definition is descended into
+    *         if only its members were changed since the last formatting
+    */
+  private def changedUnits(element: PsiElement, formattedHashes: Set[Int])(implicit fileText: String): Seq[PsiElement] =
+    if (formattedHashes.contains(getText(element).hashCode)) Seq.empty
+    else membersOf(element) match {
+      case Some(members) if members.nonEmpty && formattedHashes.contains(skeletonHash(element, members)) =>
+        members.flatMap(changedUnits(_, formattedHashes)) match {
+          case Seq() => Seq(element)
+          case changed => changed
+        }
+      case _ => Seq(element)
+    }
+
+  private def formattedDefinitionsHashes(file: PsiFile, config: ScalafmtDynamicConfig): Set[Int] =
+    Option(file.getUserData(FORMATTED_DEFINITIONS_KEY)) match {
+      case Some((configHash, hashes)) if configHash == config.hashCode => hashes
+      case _ => Set.empty
+    }
+
+  private[lang] def rememberFormattedDefinitions(file: PsiFile, config: ScalafmtDynamicConfig): Unit = {
+    implicit val fileText: String = file.getText
+    val hashes = topLevelDefinitions(file).getOrElse(Seq.empty).flatMap(formattedUnitsHashes).toSet
+    file.putUserData(FORMATTED_DEFINITIONS_KEY, (config.hashCode, hashes))
+  }
+
+  /**
+    * Formats only the definitions and template body members changed since the last formatting,
+    * the other ones are recognized by the hash of their text.
+    *
+    * @return false if the whole file should be formatted instead
+    */
+  private def formatChangedDefinitions(file: PsiFile, config: ScalafmtDynamicConfig)
+                                      (implicit project: Project): Boolean = {
+    if (config.hasRewriteRules) return false
+
+    val definitions = topLevelDefinitions(file) match {
+      case Some(result) if result.nonEmpty => result
+      case _ => return false
+    }
+
+    val formattedHashes = formattedDefinitionsHashes(file, config)
+    if (formattedHashes.isEmpty) return false
+
+    val changed = {
+      implicit val fileText: String = file.getText
+      definitions.flatMap(changedUnits(_, formattedHashes))
+    }
+    // formatting of the whole file is cheaper in this case
+    if (changed.map(_.getTextLength).sum * 2 > file.getTextLength) return false
+
+    val formatted = changed.map(d => (d, formatInSingleFile(Seq(d), config, shouldWrap = true, incremental = true)))
+    if (formatted.exists(_._2.isEmpty)) return false
+
+    val manager = PsiDocumentManager.getInstance(project)
+    val document = manager.getDocument(file)
+
+    // from the end of the file, so that the ranges of the preceding elements are not changed
+    formatted.reverseIterator.foreach {
+      case (element, Some(code)) if element.isValid =>
+        implicit val fileText: String = document.getText
+        replaceWithFormatted(Seq(element), code, Seq.empty, element.getTextRange)
+        manager.commitDocument(document)
+      case _ =>
+    }
+
+    if (Log.isDebugEnabled) {
+      Log.debug(s"Incremental scalafmt formatting of ${file.getName}: ${changed.length} changed elements in ${definitions.length} definitions")
+    }
+    rememberFormattedDefinitions(file, config)
+    true
+  }
+
   @tailrec
   private def areAllUpperElementTypeDefinitions(elements: Seq[PsiElement]): Boolean = {
     elements.headOption match {
@@ -331,12 +488,19 @@ object ScalaFmtPreFormatProcessor {
     implicit val fileText: String = file.getText
 
     val rangeIncludesWholeFile = range.contains(file.getTextRange)
+    val incremental = CodeStyle.getCustomSettings(file, classOf[ScalaCodeStyleSettings]).SCALAFMT_INCREMENTAL_FORMAT
 
     var wholeFileFormatError: Option[ScalafmtFormatError] = None
     if (rangeIncludesWholeFile) {
+      if (incremental && formatChangedDefinitions(file, config))
+        return None
+
       formatWithoutCommit(file, config) match {
         case Right(_) =>
           manager.commitDocument(document)
+          if (incremental) {
+            rememberFormattedDefinitions(file, config)
+          }
           return None
         case Left(error: ScalafmtFormatError) =>
           wholeFileFormatError = Some(error)
@@ -350,7 +514,7 @@ object ScalaFmtPreFormatProcessor {
       val rewriteElementsToFormatted: Seq[(PsiElement, WrappedCode)] = attachFormattedCode(rewriteElements, config)
       val noRewriteConfig = if (hasRewriteRules) config.withoutRewriteRules else config
 
-      val result = formatInSingleFile(elements, noRewriteConfig, wrap).map { formatted =>
+      val result = formatInSingleFile(elements, noRewriteConfig, wrap, incremental).map { formatted =>
         val textRangeDelta = replaceWithFormatted(elements, formatted, rewriteElementsToFormatted, range)
         manager.commitDocument(document)
         textRangeDelta
@@ -889,6 +1053,9 @@ object ScalaFmtPreFormatProcessor {
 
   private val FORMATTED_RANGES_KEY: Key[(TextRanges, Long, Option[Long])] = Key.create("scala.fmt.formatted.ranges")
 
+  // config hash -> hashes of the texts of top-level definitions, which are already formatted with the config
+  private val FORMATTED_DEFINITIONS_KEY: Key[(Int, Set[Int])] = Key.create("scala.fmt.formatted.definitions")
+
   private val rangesDeltaCache: mutable.Map[PsiFile, mutable.TreeSet[(Int, Int)]] = mutable.WeakHashMap[PsiFile, mutable.TreeSet[(Int, Int)]]()
 
   private def addDelta(offset: Int, containingFile: PsiFile, delta: Int): Int = {
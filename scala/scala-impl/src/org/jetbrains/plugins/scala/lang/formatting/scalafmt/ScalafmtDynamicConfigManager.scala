@@ -41,14 +41,32 @@ class ScalafmtDynamicConfigManager(implicit project: Project) extends ProjectCom
     if (isScalafmtEnabled) {
       val configFile = scalafmtProjectConfigFile(project, scalaSettings.SCALAFMT_CONFIG_PATH)
       val version = configFile.flatMap(readVersion(_).toOption.flatten).getOrElse(DefaultVersion)
-      ScalafmtDynamicService.instance.resolveAsync(version, project)
+      ScalafmtDynamicService.instance.resolveAsync(version, project, {
+        case Right(fmt) => warmUp(configFile, fmt)
+        case _ =>
+      })
     }
   }
 
+  // resolves the config in background to have a warmed up formatter before the first formatting
+  private def warmUp(configFile: Option[VirtualFile], fmt: ScalafmtReflect): Unit = configFile match {
+    case Some(file) =>
+      executeOnPooledThread {
+        resolveConfig(file, Some(DefaultVersion), FmtVerbosity.Silent, resolveFast = true)
+      }
+    case None =>
+      ScalafmtDynamicService.instance.warmUpAsync(fmt.intellijScalaFmtConfig)
+  }
+
   def clearCaches(): Unit = {
     configsCache.clear()
   }
 
+  /** Drops configs which use evicted formatter of the `version` */
+  def clearCaches(version: ScalafmtVersion): Unit = {
+    configsCache.retain { case (_, cached) => cached.config.fmtReflect.version != version }
+  }
+
   def resolveConfigAsync(configFile: VirtualFile,
                          version: ScalafmtVersion,
                          verbosity: FmtVerbosity,
@@ -94,6 +112,8 @@ class ScalafmtDynamicConfigManager(implicit project: Project) extends ProjectCom
         config
       }
 
+    config.foreach(c => ScalafmtDynamicService.instance.formatterUsed(c.fmtReflect.version))
+
     val timestamp = configFile.map(_.getPath).flatMap(configsCache.get).map(_.vFileModificationTimestamp)
     configWithDialect.map((_, timestamp))
   }
@@ -126,6 +146,7 @@ class ScalafmtDynamicConfigManager(implicit project: Project) extends ProjectCom
               notifyConfigChanges(config, cachedConfig)
             }
             configsCache(configPath) = CachedConfig(config, currentVFileTimestamp, currentDocTimestamp)
+            ScalafmtDynamicService.instance.warmUpAsync(config)
             Right(config)
           case Left(error) =>
             if (verbosity == FmtVerbosity.Verbose) {
@@ -1,9 +1,12 @@
 package org.jetbrains.plugins.scala.lang.formatting.scalafmt
 
 import java.net.URL
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
 
 import com.intellij.notification.{Notification, NotificationAction}
 import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.components.{PersistentStateComponent, ServiceManager, State, Storage}
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.progress.{ProcessCanceledException, ProgressIndicator, Task}
@@ -14,13 +17,14 @@ import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtDynamicServi
 import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtNotifications.FmtVerbosity
 import org.jetbrains.plugins.scala.lang.formatting.scalafmt.dynamic.ScalafmtDynamicDownloader.DownloadProgressListener._
 import org.jetbrains.plugins.scala.lang.formatting.scalafmt.dynamic.ScalafmtDynamicDownloader._
-import org.jetbrains.plugins.scala.lang.formatting.scalafmt.dynamic.{ScalafmtDynamicDownloader, ScalafmtReflect}
+import org.jetbrains.plugins.scala.lang.formatting.scalafmt.dynamic.{ScalafmtDynamicConfig, ScalafmtDynamicDownloader, ScalafmtReflect}
 import org.jetbrains.plugins.scala.util.ScalaCollectionsUtil
 
 import scala.beans.BeanProperty
 import scala.collection.mutable
 import scala.reflect.internal.util.ScalaClassLoader.URLClassLoader
 import scala.util.Try
+import scala.util.control.NonFatal
 import org.jetbrains.plugins.scala.extensions._
 
 @State(
@@ -30,7 +34,19 @@ import org.jetbrains.plugins.scala.extensions._
 class ScalafmtDynamicService extends PersistentStateComponent[ScalafmtDynamicService.ServiceState] {
   private val Log = Logger.getInstance(this.getClass)
 
+  // formatters are shared between all open projects, each of them holds its own classloader
   private val formattersCache: mutable.Map[ScalafmtVersion, ResolveStatus] = ScalaCollectionsUtil.newConcurrentMap
+  private val lastUsed: mutable.Map[ScalafmtVersion, Long] = ScalaCollectionsUtil.newConcurrentMap
+  @volatile private var lastEvictionCheck: Long = System.currentTimeMillis()
+
+  // (version, config hash) pairs, for which the formatter was already warmed up
+  private val warmedUpConfigs = ConcurrentHashMap.newKeySet[(ScalafmtVersion, Int)]()
+
+  private val hits = new LongAdder
+  private val misses = new LongAdder
+  private val evictions = new LongAdder
+  private val warmUps = new LongAdder
+  private val warmUpTime = new LongAdder
 
   private val state: ServiceState = new ServiceState
   override def getState: ServiceState = state
@@ -46,9 +62,82 @@ class ScalafmtDynamicService extends PersistentStateComponent[ScalafmtDynamicSer
       case _ =>
     }
     formattersCache.clear()
+    lastUsed.clear()
+    warmedUpConfigs.clear()
     state.resolvedVersions.clear()
   }
 
+  def stats: FormattersStats = FormattersStats(
+    resolved = formattersCache.count(_._2.isInstanceOf[ResolveStatus.Resolved]),
+    hits = hits.sum(),
+    misses = misses.sum(),
+    evictions = evictions.sum(),
+    warmUps = warmUps.sum(),
+    warmUpTimeMs = warmUpTime.sum() / 1000000
+  )
+
+  /** Should be called by the clients of already resolved formatters, so that they are not evicted as idle ones */
+  def formatterUsed(version: ScalafmtVersion): Unit = {
+    val now = System.currentTimeMillis()
+    lastUsed(version) = now
+    if (now - lastEvictionCheck > EvictionCheckIntervalMs) {
+      evictIdleFormatters(keep = version)
+    }
+  }
+
+  /**
+    * Formats a small snippet with the `config` in background, so that the first real formatting
+    * doesn't pay for class loading and JIT compilation of the formatter.
+    *
+    * @return false if the formatter was already warmed up with the config
+    */
+  def warmUpAsync(config: ScalafmtDynamicConfig): Boolean = {
+    val version = config.fmtReflect.version
+    val isNew = warmedUpConfigs.add((version, config.hashCode))
+    if (isNew) {
+      ApplicationManager.getApplication.executeOnPooledThread(() => {
+        val start = System.nanoTime()
+        try {
+          config.fmtReflect.format(WarmUpCode, config)
+        } catch {
+          case NonFatal(e) => Log.debug(s"Failed to warm up scalafmt $version", e)
+        }
+        warmUps.increment()
+        warmUpTime.add(System.nanoTime() - start)
+
+        if (Log.isDebugEnabled) {
+          Log.debug(s"Scalafmt $version warmed up in ${(System.nanoTime() - start) / 1000000} ms, $stats")
+        }
+      })
+    }
+    isNew
+  }
+
+  private def evictIdleFormatters(keep: ScalafmtVersion): Unit = synchronized {
+    val now = System.currentTimeMillis()
+    lastEvictionCheck = now
+
+    val resolved = formattersCache.toSeq.collect {
+      case (version, ResolveStatus.Resolved(_)) if version != keep => (version, lastUsed.getOrElse(version, 0L))
+    }
+    formattersToEvict(resolved, now).foreach(evict)
+  }
+
+  // the classloader is not closed, as formatting with it may still be in progress,
+  // it is unloaded by GC when the formatter is not referenced anymore
+  private def evict(version: ScalafmtVersion): Unit = {
+    formattersCache.remove(version)
+    lastUsed.remove(version)
+    warmedUpConfigs.removeIf(_._1 == version)
+
+    ProjectManager.getInstance().getOpenProjects.foreach { p =>
+      ScalafmtDynamicConfigManager.instanceIn(p).clearCaches(version)
+    }
+    evictions.increment()
+
+    Log.info(s"Scalafmt $version was evicted, $stats")
+  }
+
   // NOTE: instead of returning download-in-progress error we could reuse downloading process and use it's result
   // NOTE: maybe we should set project in dummy state while downloading formatter?
   def resolve(version: ScalafmtVersion,
@@ -57,10 +146,14 @@ class ScalafmtDynamicService extends PersistentStateComponent[ScalafmtDynamicSer
               resolveFast: Boolean = false,
               progressListener: DownloadProgressListener = NoopProgressListener): ResolveResult = {
     val resolveResult = formattersCache.get(version) match {
-      case Some(ResolveStatus.Resolved(scalaFmt)) => Right(scalaFmt)
+      case Some(ResolveStatus.Resolved(scalaFmt)) =>
+        hits.increment()
+        formatterUsed(version)
+        Right(scalaFmt)
       case _ if resolveFast => Left(ScalafmtResolveError.NotFound(version))
       case Some(ResolveStatus.DownloadInProgress) => Left(ScalafmtResolveError.DownloadInProgress(version))
       case _ =>
+        misses.increment()
         if (state.resolvedVersions.containsKey(version)) {
           val jarUrls = state.resolvedVersions.get(version).map(new URL(_))
           resolveClassPath(version, jarUrls)
@@ -97,6 +190,8 @@ class ScalafmtDynamicService extends PersistentStateComponent[ScalafmtDynamicSer
       )
       state.resolvedVersions.put(version, jarUrls.toArray.map(_.toString))
       formattersCache(version) = ResolveStatus.Resolved(scalaFmt)
+      lastUsed(version) = System.currentTimeMillis()
+      evictIdleFormatters(keep = version)
       scalaFmt
     }.toEither.left.map {
       case e: ReflectiveOperationException =>
@@ -190,6 +285,30 @@ object ScalafmtDynamicService {
 
   val DefaultVersion = "1.5.1"
 
+  private[lang] val MaxResolvedFormatters = 4
+  private[lang] val IdleTimeoutMs = 30 * 60 * 1000L
+  private val EvictionCheckIntervalMs = 60 * 1000L
+
+  /**
+    * @param lastUsed resolved formatters, except the one which is being used, with their last usage time
+    * @return idle formatters and the least recently used ones above the limit
+    */
+  private[lang] def formattersToEvict(lastUsed: Seq[(ScalafmtVersion, Long)], now: Long): Seq[ScalafmtVersion] = {
+    val sorted = lastUsed.sortBy(_._2)
+    val idle = sorted.filter { case (_, time) => now - time > IdleTimeoutMs }
+    val overLimit = sorted.take(sorted.size + 1 - MaxResolvedFormatters)
+    (idle ++ overLimit).map(_._1).distinct
+  }
+
+  private val WarmUpCode =
+    """object WarmUp {
+      |  def foo(a: Int, b: String): Option[String] = if (a > 0) Some(b * a) else None
+      |  val xs = List(1, 2, 3).map { x => x + 1 }.filter(_ > 2)
+      |}
+      |""".stripMargin
+
+  case class FormattersStats(resolved: Int, hits: Long, misses: Long, evictions: Long, warmUps: Long, warmUpTimeMs: Long)
+
   def instance: ScalafmtDynamicService = ServiceManager.getService(classOf[ScalafmtDynamicService])
 
   type ResolveResult = Either[ScalafmtResolveError, ScalafmtReflect]
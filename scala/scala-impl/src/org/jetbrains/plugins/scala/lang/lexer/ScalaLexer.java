@@ -113,6 +113,8 @@ public class ScalaLexer extends Lexer {
     previousToken = myTokenType;
 
     if (myTokenType == null) {
+      if (myCurrentLexer == myScalaPlainLexer && locatePlainScalaToken()) return;
+
       IElementType type = myCurrentLexer.getTokenType();
       int start = myCurrentLexer.getTokenStart();
       CharSequence tokenText = myCurrentLexer.getBufferSequence().subSequence(start, myCurrentLexer.getTokenEnd());
@@ -231,7 +233,7 @@ public class ScalaLexer extends Lexer {
       } else if ((type == XmlTokenType.XML_REAL_WHITE_SPACE ||
           type == XmlTokenType.XML_WHITE_SPACE ||
           type == XmlTokenType.TAG_WHITE_SPACE) &&
-          tokenText.toString().matches("\\s*\n(\n|\\s)*")) {
+          isLineBreakWhiteSpace(tokenText)) {
         type = ScalaTokenTypes.tWHITE_SPACE_IN_LINE;
       } else if (type == null || !(type instanceof IXmlLeafElementType) && !ScalaXmlTokenTypes.isSubstituted(type)) {
         ++xmlSteps;
@@ -247,6 +249,48 @@ public class ScalaLexer extends Lexer {
     }
   }
 
+  /**
+   * Most tokens of a file are plain Scala tokens outside of xml, they don't need any of the checks above.
+   * Fast path for them doesn't take a subsequence of the token text and leaves xml state untouched.
+   */
+  private boolean locatePlainScalaToken() {
+    if (myBraceStack.size() > 0 || !myLayeredTagStack.isEmpty()) return false;
+
+    IElementType type = myCurrentLexer.getTokenType();
+    if (type == null || type == SCALA_XML_CONTENT_START ||
+        type instanceof IXmlLeafElementType || ScalaXmlTokenTypes.isSubstituted(type) ||
+        type == XmlTokenType.XML_REAL_WHITE_SPACE || type == XmlTokenType.XML_WHITE_SPACE || type == XmlTokenType.TAG_WHITE_SPACE) {
+      return false;
+    }
+
+    myTokenType = type;
+    locateTextRange();
+    myCurrentLexer.advance();
+    return true;
+  }
+
+  // equivalent of matching "\\s*\n(\n|\\s)*"
+  private static boolean isLineBreakWhiteSpace(CharSequence text) {
+    boolean hasLineBreak = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '\n':
+          hasLineBreak = true;
+          break;
+        case ' ':
+        case '\t':
+        case '\u000B':
+        case '\f':
+        case '\r':
+          break;
+        default:
+          return false;
+      }
+    }
+    return hasLineBreak;
+  }
+
   private boolean startsWith(CharSequence chars, String prefix) {
     int i = 0;
     int charsLength = chars.length();
@@ -272,15 +316,16 @@ public class ScalaLexer extends Lexer {
     myTokenEnd = myCurrentLexer.getTokenEnd();
   }
 
+  // checks that the text after the token doesn't match XML_BEGIN_PATTERN after leading whitespaces
   private boolean checkNotNextXmlBegin(Lexer lexer) {
-    String text = lexer.getBufferSequence().toString();
-    int beginIndex = lexer.getTokenEnd();
-    if (beginIndex < text.length()) {
-      text = text.substring(beginIndex).trim();
-      if (text.length() > 2) {
-        text = text.substring(0, 2);
-      }
-      return !text.matches(XML_BEGIN_PATTERN);
+    CharSequence buffer = lexer.getBufferSequence();
+    int length = buffer.length();
+    int index = lexer.getTokenEnd();
+    while (index < length && buffer.charAt(index) <= ' ') index++;
+
+    if (index + 1 < length && buffer.charAt(index) == '<') {
+      char next = buffer.charAt(index + 1);
+      return !(next >= 'a' && next <= 'z' || next >= 'A' && next <= 'Z' || next >= '0' && next <= '9' || next == '_');
     }
     return true;
   }
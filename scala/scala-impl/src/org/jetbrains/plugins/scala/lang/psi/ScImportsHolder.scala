@@ -24,10 +24,12 @@ import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.{ScImportExpr,
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScObject
 import org.jetbrains.plugins.scala.lang.psi.api.{ScalaFile, ScalaPsiElement}
 import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiElementFactory._
+import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.imports.ImportTable
 import org.jetbrains.plugins.scala.lang.psi.impl.{ScalaFileImpl, ScalaPsiElementFactory, ScalaStubBasedElementImpl}
 import org.jetbrains.plugins.scala.lang.psi.types.api.designator.ScDesignatorType
 import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil
 import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
+import org.jetbrains.plugins.scala.macroAnnotations.{CachedInUserData, ModCount}
 
 import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
@@ -46,6 +48,10 @@ trait ScImportsHolder extends ScalaPsiElement {
       findChildrenByClassScala(classOf[ScImportStmt]).toSeq
   }
 
+  /** Imports of all statements of this holder by imported names, used to resolve references by name */
+  @CachedInUserData(this, ModCount.getBlockModificationCount)
+  def importTable: ImportTable = ImportTable(getImportStatements)
+
   override def processDeclarations(processor: PsiScopeProcessor,
       state : ResolveState,
       lastParent: PsiElement,
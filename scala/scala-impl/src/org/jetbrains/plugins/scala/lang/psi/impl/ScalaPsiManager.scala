@@ -5,6 +5,7 @@ package impl
 
 import java.util
 import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.atomic.LongAdder
 
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.components.ProjectComponent
@@ -19,9 +20,10 @@ import com.intellij.psi.search.{DelegatingGlobalSearchScope, GlobalSearchScope,
 import com.intellij.util.containers.ContainerUtil
 import com.intellij.util.{ArrayUtil, ObjectUtils}
 import org.jetbrains.annotations.TestOnly
-import org.jetbrains.plugins.scala.caches.{CachesUtil, ScalaShortNamesCacheManager}
+import org.jetbrains.plugins.scala.caches.PackagePartitionedCache.parentOf
+import org.jetbrains.plugins.scala.caches.{CachesUtil, PackagePartitionedCache, ScalaShortNamesCacheManager}
 import org.jetbrains.plugins.scala.extensions._
-import org.jetbrains.plugins.scala.lang.psi.api.PropertyMethods
+import org.jetbrains.plugins.scala.lang.psi.api.{PropertyMethods, ScalaFile}
 import org.jetbrains.plugins.scala.lang.psi.api.expr.ScExpression
 import org.jetbrains.plugins.scala.lang.psi.api.statements.ScTypeAlias
 import org.jetbrains.plugins.scala.lang.psi.api.statements.params.idToName
@@ -61,6 +63,18 @@ class ScalaPsiManager(implicit val project: Project) {
   private val clearCacheOnTopLevelChange = new mutable.ArrayBuffer[util.Map[_ <: Any, _ <: Any]]()
   private val clearCacheOnRootsChange = new mutable.ArrayBuffer[util.Map[_ <: Any, _ <: Any]]()
 
+  //lookups of classes and packages, they are invalidated only for packages touched by a top-level change
+  private val packagePartitionedCaches = new mutable.ArrayBuffer[PackagePartitionedCache[_, _]]()
+
+  private val partialTopLevelFlushes = new LongAdder
+  private val fullTopLevelFlushes = new LongAdder
+
+  private def packagePartitionedCache[K, V](name: String, packageOf: K => String, scopeOf: K => GlobalSearchScope) = {
+    val cache = new PackagePartitionedCache[K, V](s"ScalaPsiManager.$name", packageOf, scopeOf)
+    packagePartitionedCaches += cache
+    cache
+  }
+
   val collectImplicitObjectsCache: ConcurrentMap[(ScType, GlobalSearchScope), Seq[ScType]] =
     ContainerUtil.newConcurrentMap[(ScType, GlobalSearchScope), Seq[ScType]]()
 
@@ -110,12 +124,19 @@ class ScalaPsiManager(implicit val project: Project) {
 
   import ScalaIndexKeys._
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.SofterReference, clearCacheOnTopLevelChange)
+  private val packageImplicitObjectsCache =
+    packagePartitionedCache[(String, GlobalSearchScope), Iterable[ScObject]]("getPackageImplicitObjectsCached",
+      key => ScalaNamesUtil.cleanFqn(key._1), _._2)
+
   private def getPackageImplicitObjectsCached(fqn: String, scope: GlobalSearchScope): Iterable[ScObject] =
-    IMPLICIT_OBJECT_KEY.elements(ScalaNamesUtil.cleanFqn(fqn), scope, classOf[ScObject])
+    packageImplicitObjectsCache.getOrCompute((fqn, scope)) {
+      IMPLICIT_OBJECT_KEY.elements(ScalaNamesUtil.cleanFqn(fqn), scope, classOf[ScObject])
+    }
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.SofterReference, clearCacheOnTopLevelChange)
-  def getCachedPackage(inFqn: String): Option[PsiPackage] = {
+  private val packagesCache =
+    packagePartitionedCache[String, Option[PsiPackage]]("getCachedPackage", ScalaNamesUtil.cleanFqn, _ => null)
+
+  def getCachedPackage(inFqn: String): Option[PsiPackage] = packagesCache.getOrCompute(inFqn) {
     //to find java packages with scala keyword name as PsiPackage not ScSyntheticPackage
     val fqn = ScalaNamesUtil.cleanFqn(inFqn)
     Option(JavaPsiFacade.getInstance(project).findPackage(fqn))
@@ -133,8 +154,11 @@ class ScalaPsiManager(implicit val project: Project) {
   def getCachedPackageInScope(fqn: String, scope: GlobalSearchScope): Option[PsiPackage] =
     getCachedPackage(fqn).filter(isPackageInScope(_, scope))
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.SofterReference, clearCacheOnTopLevelChange)
-  def getCachedClass(scope: GlobalSearchScope, fqn: String): Option[PsiClass] = {
+  private val classCache =
+    packagePartitionedCache[(GlobalSearchScope, String), Option[PsiClass]]("getCachedClass",
+      key => parentOf(ScalaNamesUtil.cleanFqn(key._2)), _._1)
+
+  def getCachedClass(scope: GlobalSearchScope, fqn: String): Option[PsiClass] = classCache.getOrCompute((scope, fqn)) {
     def getCachedFacadeClass(scope: GlobalSearchScope, fqn: String): Option[PsiClass] = {
       inJavaPsiFacade.set(true)
       try {
@@ -171,8 +195,12 @@ class ScalaPsiManager(implicit val project: Project) {
     else getClassesImpl(pack, scope)
   }
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.None, clearCacheOnTopLevelChange)
-  private def getClassesCached(pack: PsiPackage, scope: GlobalSearchScope): Array[PsiClass] = getClassesImpl(pack, scope)
+  private val packageClassesCache =
+    packagePartitionedCache[(PsiPackage, GlobalSearchScope), Array[PsiClass]]("getClassesCached",
+      _._1.getQualifiedName, _._2)
+
+  private def getClassesCached(pack: PsiPackage, scope: GlobalSearchScope): Array[PsiClass] =
+    packageClassesCache.getOrCompute((pack, scope))(getClassesImpl(pack, scope))
 
   private[this] def getClassesImpl(pack: PsiPackage, scope: GlobalSearchScope): Array[PsiClass] = {
     val classes = {
@@ -189,8 +217,15 @@ class ScalaPsiManager(implicit val project: Project) {
     classes ++ scalaClasses
   }
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.SofterReference, clearCacheOnTopLevelChange)
-  def getCachedClasses(scope: GlobalSearchScope, fqn: String): Array[PsiClass] = {
+  private val classesCache =
+    packagePartitionedCache[(GlobalSearchScope, String), Array[PsiClass]]("getCachedClasses",
+      key => parentOf(ScalaNamesUtil.cleanFqn(key._2)), _._1)
+
+  def getCachedClasses(scope: GlobalSearchScope, fqn: String): Array[PsiClass] =
+    if (DumbService.getInstance(project).isDumb) Array.empty
+    else classesCache.getOrCompute((scope, fqn))(findClasses(scope, fqn))
+
+  private def findClasses(scope: GlobalSearchScope, fqn: String): Array[PsiClass] = {
     def getCachedFacadeClasses(scope: GlobalSearchScope, fqn: String): Array[PsiClass] = {
       inJavaPsiFacade.set(true)
       try {
@@ -206,8 +241,6 @@ class ScalaPsiManager(implicit val project: Project) {
       }
     }
 
-    if (DumbService.getInstance(project).isDumb) return Array.empty
-
     val classes = getCachedFacadeClasses(scope, ScalaNamesUtil.cleanFqn(fqn))
     val fromScala = ScalaShortNamesCacheManager.getInstance(project).getClassesByFQName(fqn, scope)
     ArrayUtil.mergeArrays(classes, ArrayUtil.mergeArrays(fromScala.toArray, SyntheticClassProducer.getAllClasses(fqn, scope)))
@@ -222,29 +255,38 @@ class ScalaPsiManager(implicit val project: Project) {
     getJavaPackageClassNamesCached(psiPackage, scope)
   }
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.None, clearCacheOnTopLevelChange)
-  private def getJavaPackageClassNamesCached(psiPackage: PsiPackage, scope: GlobalSearchScope): Set[String] = {
-    val key = ScalaNamesUtil.cleanFqn(psiPackage.getQualifiedName)
-    val classes = JAVA_CLASS_NAME_IN_PACKAGE_KEY.elements(key, scope, classOf[PsiClass]).toSet
+  private val javaPackageClassNamesCache =
+    packagePartitionedCache[(PsiPackage, GlobalSearchScope), Set[String]]("getJavaPackageClassNamesCached",
+      _._1.getQualifiedName, _._2)
 
-    val additionalClasses = classes.flatMap {
-      case definition: ScTypeDefinition => definition.additionalClassJavaName
-      case _ => None
-    }
+  private def getJavaPackageClassNamesCached(psiPackage: PsiPackage, scope: GlobalSearchScope): Set[String] =
+    javaPackageClassNamesCache.getOrCompute((psiPackage, scope)) {
+      val key = ScalaNamesUtil.cleanFqn(psiPackage.getQualifiedName)
+      val classes = JAVA_CLASS_NAME_IN_PACKAGE_KEY.elements(key, scope, classOf[PsiClass]).toSet
 
-    classes.map(_.getName) ++ additionalClasses
-  }
+      val additionalClasses = classes.flatMap {
+        case definition: ScTypeDefinition => definition.additionalClassJavaName
+        case _ => None
+      }
+
+      classes.map(_.getName) ++ additionalClasses
+    }
 
   def getScalaClassNames(psiPackage: PsiPackage, scope: GlobalSearchScope): Set[String] = {
     if (DumbService.getInstance(project).isDumb) return Set.empty
     getScalaClassNamesCached(psiPackage, scope)
   }
 
-  @CachedWithoutModificationCount(synchronized = false, ValueWrapper.None, clearCacheOnTopLevelChange)
+  private val scalaClassNamesCache =
+    packagePartitionedCache[(PsiPackage, GlobalSearchScope), Set[String]]("getScalaClassNamesCached",
+      _._1.getQualifiedName, _._2)
+
   def getScalaClassNamesCached(psiPackage: PsiPackage, scope: GlobalSearchScope): Set[String] =
-    CLASS_NAME_IN_PACKAGE_KEY.elements(ScalaNamesUtil.cleanFqn(psiPackage.getQualifiedName), scope, classOf[PsiClass])
-      .map(_.name)
-      .toSet
+    scalaClassNamesCache.getOrCompute((psiPackage, scope)) {
+      CLASS_NAME_IN_PACKAGE_KEY.elements(ScalaNamesUtil.cleanFqn(psiPackage.getQualifiedName), scope, classOf[PsiClass])
+        .map(_.name)
+        .toSet
+    }
 
   private def clearCaches(): Unit = {
     new ProjectContext(project).typeSystem.clearCache()
@@ -262,10 +304,25 @@ class ScalaPsiManager(implicit val project: Project) {
 
   private def clearOnLowMemory(): Unit = clearAllCaches()
 
-  private def clearOnTopLevelChange(): Unit = {
+  /**
+    * @param change packages and files touched by the change, all lookups of classes and packages are dropped if it's unknown
+    */
+  private def clearOnTopLevelChange(change: Option[ScalaPsiManager.TopLevelChange] = None): Unit = {
     clearOnChange()
     clearCacheOnTopLevelChange.foreach(_.clear())
-    syntheticPackages.clear()
+
+    change match {
+      case Some(ScalaPsiManager.TopLevelChange(packages, files)) =>
+        val partitions = packagePartitionedCaches.map(_.invalidate(packages, files)).sum
+        syntheticPackages.keySet().removeIf(fqn => packages.exists(PackagePartitionedCache.isRelated(_, fqn)))
+        partialTopLevelFlushes.increment()
+
+        ScalaPsiManager.LOG.debug(s"Clear lookups of classes in packages ${packages.mkString(", ")}, dropped partitions: $partitions")
+      case None =>
+        packagePartitionedCaches.foreach(_.clear())
+        syntheticPackages.clear()
+        fullTopLevelFlushes.increment()
+    }
   }
 
   private def clearOnRootsChange(): Unit = {
@@ -273,6 +330,12 @@ class ScalaPsiManager(implicit val project: Project) {
     clearCacheOnRootsChange.foreach(_.clear())
   }
 
+  /** Count of top-level changes which dropped lookups of classes and packages only for the touched packages */
+  def partialTopLevelFlushesCount: Long = partialTopLevelFlushes.sum()
+
+  /** Count of top-level changes and root changes which dropped all lookups of classes and packages */
+  def fullTopLevelFlushesCount: Long = fullTopLevelFlushes.sum()
+
   private[impl] def projectOpened(): Unit = {
     import ScalaPsiManager._
 
@@ -371,6 +434,12 @@ class ScalaPsiManager(implicit val project: Project) {
     @volatile
     private var topLevelModCount: Long = 0L
 
+    import ScalaPsiManager.TopLevelChange
+
+    //packages of the changed file before the change, e.g. package clause may be changed
+    //events are fired in write action, so there is no need to synchronize
+    private var changeBefore: Option[TopLevelChange] = Some(TopLevelChange.empty)
+
     private def fromIdeaInternalFile(event: PsiTreeChangeEvent) = {
       val virtFile = event.getFile match {
         case null => event.getOldValue.asOptionOf[VirtualFile]
@@ -391,6 +460,9 @@ class ScalaPsiManager(implicit val project: Project) {
     }
 
     private def onPsiChange(event: PsiTreeChangeEvent, psiElement: PsiElement): Unit = {
+      val before = changeBefore
+      changeBefore = Some(TopLevelChange.empty)
+
       if (!shouldClear(event)) return
 
       ScalaPsiManager.LOG.debug(s"Clear caches on psi change: $event")
@@ -414,10 +486,48 @@ class ScalaPsiManager(implicit val project: Project) {
           clearOnChange()
         case count =>
           topLevelModCount = count
-          clearOnTopLevelChange()
+          clearOnTopLevelChange(touchedByChange(before, event))
       }
     }
 
+    private def touchedByChange(before: Option[TopLevelChange], event: PsiTreeChangeEvent): Option[TopLevelChange] =
+      for {
+        beforeChange <- before
+        afterChange <- changedFile(event).flatMap(TopLevelChange.of)
+      } yield beforeChange.union(afterChange)
+
+    private def beforeChange(event: PsiTreeChangeEvent): Unit = {
+      val touched = changedFile(event).flatMap(TopLevelChange.of)
+      changeBefore = for {
+        previous <- changeBefore
+        current <- touched
+      } yield previous.union(current)
+    }
+
+    //moved files and changes of directories may affect anything
+    private def changedFile(event: PsiTreeChangeEvent): Option[PsiFile] = event match {
+      case _ if event.getOldParent != null || event.getNewParent != null => None
+      case _ if event.getFile != null => Some(event.getFile)
+      case _ =>
+        (event.getChild, event.getElement) match {
+          case (file: PsiFile, _) => Some(file)
+          case (null, file: PsiFile) => Some(file)
+          case _ => None
+        }
+    }
+
+    override def beforeChildRemoval(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
+    override def beforeChildReplacement(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
+    override def beforeChildAddition(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
+    override def beforeChildrenChange(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
+    override def beforeChildMovement(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
+    override def beforePropertyChange(event: PsiTreeChangeEvent): Unit = beforeChange(event)
+
     override def childRemoved(event: PsiTreeChangeEvent): Unit = onPsiChange(event, event.getParent)
 
     override def childReplaced(event: PsiTreeChangeEvent): Unit = onPsiChange(event, event.getNewChild)
@@ -456,6 +566,53 @@ object ScalaPsiManager {
   }
 
   object AnyScalaPsiModificationTracker extends SimpleModificationTracker
+
+  /**
+    * Packages and files touched by a top-level change.
+    *
+    * @param files changed files, empty if some of them are not physical
+    */
+  private[impl] case class TopLevelChange(packages: Set[String], files: Seq[VirtualFile]) {
+    def union(other: TopLevelChange): TopLevelChange = {
+      val allFiles =
+        if (packages.nonEmpty && files.isEmpty || other.packages.nonEmpty && other.files.isEmpty) Seq.empty
+        else (files ++ other.files).distinct
+      TopLevelChange(packages ++ other.packages, allFiles)
+    }
+  }
+
+  private[impl] object TopLevelChange {
+    val empty = TopLevelChange(Set.empty, Seq.empty)
+
+    //classes of files which are not class owners are unknown,
+    //the root package is related to any package, so it's not needed for scala files with packagings
+    def of(file: PsiFile): Option[TopLevelChange] = {
+      val packages = file match {
+        case scalaFile: ScalaFile if scalaFile.isScriptFile || scalaFile.isWorksheetFile => Some(Set.empty[String])
+        case scalaFile: ScalaFile =>
+          def packagingNames(packaging: ScPackaging): Seq[String] =
+            packaging.fullPackageName +: packaging.packagings.flatMap(packagingNames)
+
+          val packagings = scalaFile.children.collect {
+            case packaging: ScPackaging => packaging
+          }.toSeq
+          Some(if (packagings.isEmpty) Set("") else packagings.flatMap(packagingNames).toSet)
+        case javaFile: PsiJavaFile => Some(Set(javaFile.getPackageName))
+        case classOwner: PsiClassOwner => Some(classesPackages(classOwner))
+        case _ => None
+      }
+
+      packages.map { names =>
+        val files = Option(file.getVirtualFile).toSeq
+        TopLevelChange(names, if (names.isEmpty) Seq.empty else files)
+      }
+    }
+
+    private def classesPackages(classOwner: PsiClassOwner): Set[String] =
+      classOwner.getClasses.flatMap(clazz => Option(clazz.getQualifiedName))
+        .map(PackagePartitionedCache.parentOf)
+        .toSet + classOwner.getPackageName
+  }
 }
 
 class ScalaPsiManagerComponent(project: Project) extends ProjectComponent {
@@ -0,0 +1,69 @@
+package org.jetbrains.plugins.scala
+package lang
+package psi
+package impl
+package toplevel
+package imports
+
+import com.intellij.psi.PsiElement
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.{ScImportExpr, ScImportStmt}
+import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil.clean
+
+/**
+  * Import expressions of all import statements of an imports holder, indexed by decoded imported names.
+  * Wildcard imports are listed separately, as they may import any name.
+  *
+  * Targets of the imports are not stored: resolve of the import references is cached by references themselves.
+  */
+final class ImportTable private(statements: Map[ScImportStmt, ImportTable.StatementImports]) {
+
+  /**
+    * Import expressions of the statement, preceding `lastParent`, which may import an element with the name.
+    * The last expression goes first, as in the order of processing.
+    *
+    * @return `None` if the statement doesn't belong to the holder of this table
+    */
+  def candidates(statement: ScImportStmt, name: String, lastParent: PsiElement): Option[Iterator[ScImportExpr]] =
+    statements.get(statement).map(_.candidates(clean(name), lastParent))
+}
+
+object ImportTable {
+
+  def apply(statements: Seq[ScImportStmt]): ImportTable =
+    new ImportTable(statements.map(statement => statement -> StatementImports(statement.importExprs)).toMap)
+
+  private class StatementImports(exprs: Array[ScImportExpr],
+                                 byName: Map[String, Array[Int]],
+                                 wildcards: Array[Int]) {
+
+    def candidates(decodedName: String, lastParent: PsiElement): Iterator[ScImportExpr] = {
+      val limit = lastParent match {
+        case expr: ScImportExpr if exprs.contains(expr) => exprs.indexOf(expr)
+        case _ => exprs.length
+      }
+
+      val indices = byName.getOrElse(decodedName, Array.emptyIntArray) ++ wildcards
+      indices.filter(_ < limit).sorted.reverseIterator.map(exprs)
+    }
+  }
+
+  private object StatementImports {
+
+    def apply(importExprs: Seq[ScImportExpr]): StatementImports = {
+      val exprs = importExprs.toArray
+
+      //expressions without reference import nothing
+      val indices = exprs.indices.filter(exprs(_).reference.isDefined)
+      val (wildcards, named) = indices.partition(exprs(_).isSingleWildcard)
+
+      val byName = named
+        .flatMap(idx => exprs(idx).importedNames.map(name => clean(name) -> idx))
+        .groupBy(_._1)
+        .map {
+          case (name, pairs) => name -> pairs.map(_._2).distinct.toArray
+        }
+
+      new StatementImports(exprs, byName, wildcards.toArray)
+    }
+  }
+}
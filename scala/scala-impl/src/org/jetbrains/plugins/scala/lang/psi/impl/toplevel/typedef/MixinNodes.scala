@@ -8,13 +8,16 @@ package impl
 package toplevel
 package typedef
 
+import java.util
+import java.util.concurrent.atomic.AtomicReferenceArray
 import java.util.{List => JList}
 
 import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.util.registry.Registry
 import com.intellij.psi.{PsiClass, PsiClassType, PsiNamedElement}
 import com.intellij.util.containers.{ContainerUtil, SmartHashSet}
 import com.intellij.util.{AstLoadingFilter, SmartList}
-import gnu.trove.{THashMap, THashSet, TObjectHashingStrategy}
+import gnu.trove.{THashMap, THashSet, TObjectHashingStrategy, TObjectIntHashMap}
 import org.jetbrains.plugins.scala.caches.CachesUtil
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.api.expr.ScNewTemplateDefinition
@@ -56,7 +59,7 @@ abstract class MixinNodes[T <: Signature] {
     else {
       AstLoadingFilter.disallowTreeLoading { () =>
 
-        val map = new Map
+        val map = MixinNodes.newMap[T]
 
         addAllFrom(clazz, ScSubstitutor.empty, map)
         map.thisFinished()
@@ -78,7 +81,7 @@ abstract class MixinNodes[T <: Signature] {
   }
 
   def build(cp: ScCompoundType, compoundThisType: Option[ScType] = None): Map = {
-    val map = new Map
+    val map = MixinNodes.newMap[T]
 
     processRefinement(cp, map)
     map.thisFinished()
@@ -156,22 +159,12 @@ object MixinNodes {
     def primarySuper: Option[Node[T]] = concreteSuper.orElse(supers.headOption)
   }
 
-  class Map[T <: Signature] {
-
-    private val allNames: THashSet[String] = new THashSet[String]
-    private[Map] val implicitNames: SmartHashSet[String] = new SmartHashSet[String]
-
-    private val thisSignaturesByName: THashMap[String, JList[T]] = new THashMap()
-    private val supersSignaturesByName: THashMap[String, JList[T]] = new THashMap()
-
-    private val forNameCache = ContainerUtil.newConcurrentMap[String, AllNodes[T]]()
+  abstract class Map[T <: Signature] {
 
     private lazy val implicitNodes: Seq[Node[T]] = {
-      val res = new ArrayBuffer[Node[T]](implicitNames.size)
-      val iterator = implicitNames.iterator()
-      while (iterator.hasNext) {
-        val thisMap = forName(iterator.next)
-        thisMap.nodesIterator.foreach { node =>
+      val res = new ArrayBuffer[Node[T]]
+      implicitNames.foreach { name =>
+        forName(name).nodesIterator.foreach { node =>
           if (node.info.isImplicit) {
             res += node
           }
@@ -180,26 +173,15 @@ object MixinNodes {
       res
     }
 
-    private var fromSuper: Boolean = false
+    def thisFinished(): Unit
 
-    def thisFinished(): Unit = {
-      fromSuper = true
-    }
+    private[MixinNodes] def addToMap(signature: T): Unit
 
-    private[MixinNodes] def addToMap(signature: T) {
-      val name = signature.name
-      val buffer =
-        if (fromSuper) supersSignaturesByName.computeIfAbsent(name, _ => new SmartList[T])
-        else thisSignaturesByName.computeIfAbsent(name, _ => new SmartList[T])
+    protected def names: Iterator[String]
 
-      buffer.add(signature)
+    protected def implicitNames: Iterator[String]
 
-      allNames.add(name)
-
-      if (signature.isImplicit)
-        implicitNames.add(name)
-
-    }
+    def forName(name: String): AllNodes[T]
 
     def nodesIterator(decodedName: String,
                       isSupers: Boolean,
@@ -217,74 +199,257 @@ object MixinNodes {
       else allIterator
     }
 
-    def allNodesIterator: Iterator[Node[T]] = allNames.iterator().asScala.map(forName).flatMap(_.nodesIterator)
+    def allNodesIterator: Iterator[Node[T]] = names.map(forName).flatMap(_.nodesIterator)
 
     def allSignatures: Iterator[T] = allNodesIterator.map(_.info)
+  }
+
+  private class DefaultMap[T <: Signature] extends Map[T] {
+
+    private val allNames: THashSet[String] = new THashSet[String]
+    private val implicitNamesSet: SmartHashSet[String] = new SmartHashSet[String]
+
+    private val thisSignaturesByName: THashMap[String, JList[T]] = new THashMap()
+    private val supersSignaturesByName: THashMap[String, JList[T]] = new THashMap()
+
+    private val forNameCache = ContainerUtil.newConcurrentMap[String, AllNodes[T]]()
+
+    private var fromSuper: Boolean = false
+
+    def thisFinished(): Unit = {
+      fromSuper = true
+    }
+
+    private[MixinNodes] def addToMap(signature: T) {
+      val name = signature.name
+      val buffer =
+        if (fromSuper) supersSignaturesByName.computeIfAbsent(name, _ => new SmartList[T])
+        else thisSignaturesByName.computeIfAbsent(name, _ => new SmartList[T])
+
+      buffer.add(signature)
+
+      allNames.add(name)
+
+      if (signature.isImplicit)
+        implicitNamesSet.add(name)
+
+    }
+
+    protected def names: Iterator[String] = allNames.iterator().asScala
+
+    protected def implicitNames: Iterator[String] = implicitNamesSet.iterator().asScala
 
     def forName(name: String): AllNodes[T] = {
       val cleanName = ScalaNamesUtil.clean(name)
       def calculate: AllNodes[T] = {
         val thisSignatures = thisSignaturesByName.getOrDefault(cleanName, ContainerUtil.emptyList[T])
         val superSignatures = supersSignaturesByName.getOrDefault(cleanName, ContainerUtil.emptyList[T])
-        merge(thisSignatures, superSignatures)
+        merge(thisSignatures.iterator().asScala, superSignatures.iterator().asScala)
       }
       forNameCache.atomicGetOrElseUpdate(cleanName, calculate)
     }
+  }
 
-    private def merge(thisSignatures: JList[T], superSignatures: JList[T]): AllNodes[T] = {
+  /**
+    * Keeps all signatures in a single array, names are replaced by ids local to the map.
+    * Signatures are grouped by name once the map is built, and merged into nodes only for requested names.
+    *
+    * Signatures of supers are still collected eagerly while the map is built: nodes of any name need the super
+    * signatures with this name, and [[MixinNodes]] implementations can only process all members of a class at once.
+    */
+  private class CompactMap[T <: Signature] extends Map[T] {
+
+    //used only while the map is built
+    private var buffer = new CompactMap.Buffer
+
+    private lazy val index: CompactMap.Index = {
+      val result = buffer.toIndex
+      buffer = null
+      result
+    }
 
-      val nodesMap = NodesMap.empty[T]
-      val privates = PrivateNodes.empty[T]
+    def thisFinished(): Unit = buffer.thisFinished()
 
-      thisSignatures.forEach { thisSig =>
+    private[MixinNodes] def addToMap(signature: T): Unit = buffer.add(signature)
 
-        val node = new Node(thisSig, fromSuper = false)
+    protected def names: Iterator[String] = index.names.iterator
 
-        if (thisSig.isPrivate) {
-          privates.add(node)
-        }
-        else {
-          nodesMap.putIfAbsent(thisSig, node) match {
-            case null => // all as expected, unique signature inserted
-            case old =>
-              if (thisSig.isSynthetic && !old.info.isAbstract) {
-                // reinsert real node back instead of synthetic
-                nodesMap.put(thisSig, old)
-              }
-          }
+    protected def implicitNames: Iterator[String] = index.implicitNames
+
+    def forName(name: String): AllNodes[T] = {
+      val idx = index
+      val id = idx.nameId(ScalaNamesUtil.clean(name))
+      if (id < 0) return AllNodes.empty[T]
+
+      idx.merged.get(id) match {
+        case null =>
+          val calculated = merge(idx.signatures[T](id, fromSuper = false), idx.signatures[T](id, fromSuper = true))
+          if (idx.merged.compareAndSet(id, null, calculated)) calculated
+          else idx.merged.get(id).asInstanceOf[AllNodes[T]]
+        case cached => cached.asInstanceOf[AllNodes[T]]
+      }
+    }
+  }
+
+  private object CompactMap {
+
+    private class Buffer {
+      private val nameIds = new TObjectIntHashMap[String]()
+      private val names = ArrayBuffer.empty[String]
+      private val implicitNameIds = new util.BitSet()
+
+      private var signatures = new Array[Signature](16)
+      private var signatureNameIds = new Array[Int](16)
+      private var size = 0
+      private var thisSize = -1
+
+      def thisFinished(): Unit = thisSize = size
+
+      def add(signature: Signature): Unit = {
+        val id = nameId(signature.name)
+
+        if (size == signatures.length) {
+          signatures = util.Arrays.copyOf(signatures, size * 2)
+          signatureNameIds = util.Arrays.copyOf(signatureNameIds, size * 2)
         }
+        signatures(size) = signature
+        signatureNameIds(size) = id
+        size += 1
+
+        if (signature.isImplicit)
+          implicitNameIds.set(id)
       }
 
-      superSignatures.forEach { superSig =>
-        val superNode = new Node(superSig, fromSuper = true)
-        if (superSig.isPrivate) {
-          privates.add(superNode)
+      //ids are stored incremented, because absent key is mapped to 0
+      private def nameId(name: String): Int = nameIds.get(name) match {
+        case 0 =>
+          names += name
+          nameIds.put(name, names.size)
+          names.size - 1
+        case id => id - 1
+      }
+
+      //stable counting sort by name id keeps signatures of this class before signatures of supers
+      def toIndex: Index = {
+        val namesCount = names.size
+        val starts = new Array[Int](namesCount + 1)
+        var i = 0
+        while (i < size) {
+          starts(signatureNameIds(i) + 1) += 1
+          i += 1
         }
-        else {
-          nodesMap.putIfAbsent(superSig, superNode) match {
-            case null => // not seen before
-            case old if !superNode.info.isAbstract && (old.info.isSynthetic || old.info.isAbstract) =>
-              //force update thisMap with a non-abstract and non-synthetic node
-              nodesMap.put(superSig, superNode)
-
-              //and copy already collected nodes to it
-              old.supers.foreach(superNode.addSuper)
-              old.concreteSuper.foreach(superNode.setConcreteSuper)
-
-            case old =>
-              old.addSuper(superNode)
-              if (!superNode.info.isAbstract) {
-                old.setConcreteSuper(superNode)
-              }
-          }
+        i = 0
+        while (i < namesCount) {
+          starts(i + 1) += starts(i)
+          i += 1
+        }
+
+        val sorted = new Array[Signature](size)
+        val next = util.Arrays.copyOf(starts, namesCount)
+        //super signatures of a name are placed after signatures of this class with the same name
+        val superStarts = util.Arrays.copyOf(starts, namesCount)
+        val lastThisIndex = if (thisSize < 0) size else thisSize
+        i = 0
+        while (i < size) {
+          val id = signatureNameIds(i)
+          sorted(next(id)) = signatures(i)
+          next(id) += 1
+          if (i < lastThisIndex) superStarts(id) += 1
+          i += 1
+        }
+
+        nameIds.compact()
+        new Index(names.toArray, nameIds, starts, superStarts, sorted, implicitNameIds)
+      }
+    }
+
+    private class Index(val names: Array[String],
+                        nameIds: TObjectIntHashMap[String],
+                        starts: Array[Int],
+                        superStarts: Array[Int],
+                        sorted: Array[Signature],
+                        implicitNameIds: util.BitSet) {
+
+      val merged = new AtomicReferenceArray[AllNodes[_]](names.length)
+
+      def nameId(name: String): Int = nameIds.get(name) - 1
+
+      def implicitNames: Iterator[String] =
+        Iterator.iterate(implicitNameIds.nextSetBit(0))(id => implicitNameIds.nextSetBit(id + 1))
+          .takeWhile(_ >= 0)
+          .map(names(_))
+
+      def signatures[T <: Signature](id: Int, fromSuper: Boolean): Iterator[T] = {
+        val from = if (fromSuper) superStarts(id) else starts(id)
+        val until = if (fromSuper) starts(id + 1) else superStarts(id)
+        Iterator.range(from, until).map(sorted(_).asInstanceOf[T])
+      }
+    }
+  }
+
+  private def merge[T <: Signature](thisSignatures: Iterator[T], superSignatures: Iterator[T]): AllNodes[T] = {
+
+    val nodesMap = NodesMap.empty[T]
+    val privates = PrivateNodes.empty[T]
+
+    thisSignatures.foreach { thisSig =>
+
+      val node = new Node(thisSig, fromSuper = false)
+
+      if (thisSig.isPrivate) {
+        privates.add(node)
+      }
+      else {
+        nodesMap.putIfAbsent(thisSig, node) match {
+          case null => // all as expected, unique signature inserted
+          case old =>
+            if (thisSig.isSynthetic && !old.info.isAbstract) {
+              // reinsert real node back instead of synthetic
+              nodesMap.put(thisSig, old)
+            }
         }
       }
+    }
 
-      new AllNodes(nodesMap, privates)
+    superSignatures.foreach { superSig =>
+      val superNode = new Node(superSig, fromSuper = true)
+      if (superSig.isPrivate) {
+        privates.add(superNode)
+      }
+      else {
+        nodesMap.putIfAbsent(superSig, superNode) match {
+          case null => // not seen before
+          case old if !superNode.info.isAbstract && (old.info.isSynthetic || old.info.isAbstract) =>
+            //force update thisMap with a non-abstract and non-synthetic node
+            nodesMap.put(superSig, superNode)
+
+            //and copy already collected nodes to it
+            old.supers.foreach(superNode.addSuper)
+            old.concreteSuper.foreach(superNode.setConcreteSuper)
+
+          case old =>
+            old.addSuper(superNode)
+            if (!superNode.info.isAbstract) {
+              old.setConcreteSuper(superNode)
+            }
+        }
+      }
     }
+
+    new AllNodes(nodesMap, privates)
   }
 
-  def emptyMap[T <: Signature]: MixinNodes.Map[T] = new MixinNodes.Map[T]
+  val CompactMapKey = "scala.mixin.nodes.compact.map"
+
+  Registry.addKey(CompactMapKey,
+    "Store members of classes in a compact form, nodes for a name are merged only when the name is requested " +
+      "(members of supers are still collected when the map is built)", false, false)
+
+  def newMap[T <: Signature]: MixinNodes.Map[T] =
+    if (Registry.is(CompactMapKey)) new CompactMap[T]
+    else new DefaultMap[T]
+
+  def emptyMap[T <: Signature]: MixinNodes.Map[T] = newMap[T]
 
   class AllNodes[T <: Signature](publics: NodesMap[T], privates: PrivateNodes[T]) {
 
@@ -325,6 +490,12 @@ object MixinNodes {
     def isEmpty: Boolean = publics.isEmpty && privates.isEmpty
   }
 
+  object AllNodes {
+    private val Empty = new AllNodes[Signature](NodesMap.empty, PrivateNodes.empty)
+
+    def empty[T <: Signature]: AllNodes[T] = Empty.asInstanceOf[AllNodes[T]]
+  }
+
   //each set contains private members of some class with a fixed name
   //most of them are of size 0 and 1
   type PrivateNodes[T <: Signature] = SmartList[Node[T]]
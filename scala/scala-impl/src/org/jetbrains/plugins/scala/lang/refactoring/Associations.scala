@@ -2,6 +2,10 @@ package org.jetbrains.plugins.scala
 package lang
 package refactoring
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.intellij.concurrency.JobLauncher
 import com.intellij.openapi.diagnostic.{Attachment, Logger}
 import com.intellij.openapi.progress.util.AbstractProgressIndicatorBase
 import com.intellij.openapi.progress.{ProcessCanceledException, ProgressManager}
@@ -14,7 +18,7 @@ import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
 import org.jetbrains.plugins.scala.lang.psi.api.base.ScReference
 
-import scala.collection.{JavaConverters, mutable}
+import scala.collection.JavaConverters
 
 final class Associations private(override val associations: Array[Association])
   extends AssociationsData(associations, Associations)
@@ -102,27 +106,48 @@ object Associations extends AssociationsData.Companion(classOf[Associations], "S
       }
   }
 
+  /**
+    * Groups of references with the same name are resolved concurrently, one reference per group.
+    * Groups which are not resolved before the time-out are dropped.
+    */
   def collectAssociations(ranges: TextRange*)
                          (implicit file: ScalaFile): Associations = {
-    val buffer = mutable.ArrayBuffer.empty[Association]
-    var result: Associations = null
+    import JavaConverters._
+
+    val groups = for {
+      range <- ranges
+      references <- Dependency.referenceGroups(range)
+    } yield (range, references)
+
+    val buffer = new ConcurrentLinkedQueue[Association]()
+    val resolvedGroups = new AtomicInteger()
+    val resolvedReferences = new AtomicInteger()
+
     try {
+      val indicator = new ProgressIndicator
       ProgressManager.getInstance().runProcess(
         (() => {
-          for {
-            range <- ranges
-
-            (path, references) <- Dependency.collect(range)
-            reference <- references
-
-          } buffer += Association(path, reference.getTextRange.shiftRight(-range.getStartOffset))
+          JobLauncher.getInstance().invokeConcurrentlyUnderProgress(groups.asJava, indicator, true, false, (group: (TextRange, Seq[ScReference])) => {
+            val (range, references) = group
+
+            for {
+              path <- Dependency.pathsFor(references, range)
+              reference <- references
+            } buffer.add(Association(path, reference.getTextRange.shiftRight(-range.getStartOffset)))
+
+            resolvedGroups.incrementAndGet()
+            resolvedReferences.addAndGet(references.size)
+            true
+          })
         }): Runnable,
-        new ProgressIndicator
+        indicator
       )
     } catch {
       case _: ProcessCanceledException =>
+        val droppedReferences = groups.map(_._2.size).sum - resolvedReferences.get
         logger.warn(
-          s"""Time-out while collecting dependencies in ${file.getName}:
+          s"""Time-out while collecting dependencies in ${file.getName}, resolved ${resolvedGroups.get} of ${groups.size} names,
+             |associations of $droppedReferences references are dropped:
              |${subText(ranges.head)}""".stripMargin
         )
       case e: Exception =>
@@ -130,11 +155,9 @@ object Associations extends AssociationsData.Companion(classOf[Associations], "S
           case (range, index) => new Attachment(s"Selection-${index + 1}.scala", subText(range))
         }
         logger.error(e.getMessage, e, attachments: _*)
-    } finally {
-      result = Associations(buffer.toArray)
     }
 
-    result
+    Associations(buffer.asScala.toArray.sortBy(_.range.getStartOffset))
   }
 
   private class ProgressIndicator extends AbstractProgressIndicatorBase {
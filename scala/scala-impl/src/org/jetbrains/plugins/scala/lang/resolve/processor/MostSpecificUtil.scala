@@ -25,7 +25,7 @@ import org.jetbrains.plugins.scala.lang.psi.types.result._
 import org.jetbrains.plugins.scala.lang.resolve.MethodTypeProvider._
 import org.jetbrains.plugins.scala.project.ProjectContext
 
-import scala.collection.Set
+import scala.collection.{Set, mutable}
 import scala.collection.mutable.ArrayBuffer
 
 /**
@@ -35,6 +35,11 @@ import scala.collection.mutable.ArrayBuffer
 case class MostSpecificUtil(elem: PsiElement, length: Int) {
   implicit def ctx: ProjectContext = elem
 
+  // Candidates are compared pairwise, the same pairs are compared again for every layer of implicit parameters
+  // and for the second pass with implicit conversions. Both maps live as long as this instance, i.e. one call site.
+  private val signatures = mutable.HashMap.empty[SignatureKey, Signature]
+  private val asSpecificAsResults = mutable.HashMap.empty[(SignatureKey, SignatureKey, Boolean), Boolean]
+
   def mostSpecificForResolveResult(applicable: Set[ScalaResolveResult],
                                    hasTypeParametersCall: Boolean = false,
                                    expandInnerResult: Boolean = true): Option[ScalaResolveResult] = {
@@ -87,38 +92,64 @@ case class MostSpecificUtil(elem: PsiElement, length: Int) {
   private class InnerScalaResolveResult[T](val element: PsiNamedElement, val implicitConversionClass: Option[PsiClass],
                                            val repr: T, val substitutor: ScSubstitutor,
                                            val callByNameImplicit: Boolean = false,
-                                           val implicitCase: Boolean = false)
+                                           val implicitCase: Boolean = false) {
+    val key: SignatureKey = SignatureKey(element, substitutor, implicitCase)
+
+    lazy val signature: Signature = signatures.getOrElseUpdate(key, new Signature(key))
+  }
+
+  private case class SignatureKey(element: PsiNamedElement, substitutor: ScSubstitutor, implicitCase: Boolean)
+
+  /**
+    * Types of a candidate, which are compared with types of other candidates.
+    * They are computed once per candidate instead of once per compared pair.
+    */
+  private class Signature(key: SignatureKey) {
+    lazy val tpe: ScType = getType(key.element, key.implicitCase)
+
+    lazy val substitutedType: ScType = key.substitutor(tpe)
+
+    lazy val params: Either[Seq[Parameter], ScType] = calcParams(substitutedType, undefine = false)
+
+    lazy val undefinedParams: Either[Seq[Parameter], ScType] = calcParams(substitutedType, undefine = true)
+
+    lazy val clazz: Option[PsiClass] = getClazz(key.element)
+  }
+
+  private def calcParams(tp: ScType, undefine: Boolean): Either[Seq[Parameter], ScType] = {
+    def toExistentialArg(tp: TypeParameter) =
+      ScExistentialArgument(tp.name, tp.typeParameters, tp.lowerType, tp.upperType)
+
+    tp match {
+      case ScMethodType(_, params, _) => Left(params)
+      case ScTypePolymorphicType(ScMethodType(_, params, _), typeParams) =>
+        if (!undefine) Left(params)
+        else {
+          val s = ScSubstitutor.bind(typeParams)(UndefinedType(_))
+          Left(params.map(p => p.copy(paramType = s(p.paramType))))
+        }
+      case ScTypePolymorphicType(internal, typeParams) =>
+        val s = ScSubstitutor.bind(typeParams)(toExistentialArg)
+        Right(ScExistentialType(s(internal)))
+      case _ => Right(tp)
+    }
+  }
 
-  //todo: make implementation closer to scala.tools.nsc.typechecker.Infer.Inferencer.isAsSpecific
   private def isAsSpecificAs[T](r1: InnerScalaResolveResult[T], r2: InnerScalaResolveResult[T],
-                                checkImplicits: Boolean): Boolean = {
+                                checkImplicits: Boolean): Boolean =
+    asSpecificAsResults.getOrElseUpdate((r1.key, r2.key, checkImplicits), computeIsAsSpecificAs(r1, r2, checkImplicits))
+
+  //todo: make implementation closer to scala.tools.nsc.typechecker.Infer.Inferencer.isAsSpecific
+  private def computeIsAsSpecificAs[T](r1: InnerScalaResolveResult[T], r2: InnerScalaResolveResult[T],
+                                       checkImplicits: Boolean): Boolean = {
 
     def lastRepeated(params: Seq[Parameter]): Boolean = params.lastOption.exists(_.isRepeated)
 
     (r1.element, r2.element) match {
       case (m1 @ (_: PsiMethod | _: ScFun), m2 @ (_: PsiMethod | _: ScFun)) =>
-        val (t1, t2) = (r1.substitutor(getType(m1, r1.implicitCase)), r2.substitutor(getType(m2, r2.implicitCase)))
-
-        def calcParams(tp: ScType, undefine: Boolean): Either[Seq[Parameter], ScType] = {
-          def toExistentialArg(tp: TypeParameter) =
-            ScExistentialArgument(tp.name, tp.typeParameters, tp.lowerType, tp.upperType)
-
-          tp match {
-            case ScMethodType(_, params, _) => Left(params)
-            case ScTypePolymorphicType(ScMethodType(_, params, _), typeParams) =>
-              if (!undefine) Left(params)
-              else {
-                val s = ScSubstitutor.bind(typeParams)(UndefinedType(_))
-                Left(params.map(p => p.copy(paramType = s(p.paramType))))
-              }
-            case ScTypePolymorphicType(internal, typeParams) =>
-              val s = ScSubstitutor.bind(typeParams)(toExistentialArg)
-              Right(ScExistentialType(s(internal)))
-            case _ => Right(tp)
-          }
-        }
+        val (t1, t2) = (r1.signature.substitutedType, r2.signature.substitutedType)
 
-        val conformance = (calcParams(t1, undefine = false), calcParams(t2, undefine = true)) match {
+        val conformance = (r1.signature.params, r2.signature.undefinedParams) match {
             case (Left(p1), Left(p2)) =>
               var (params1, params2) = (p1, p2)
               if ((t1.isInstanceOf[ScTypePolymorphicType] && t2.isInstanceOf[ScTypePolymorphicType] ||
@@ -188,10 +219,8 @@ case class MostSpecificUtil(elem: PsiElement, length: Int) {
           case _ => false
         }
       case (_, _: PsiMethod) => true
-      case (e1, e2) =>
-        val t1: ScType = getType(e1, r1.implicitCase)
-        val t2: ScType = getType(e2, r2.implicitCase)
-        t1.conforms(t2)
+      case _ =>
+        r1.signature.tpe.conforms(r2.signature.tpe)
     }
   }
 
@@ -200,7 +229,7 @@ case class MostSpecificUtil(elem: PsiElement, length: Int) {
       .asOptionOf[PsiMember]
       .flatMap(_.containingClass.toOption)
 
-  private def getClazz(res: InnerScalaResolveResult[_]): Option[PsiClass] = getClazz(res.element)
+  private def getClazz(res: InnerScalaResolveResult[_]): Option[PsiClass] = res.signature.clazz
 
   /**
    * c1 is a subclass of c2, or
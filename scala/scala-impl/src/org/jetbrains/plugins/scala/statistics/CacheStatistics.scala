@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.scala.statistics
 
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{LongAccumulator, LongAdder}
 
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.util.containers.ContainerUtil
@@ -15,35 +16,74 @@ import scala.collection.JavaConverters._
 *  Author: Svyatoslav Ilinskiy
 *  Date: 10/9/15.
 */
-class CacheStatistics private(id: String, name: String) {
-  @volatile
-  var cachedAreaEntrances: Long = 0
-  @volatile
-  var cachesRecalculated: Long = 0
+class CacheStatistics private(id: String, val name: String) {
+  import CacheStatistics._
+
+  //counters are always on, they are updated by code generated for cached annotations
+  private val entrances = new LongAdder
+  private val recalculations = new LongAdder
+  private val invalidations = new LongAdder
+  private val totalTime = new LongAdder
+  private val maxTime = new LongAccumulator((x, y) => Math.max(x, y), 0)
+  private val timeHistogram = Array.fill(HistogramSize)(new LongAdder)
+
+  //the following is used only with "-Xmacro-settings:analyze-caches"
   val objectsToKeepTrackOf = ContainerUtil.newConcurrentSet[WeakReference[AnyRef]]
-  val calculationTimes = ContainerUtil.newConcurrentSet[Long]()
 
-  val memoryMeter = new MemoryMeter()
+  lazy val memoryMeter = new MemoryMeter()
 
   //we could ask time of entrance to measure time locality
   //also, we could find out whether multiple threads are calculating this cache at the same time
   def aboutToEnterCachedArea(): Unit = {
-    cachedAreaEntrances += 1
+    if (enabled) entrances.increment()
   }
 
   def recalculatingCache(): Unit = {
-    cachesRecalculated += 1
+    if (enabled) recalculations.increment()
+  }
+
+  /** Cached value was dropped because of a modification */
+  def cacheInvalidated(): Unit = {
+    if (enabled) invalidations.increment()
   }
 
   def reportTimeToCalculate(time: Long): Unit = {
+    if (enabled) {
+      totalTime.add(time)
+      maxTime.accumulate(time)
+      timeHistogram(histogramBucket(time)).increment()
+    }
+  }
+
+  /** @return start time to be passed to [[recalculationFinished]] */
+  def recalculationStarted(): Long =
+    if (enabled) {
+      recalculations.increment()
+      System.nanoTime()
+    } else 0L
 
-    calculationTimes.add(time)
+  def recalculationFinished(startTime: Long): Unit = {
+    if (enabled) reportTimeToCalculate(System.nanoTime() - startTime)
   }
 
-  def hits: Long = cachedAreaEntrances - cachesRecalculated
+  def hits: Long = Math.max(cachedAreaEntrances - cachesRecalculated, 0)
 
   def misses: Long = cachesRecalculated
 
+  def cachedAreaEntrances: Long = entrances.sum()
+
+  def cachesRecalculated: Long = recalculations.sum()
+
+  def cachesInvalidated: Long = invalidations.sum()
+
+  /** Total time of calculations in nanoseconds, including time of nested cached calculations */
+  def timeToCalculate: Long = totalTime.sum()
+
+  def averageTime: Double = {
+    val recalculated = cachesRecalculated
+    if (recalculated == 0) 0 else timeToCalculate.toDouble / recalculated
+  }
+
   def addCacheObject(obj: Any): Unit = obj match {
     case ref: AnyRef => objectsToKeepTrackOf.add(new WeakReference[AnyRef](ref))
     case _ => //it's a primitive, its size is so tiny, so let's ignore it for now
@@ -65,18 +105,18 @@ class CacheStatistics private(id: String, name: String) {
     }
   }
 
-  override def toString: String = {
-    val calcTimes: Set[Long] = calculationTimes.asScala.toSet //efficient because not concurrent
-
-    if (!calculationTimes.isEmpty) {
-      val (maxTime, minTime, averageTime) = (calcTimes.max, calcTimes.min, calcTimes.sum.toDouble / calcTimes.size)
+  /** Calculation counts by time, upper bound of a bucket is `2 ^ index` nanoseconds */
+  def histogram: Seq[(Long, Long)] =
+    timeHistogram.indices.map(i => (1L << i, timeHistogram(i).sum())).filter(_._2 > 0)
 
+  override def toString: String = {
+    if (cachesRecalculated > 0) {
       val timeSaved = hits * averageTime
       s"""
        |*************************************************************
        |$name
-       |hits: $hits, misses: $misses
-       |maxTime: $maxTime, minTime: $minTime, averageTime: $averageTime
+       |hits: $hits, misses: $misses, invalidations: $cachesInvalidated
+       |maxTime: ${maxTime.get()}, averageTime: $averageTime
        |time saved (hits * averageTime): $timeSaved
        |****************************
      """.stripMargin
@@ -93,24 +133,50 @@ class CacheStatistics private(id: String, name: String) {
 object CacheStatistics {
   import scala.collection.JavaConverters._
 
+  private val HistogramSize = 40
+
   private val caches = new ConcurrentHashMap[String, CacheStatistics]()
 
+  /**
+    * Counters can be switched off to measure their overhead, see TypeInferenceBenchmarkBase.
+    */
+  @volatile
+  var enabled: Boolean = true
+
+  private def histogramBucket(time: Long): Int =
+    Math.min(64 - java.lang.Long.numberOfLeadingZeros(Math.max(time, 1) - 1), HistogramSize - 1)
+
   def printStats(): Unit = {
     val logger = Logger.getInstance(this.getClass)
     logger.setLevel(Level.INFO)
     caches.values().asScala.foreach (c => logger.info(c.toString))
   }
 
-  def apply(id: String, name: String): CacheStatistics = Option(caches.get(id)) match {
-    case Some(res) => res
-    case _ => synchronized {
-      Option(caches.get(id)) match {
-        case Some(res) => res
-        case _ =>
-          val res = new CacheStatistics(id, name)
-          caches.put(id, res)
-          res
-      }
+  def all: Seq[CacheStatistics] = caches.values().asScala.toSeq
+
+  /**
+    * Caches ordered by the time spent in calculations, the most expensive ones first.
+    */
+  def report(limit: Int = 100): String = {
+    val used = all.filter(_.cachesRecalculated > 0).sortBy(-_.timeToCalculate)
+
+    val builder = new StringBuilder
+    builder ++= f"${"cache"}%-70s ${"entrances"}%12s ${"hits"}%12s ${"misses"}%12s ${"invalidated"}%12s ${"hit rate"}%9s ${"total ms"}%10s ${"avg us"}%10s ${"max ms"}%10s\n"
+
+    used.take(limit).foreach { stats =>
+      val entrances = stats.cachedAreaEntrances
+      val hitRate = if (entrances == 0) 0.0 else stats.hits * 100.0 / entrances
+
+      builder ++= f"${stats.name}%-70s $entrances%12d ${stats.hits}%12d ${stats.misses}%12d ${stats.cachesInvalidated}%12d $hitRate%8.1f%% " +
+        f"${stats.timeToCalculate / 1000000.0}%10.1f ${stats.averageTime / 1000.0}%10.1f ${stats.maxTime.get() / 1000000.0}%10.1f\n"
     }
+
+    if (used.size > limit) builder ++= s"... ${used.size - limit} more\n"
+    builder.toString()
+  }
+
+  def apply(id: String, name: String): CacheStatistics = caches.get(id) match {
+    case null => caches.computeIfAbsent(id, _ => new CacheStatistics(id, name))
+    case res => res
   }
 }
@@ -59,6 +59,7 @@ object CleanWorksheetAction {
       inWriteAction {
         CleanWorksheetAction.resetScrollModel(viewer)
         WorksheetCache.getInstance(project).removePrinter(editor)
+        WorksheetCache.getInstance(project).clearPlainRunState(file.getCanonicalPath)
         CleanWorksheetAction.cleanWorksheet(psiFile.getNode, editor, viewer, project)
 
         parent.remove(splitPane)
@@ -0,0 +1,233 @@
+package org.jetbrains.plugins.scala
+package worksheet.processor
+
+import java.io.File
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.psi.{PsiComment, PsiElement, PsiWhiteSpace}
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.{ScalaFile, ScalaPsiElement}
+import org.jetbrains.plugins.scala.lang.psi.api.base.{ScReference, ScStableCodeReference}
+import org.jetbrains.plugins.scala.lang.psi.api.statements.{ScFunction, ScTypeAlias, ScValueOrVariable}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScPackaging
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.ScImportStmt
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.{ScMember, ScTypeDefinition}
+import org.jetbrains.plugins.scala.worksheet.runconfiguration.WorksheetCache
+
+import scala.annotation.tailrec
+import scala.collection.mutable
+
+/**
+  * Plain worksheet is compiled as a chain of classes (units), each one extending the previous one.
+  * On the next run units before the first changed one are not recompiled (their classes from the previous run
+  * are still in the output directory) and their printed output is reused by [[worksheet.ui.WorksheetDefaultEditorPrinter]].
+  *
+  * Kept units are not re-evaluated only in the sense that their results are not printed again:
+  * the worksheet runs in a fresh JVM, so constructing the last unit still runs initializers of all units in the chain.
+  */
+object WorksheetIncrementalChain {
+
+  /**
+    * @param className name of the unit class, qualified with its enclosing object
+    * @param lastLine  document line where the last statement of the unit ends
+    */
+  case class CompiledUnit(className: String, fingerprint: Int, lastLine: Int)
+
+  /** State of the printer right after the output of a statement ending at `lastLine` */
+  case class PrintedChunk(lastLine: Int, outputLength: Int, foldingsCount: Int, insertedToOriginal: Int)
+
+  /**
+    * @param environment package and module the units are compiled for
+    */
+  case class PendingRun(units: Seq[CompiledUnit], keptUnits: Int, environment: String)
+
+  case class CommittedRun(units: Seq[CompiledUnit], environment: String, prefix: String, output: String,
+                          chunks: Seq[PrintedChunk], foldings: Seq[(Int, Int, Int, Int)]) {
+
+    def restorePoint(keptUnits: Int): Option[PrintedChunk] =
+      if (keptUnits <= 0 || keptUnits > units.length) None
+      else {
+        val lastLine = units(keptUnits - 1).lastLine
+        chunks.reverseIterator.find(_.lastLine <= lastLine).filter(_.lastLine == lastLine)
+      }
+  }
+
+  /**
+    * @param unitStarts statements starting a unit (except the first one) mapped to the unit index
+    * @param keptUnits  count of units from the previous run which are reused
+    */
+  case class ChainPlan(units: Seq[CompiledUnit], unitStarts: Map[PsiElement, Int], keptUnits: Int) {
+    def unitClassName(idx: Int): String = units(idx).className
+  }
+
+  def isStatement(element: PsiElement): Boolean = element match {
+    case _: PsiWhiteSpace | _: PsiComment | _: ScPackaging => false
+    case _: ScalaPsiElement => true
+    case _ => false
+  }
+
+  /**
+    * Splits top-level elements of the worksheet into units and compares them with the last successful run.
+    * Registers the result as pending run of the file in [[WorksheetCache]].
+    */
+  def plan(srcFile: ScalaFile, elements: Seq[PsiElement], document: Document,
+           objectName: String, environment: String): Option[ChainPlan] = {
+    val statements = elements.filter(isStatement).toIndexedSeq
+    if (statements.isEmpty) return None
+
+    val starts = splitIntoUnits(statements)
+
+    val text = document.getImmutableCharSequence
+    val unitsBounds = starts.zip(starts.tail :+ statements.length)
+
+    val newUnits = unitsBounds.zipWithIndex.map {
+      case ((start, end), idx) =>
+        val textStart = if (start == 0) 0 else statements(start - 1).getTextRange.getEndOffset
+        val textEnd = statements(end - 1).getTextRange.getEndOffset
+        val fingerprint = text.subSequence(textStart, textEnd).toString.hashCode
+
+        CompiledUnit(s"$objectName.${unitClassName(objectName, idx)}", fingerprint, document.getLineNumber(textEnd))
+    }
+
+    val filePath = srcFile.getViewProvider.getVirtualFile.getCanonicalPath
+    val cache = WorksheetCache.getInstance(srcFile.getProject)
+
+    val committedRun = cache.getPlainRunState(filePath)
+
+    val keptUnits = committedRun match {
+      case Some(committed) if committed.environment == environment =>
+        val unchanged = newUnits.zip(committed.units).takeWhile {
+          case (unit, old) => unit.fingerprint == old.fingerprint && unit.lastLine == old.lastLine
+        }.length
+
+        //nothing changed means explicit rerun
+        if (unchanged == newUnits.length || committed.restorePoint(unchanged).isEmpty) 0 else unchanged
+      case _ => 0
+    }
+
+    val units = newUnits.zipWithIndex.map {
+      case (unit, idx) if idx < keptUnits => unit.copy(className = committedRun.get.units(idx).className)
+      case (unit, _) => unit
+    }
+
+    cache.setPendingPlainRun(filePath, PendingRun(units, keptUnits, environment))
+
+    val unitStarts = starts.zipWithIndex.collect {
+      case (start, idx) if idx > 0 => (statements(start): PsiElement) -> idx
+    }.toMap
+    Some(ChainPlan(units, unitStarts, keptUnits))
+  }
+
+  def unitClassName(objectName: String, idx: Int): String = s"${objectName}u$idx"
+
+  private val UnitClassName = """A\$A(\d+)\.A\$A\1u(\d+)""".r
+
+  //A$A<iteration>, its nested and anonymous classes and classes of its units: A$A<iteration>$A$A<iteration>u<idx>
+  private val ChainClassFile = """A\$A(\d+)(?:\$A\$A\1u(\d+))?[.$].*""".r
+
+  /**
+    * Deletes classes of the previous runs from the output directory,
+    * except the ones of `liveUnits` (and of their enclosing objects), which may still be reused by the next run.
+    */
+  def deleteStaleClasses(outputDir: File, liveUnits: Seq[String]): Unit = {
+    val live = liveUnits.collect {
+      case UnitClassName(iteration, idx) => (iteration.toInt, idx.toInt)
+    }.toSet
+    val liveIterations = live.map(_._1)
+
+    def isStale(fileName: String): Boolean = fileName match {
+      case ChainClassFile(iteration, null) => !liveIterations.contains(iteration.toInt)
+      case ChainClassFile(iteration, idx) => !live.contains((iteration.toInt, idx.toInt))
+      case _ => false
+    }
+
+    def deleteIn(dir: File): Unit = Option(dir.listFiles()).getOrElse(Array.empty[File]).foreach { file =>
+      if (file.isDirectory) deleteIn(file)
+      else if (isStale(file.getName)) FileUtil.delete(file)
+    }
+
+    deleteIn(outputDir)
+  }
+
+  /**
+    * Statement can't be separated from a statement it is tied to: companions and overloads,
+    * forward references, usages of private members, sealed hierarchies and imports from the worksheet itself.
+    *
+    * @return indices of the statements starting a unit
+    */
+  private def splitIntoUnits(statements: IndexedSeq[PsiElement]): Seq[Int] = {
+    val count = statements.length
+    val defined = statements.map(definedNames)
+    val definitions = mutable.HashMap.empty[String, mutable.ArrayBuffer[Int]]
+    for (idx <- 0 until count; name <- defined(idx)) {
+      definitions.getOrElseUpdate(name, mutable.ArrayBuffer.empty) += idx
+    }
+
+    //the farthest statement, which has to be in the same unit
+    val reach = Array.tabulate(count)(identity)
+    def tie(from: Int, to: Int): Unit = reach(from) = reach(from) max to
+
+    definitions.valuesIterator.foreach { indices =>
+      tie(indices.head, indices.last)
+    }
+
+    for (idx <- 0 until count) {
+      val statement = statements(idx)
+
+      for (name <- referencedNames(statement); definedAt <- definitions.getOrElse(name, Seq.empty)) {
+        if (definedAt > idx) tie(idx, definedAt)
+        else if (definedAt < idx && isPrivate(statements(definedAt))) tie(definedAt, idx)
+      }
+
+      val affectsAllFollowing = statement match {
+        case td: ScTypeDefinition => td.getModifierList.isSealed
+        case imp: ScImportStmt => imp.importExprs.exists(_.qualifier match {
+          case null => false
+          case qualifier => definitions.contains(rootOf(qualifier).refName)
+        })
+        case _ => false
+      }
+      if (affectsAllFollowing) tie(idx, count - 1)
+    }
+
+    val starts = mutable.ArrayBuffer(0)
+    var maxReach = 0
+    for (idx <- 0 until count - 1) {
+      maxReach = maxReach max reach(idx)
+      if (maxReach <= idx && startsOnNewLine(statements(idx + 1))) starts += idx + 1
+    }
+    starts
+  }
+
+  private def definedNames(statement: PsiElement): Seq[String] = statement match {
+    case td: ScTypeDefinition => Seq(td.name)
+    case fun: ScFunction => Seq(fun.name)
+    case alias: ScTypeAlias => Seq(alias.name)
+    case valOrVar: ScValueOrVariable => valOrVar.declaredNames
+    case _ => Seq.empty
+  }
+
+  private def referencedNames(statement: PsiElement): Set[String] =
+    statement.depthFirst().collect {
+      case ref: ScReference => ref.refName
+    }.toSet
+
+  private def isPrivate(statement: PsiElement): Boolean = statement match {
+    case member: ScMember => member.getModifierList.accessModifier.exists(_.isPrivate)
+    case _ => false
+  }
+
+  @tailrec
+  private def rootOf(reference: ScStableCodeReference): ScStableCodeReference = reference.qualifier match {
+    case Some(qualifier) => rootOf(qualifier)
+    case _ => reference
+  }
+
+  private def startsOnNewLine(statement: PsiElement): Boolean = statement.getPrevSibling match {
+    case null => true
+    case ws: PsiWhiteSpace => ws.getText.contains('\n') || startsOnNewLine(ws)
+    case comment: PsiComment => startsOnNewLine(comment)
+    case _ => false
+  }
+}
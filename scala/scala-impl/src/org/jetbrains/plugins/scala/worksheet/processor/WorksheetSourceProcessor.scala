@@ -3,6 +3,7 @@ package worksheet.processor
 
 import com.intellij.openapi.editor.{Document, Editor}
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.roots.OrderEnumerator
 import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi._
@@ -20,6 +21,7 @@ import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef._
 import org.jetbrains.plugins.scala.lang.psi.api.{ScalaFile, ScalaPsiElement}
 import org.jetbrains.plugins.scala.project._
 import org.jetbrains.plugins.scala.settings.ScalaProjectSettings
+import org.jetbrains.plugins.scala.worksheet.processor.WorksheetIncrementalChain.ChainPlan
 import org.jetbrains.plugins.scala.worksheet.runconfiguration.WorksheetCache
 import org.jetbrains.plugins.scala.worksheet.settings.WorksheetCommonSettings
 import org.jetbrains.plugins.scala.worksheet.ui.WorksheetIncrementalEditorPrinter.QueuedPsi
@@ -128,19 +130,34 @@ object WorksheetSourceProcessor {
          | object $name {
          |""".stripMargin
 
-    val classRes = new StringBuilder(s"final class $classPrologue { \n")
+    val isChainable = !isForObject(srcFile)
+    val rootChildren = if (isChainable) srcFile.getChildren.toSeq else Seq.empty
+
+    val filePath = srcFile.getViewProvider.getVirtualFile.getCanonicalPath
+    //units compiled against another classpath or with other compiler options can't be reused
+    val compilationHash = moduleOpt.map { module =>
+      (OrderEnumerator.orderEntries(module).recursively().getPathsList.getPathsString, module.scalaCompilerSettings.toOptions).hashCode
+    }.getOrElse(0)
+    val environment = s"${packOpt.getOrElse("")}|${moduleOpt.map(_.getName).getOrElse("")}|$macroPrinterName|$compilationHash"
+    val chainPlan = ifDoc.filter(_ => isChainable).flatMap {
+      WorksheetIncrementalChain.plan(srcFile, rootChildren, _, name, environment)
+    }
+    if (chainPlan.isEmpty) WorksheetCache.getInstance(project).clearPlainRunState(filePath)
+
+    val classRes = new StringBuilder(if (chainPlan.isDefined) "" else s"final class $classPrologue { \n")
     val unitReturnType = " : Unit = "
+    val instanceClassName = chainPlan.map(plan => plan.unitClassName(plan.units.length - 1)).getOrElse(name)
     val objectRes = new StringBuilder(s"def main($runPrinterName: java.io.PrintStream) ${withCompilerVersion(
       "", unitReturnType, unitReturnType, unitReturnType)
-    } { \n val $instanceName = new $name \n")
+    } { \n val $instanceName = new $instanceClassName \n")
 
     val mySourceBuilder = new ScalaSourceBuilder(classRes, objectRes, iterNumber, srcFile,
-      moduleOpt, ifDoc, macroPrinterName, packOpt, objectPrologue)
+      moduleOpt, ifDoc, macroPrinterName, packOpt, objectPrologue, chainPlan)
 
     val preDeclarations = mutable.ListBuffer.empty[PsiElement]
     val postDeclarations = mutable.ListBuffer.empty[PsiElement]
 
-    val root  = if (!isForObject(srcFile)) srcFile else {
+    val root  = if (isChainable) srcFile else {
       ((null: PsiElement) /: srcFile.getChildren) {
         case (a, imp: ScImportStmt) =>
           mySourceBuilder.processImport(imp)
@@ -159,14 +176,15 @@ object WorksheetSourceProcessor {
       }
     }
 
-    val rootChildren = root match {
-      case file: PsiFile => file.getChildren
-      case null => srcFile.getChildren
-      case other => other.getNode.getChildren(null) map (_.getPsi)
+    val elements = root match {
+      case `srcFile` => rootChildren
+      case file: PsiFile => file.getChildren.toSeq
+      case null => srcFile.getChildren.toSeq
+      case other => other.getNode.getChildren(null).toSeq map (_.getPsi)
     }
 
     
-    mySourceBuilder.process(rootChildren.toIterator, preDeclarations, postDeclarations)
+    mySourceBuilder.process(elements.toIterator, preDeclarations, postDeclarations)
   }
   
   private def isForObject(file: ScalaFile) = {
@@ -186,14 +204,16 @@ object WorksheetSourceProcessor {
   
   private abstract class SourceBuilderBase(classBuilder: mutable.StringBuilder, objectBuilder: mutable.StringBuilder, iterNumber: Int, srcFile: ScalaFile,
                                            moduleOpt: Option[Module], ifDoc: Option[Document], tpePrinterName: String, 
-                                           packOpt: Option[String], objectPrologue: String) {
+                                           packOpt: Option[String], objectPrologue: String, chainPlan: Option[ChainPlan]) {
     protected val documentOpt: Option[Document] = ifDoc
     protected val name = s"A$$A$iterNumber"
     protected val tempVarName = "$$temp$$"
     protected val instanceName = s"inst$$A$$A"
     
     protected val eraseClassName: String = ".replace(\"" + instanceName + ".\", \"\")"
-    protected val erasePrefixName: String = ".stripPrefix(\"" + name + "$" + name + "$\")"
+    protected val erasePrefixName: String =
+      if (chainPlan.isDefined) """.replaceFirst("^A\\$A\\d+\\$A\\$A\\d+u\\d+\\$", "")"""
+      else ".stripPrefix(\"" + name + "$" + name + "$\")"
     protected val plusInfoDef = " + "
     
     protected var assignCount = 0
@@ -439,38 +459,84 @@ object WorksheetSourceProcessor {
     def process(elements: Iterator[PsiElement], preDeclarations: Iterable[PsiElement], 
                 postDeclarations: Iterable[PsiElement]): Either[(String, String), PsiErrorElement] = {
       insertUntouched(preDeclarations)
+
+      val classStart = classBuilder.length
+      val objectStart = objectBuilder.length
+      //(class, object) builder offsets where units after the first one start
+      val unitBounds = mutable.ArrayBuffer.empty[(Int, Int)]
+      var lastStatementEnd = (classStart, objectStart)
       
-      for (e <- elements) e match {
-        case tpe: ScTypeAlias => processTypeAlias(tpe)
-        case fun: ScFunction => processFunDef(fun)
-        case tpeDef: ScTypeDefinition => processTypeDef(tpeDef)
-        case valDef: ScPatternDefinition => processValDef(valDef)
-        case varDef: ScVariableDefinition => processVarDef(varDef)
-        case assign: ScAssignment => processAssign(assign)
-        case imp: ScImportStmt => if (!processLocalImport(imp)) processImport(imp)
-        case comment: PsiComment => 
-          processComment(comment)
-          appendCommentToClass(comment)
-        case pack: ScPackaging => processWhiteSpace(pack)
-        case otherExpr: ScExpression => processOtherExpr(otherExpr)
-        case ws: PsiWhiteSpace => processWhiteSpace(ws)
-        case error: PsiErrorElement => return Right(error)
-        case null => logError(null)
-        case unknown => processUnknownElement(unknown)
+      for (e <- elements) {
+        if (chainPlan.exists(_.unitStarts.contains(e))) unitBounds += lastStatementEnd
+
+        e match {
+          case tpe: ScTypeAlias => processTypeAlias(tpe)
+          case fun: ScFunction => processFunDef(fun)
+          case tpeDef: ScTypeDefinition => processTypeDef(tpeDef)
+          case valDef: ScPatternDefinition => processValDef(valDef)
+          case varDef: ScVariableDefinition => processVarDef(varDef)
+          case assign: ScAssignment => processAssign(assign)
+          case imp: ScImportStmt => if (!processLocalImport(imp)) processImport(imp)
+          case comment: PsiComment => 
+            processComment(comment)
+            appendCommentToClass(comment)
+          case pack: ScPackaging => processWhiteSpace(pack)
+          case otherExpr: ScExpression => processOtherExpr(otherExpr)
+          case ws: PsiWhiteSpace => processWhiteSpace(ws)
+          case error: PsiErrorElement => return Right(error)
+          case null => logError(null)
+          case unknown => processUnknownElement(unknown)
+        }
+
+        if (WorksheetIncrementalChain.isStatement(e)) lastStatementEnd = (classBuilder.length, objectBuilder.length)
       }
 
       insertUntouched(postDeclarations)
 
-      classBuilder append "}"
-      objectBuilder append (getPrintMethodName + "(\"" + END_OUTPUT_MARKER + "\")\n") append s"} \n $PRINT_ARRAY_TEXT \n }"
+      val (classText, objectText) = chainPlan match {
+        case Some(plan) => assembleChain(plan, classStart, objectStart, unitBounds)
+        case None => (classBuilder.toString() + "}", objectBuilder.toString())
+      }
+      val objectEnd = getPrintMethodName + "(\"" + END_OUTPUT_MARKER + "\")\n" + s"} \n $PRINT_ARRAY_TEXT \n }"
       
-      val codeResult = getObjectPrologue + importStmts.mkString(";") + classBuilder.toString() + "\n\n\n" + objectBuilder.toString()
+      val codeResult = getObjectPrologue + importStmts.mkString(";") + classText + "\n\n\n" + objectText + objectEnd
       Left(
         (codeResult, packOpt.map(_ + ".").getOrElse("") + name)
       )
     }
     
     
+    /**
+      * Units kept from the previous run are replaced with the same count of new lines,
+      * so that lines of the generated code still correspond to the lines of the worksheet.
+      */
+    private def assembleChain(plan: ChainPlan, classStart: Int, objectStart: Int,
+                              unitBounds: Seq[(Int, Int)]): (String, String) = {
+      val classBounds = (classStart +: unitBounds.map(_._1)) :+ classBuilder.length
+      val objectBounds = (objectStart +: unitBounds.map(_._2)) :+ objectBuilder.length
+      val kept = plan.keptUnits
+
+      val classText = new StringBuilder(classBuilder.substring(0, classStart))
+      val objectText = new StringBuilder(objectBuilder.substring(0, objectStart))
+
+      for (idx <- kept until plan.units.length) {
+        val unitName = WorksheetIncrementalChain.unitClassName(name, idx)
+        val parent = if (idx == 0) "" else s" extends ${plan.unitClassName(idx - 1)}"
+
+        if (idx == kept) {
+          val keptLines = countNls(classBuilder.substring(classBounds(0), classBounds(kept)))
+          classText append s"class $unitName$parent { \n" append StringUtil.repeat("\n", keptLines)
+        } else classText append s"} class $unitName$parent { "
+
+        classText append classBuilder.substring(classBounds(idx), classBounds(idx + 1))
+        objectText append objectBuilder.substring(objectBounds(idx), objectBounds(idx + 1))
+      }
+      classText append "}"
+
+      (classText.toString(), objectText.toString())
+    }
+    
+    
     //kinda utils stuff that shouldn't be overridden
     
     @inline final def withTempVar(callee: String, withInstance: Boolean = true): String =
@@ -552,7 +618,7 @@ object WorksheetSourceProcessor {
   
   private class ScalaSourceBuilder(classBuilder: mutable.StringBuilder, objectBuilder: mutable.StringBuilder, iterNumber: Int, srcFile: ScalaFile,
                                    moduleOpt: Option[Module], ifDoc: Option[Document], tpePrinterName: String,
-                                   packOpt: Option[String], objectPrologue: String) 
-    extends SourceBuilderBase(classBuilder, objectBuilder, iterNumber, srcFile, moduleOpt, ifDoc, tpePrinterName, packOpt, objectPrologue) {
+                                   packOpt: Option[String], objectPrologue: String, chainPlan: Option[ChainPlan]) 
+    extends SourceBuilderBase(classBuilder, objectBuilder, iterNumber, srcFile, moduleOpt, ifDoc, tpePrinterName, packOpt, objectPrologue, chainPlan) {
   }
 }
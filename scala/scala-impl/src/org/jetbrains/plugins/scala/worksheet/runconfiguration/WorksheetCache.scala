@@ -2,12 +2,15 @@ package org.jetbrains.plugins.scala.worksheet.runconfiguration
 
 import java.io.File
 
+import com.intellij.openapi.compiler.{CompilationStatusListener, CompileContext, CompilerTopics}
 import com.intellij.openapi.components.ProjectComponent
 import com.intellij.openapi.editor.impl.EditorImpl
 import com.intellij.openapi.editor.{Editor, EditorFactory}
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.util.containers.ContainerUtil
+import org.jetbrains.plugins.scala.worksheet.processor.WorksheetIncrementalChain
+import org.jetbrains.plugins.scala.worksheet.processor.WorksheetIncrementalChain.{CommittedRun, PendingRun, PrintedChunk}
 import org.jetbrains.plugins.scala.worksheet.ui.{WorksheetEditorPrinter, WorksheetIncrementalEditorPrinter}
 
 import scala.collection.mutable
@@ -23,6 +26,10 @@ class WorksheetCache(project: Project) extends ProjectComponent  {
   
   private val compilationInfo = mutable.HashMap.empty[String, (Int, File, File)]
 
+  //file path -> incremental state of plain worksheet runs
+  private val pendingPlainRuns = mutable.HashMap.empty[String, PendingRun]
+  private val plainRunStates = mutable.HashMap.empty[String, CommittedRun]
+
   def updateOrCreateCompilationInfo(filePath: String, fileName: String): (Int, File, File) = {
     compilationInfo.get(filePath) match {
       case Some(result@(it, src, out)) =>
@@ -41,6 +48,47 @@ class WorksheetCache(project: Project) extends ProjectComponent  {
     compilationInfo.get(filePath).map(_._1).getOrElse(-1)
   }
   
+  def getPlainRunState(filePath: String): Option[CommittedRun] = synchronized {
+    plainRunStates.get(filePath)
+  }
+
+  def getPendingPlainRun(filePath: String): Option[PendingRun] = synchronized {
+    pendingPlainRuns.get(filePath)
+  }
+
+  def setPendingPlainRun(filePath: String, pendingRun: PendingRun): Unit = synchronized {
+    pendingPlainRuns.put(filePath, pendingRun)
+    deleteStaleClasses(filePath)
+  }
+
+  /**
+    * Called by the printer when the run finished successfully, so that compiled units and printed output can be reused
+    */
+  def commitPlainRun(filePath: String, prefix: String, output: String,
+                     chunks: Seq[PrintedChunk], foldings: Seq[(Int, Int, Int, Int)]): Unit = synchronized {
+    pendingPlainRuns.remove(filePath).foreach { pending =>
+      plainRunStates.put(filePath, CommittedRun(pending.units, pending.environment, prefix, output, chunks, foldings))
+    }
+  }
+
+  //classes of the project may have changed, units compiled against the old ones can't be reused
+  private def clearAllPlainRunStates(): Unit = synchronized {
+    plainRunStates.clear()
+  }
+
+  def clearPlainRunState(filePath: String): Unit = synchronized {
+    pendingPlainRuns.remove(filePath)
+    plainRunStates.remove(filePath)
+    deleteStaleClasses(filePath)
+  }
+
+  //units of the last successful run are kept, as the pending run may fail
+  private def deleteStaleClasses(filePath: String): Unit = compilationInfo.get(filePath).foreach {
+    case (_, _, outputDir) =>
+      val liveUnits = plainRunStates.get(filePath).toSeq.flatMap(_.units).map(_.className)
+      WorksheetIncrementalChain.deleteStaleClasses(outputDir, liveUnits)
+  }
+
   def getPrinter(inputEditor: Editor): Option[WorksheetEditorPrinter] = Option(allReplPrinters get inputEditor)
   
   def addPrinter(inputEditor: Editor, printer: WorksheetEditorPrinter) {
@@ -136,6 +184,13 @@ class WorksheetCache(project: Project) extends ProjectComponent  {
     }
   }
 
+  override def projectOpened(): Unit = {
+    project.getMessageBus.connect(project).subscribe(CompilerTopics.COMPILATION_STATUS, new CompilationStatusListener {
+      override def compilationFinished(aborted: Boolean, errors: Int, warnings: Int, context: CompileContext): Unit =
+        clearAllPlainRunStates()
+    })
+  }
+
   override def projectClosed(): Unit = {
     invalidateViewers()
   }
@@ -8,6 +8,7 @@ import com.intellij.compiler.CompilerMessageImpl
 import com.intellij.compiler.progress.CompilerTask
 import com.intellij.notification.{Notification, NotificationType, Notifications}
 import com.intellij.openapi.compiler.{CompilerMessageCategory, CompilerPaths}
+import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.progress.{ProgressIndicator, ProgressManager}
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.roots.ModuleRootManager
@@ -103,6 +104,7 @@ class RemoteServerConnector(psiFile: ScFile, worksheet: File, output: File, work
       worksheetHook.disableRun(originalFile, Some(worksheetProcess))
       worksheetProcess.addTerminationCallback({
         worksheetHook.enableRun(originalFile, client.isCompiledWithErrors)
+        client.logOutputThroughput()
         fileToReHighlight foreach  WorksheetIncrementalEditorPrinter.rehighlight
       })
 
@@ -122,10 +124,19 @@ class RemoteServerConnector(psiFile: ScFile, worksheet: File, output: File, work
 }
 
 object RemoteServerConnector {
+  private val LOG = Logger.getInstance(getClass)
+  
   class MyTranslatingClient(callback: Runnable, project: Project, worksheet: VirtualFile, consumer: OuterCompilerInterface) extends DummyClient {
     private val length = WorksheetSourceProcessor.END_GENERATED_MARKER.length
     
     private var hasErrors = false
+    
+    private var outputEvents = 0
+    private var outputChars = 0L
+    private var outputLines = 0L
+    private var outputProcessingTime = 0L
+    private var firstOutputTime = 0L
+    private var lastOutputTime = 0L
 
     def isCompiledWithErrors: Boolean = hasErrors
     
@@ -185,7 +196,27 @@ object RemoteServerConnector {
     }
 
     override def worksheetOutput(text: String) {
+      val start = System.nanoTime()
+      if (outputEvents == 0) firstOutputTime = start
+      
       consumer.worksheetOutput(text)
+
+      outputEvents += 1
+      outputChars += text.length
+      outputLines += text.count(_ == '\n')
+      outputProcessingTime += System.nanoTime() - start
+      lastOutputTime = System.nanoTime()
+    }
+
+    /**
+      * End-to-end throughput of worksheet output: from the first received chunk to the last processed one
+      */
+    def logOutputThroughput(): Unit = if (outputEvents > 0 && LOG.isDebugEnabled) {
+      val totalMs = Math.max((lastOutputTime - firstOutputTime) / 1000000, 1)
+      val processingMs = outputProcessingTime / 1000000
+      
+      LOG.debug(s"Worksheet output: $outputLines lines, $outputChars chars in $outputEvents chunks, " +
+        s"$totalMs ms total, $processingMs ms processing, ${outputLines * 1000 / totalMs} lines/s")
     }
   }
   
@@ -215,7 +246,7 @@ object RemoteServerConnector {
     }
 
     override def worksheetOutput(text: String) {
-      worksheetPrinter.foreach(_ processLine text)
+      worksheetPrinter.foreach(_ processChunk text)
     }
 
     override def trace(thr: Throwable) {
@@ -11,7 +11,9 @@ import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
 
 import scala.collection.mutable.ArrayBuffer
 import org.jetbrains.plugins.scala
+import org.jetbrains.plugins.scala.worksheet.processor.WorksheetIncrementalChain.PrintedChunk
 import org.jetbrains.plugins.scala.worksheet.processor.WorksheetSourceProcessor
+import org.jetbrains.plugins.scala.worksheet.runconfiguration.WorksheetCache
 
 /**
   * User: Dmitry.Naydanov
@@ -30,6 +32,11 @@ class WorksheetDefaultEditorPrinter(originalEditor1: Editor, worksheetViewer1: E
   private var cutoffPrinted = false
   @volatile private var terminated = false
   @volatile private var buffed = 0
+  private var inChunk = false
+
+  //printed output of the incremental chain, see WorksheetIncrementalChain
+  private val chunks = ArrayBuffer.empty[PrintedChunk]
+  private val allFoldings = ArrayBuffer.empty[(Int, Int, Int, Int)]
 
   originalEditor.asInstanceOf[EditorImpl].setScrollToCaret(false)
   worksheetViewer.asInstanceOf[EditorImpl].setScrollToCaret(false)
@@ -37,12 +44,42 @@ class WorksheetDefaultEditorPrinter(originalEditor1: Editor, worksheetViewer1: E
 
   override def getScalaFile: ScalaFile = file1
 
+  private def filePath: Option[String] =
+    Option(getScalaFile).flatMap(file => Option(file.getViewProvider.getVirtualFile)).map(_.getCanonicalPath)
+
+  /**
+    * Output of the units which are not rerun is taken from the previous run
+    */
+  private def restoreKeptOutput(): Boolean = {
+    val restored = for {
+      path <- filePath
+      cache = WorksheetCache.getInstance(project)
+      pending <- cache.getPendingPlainRun(path) if pending.keptUnits > 0
+      committed <- cache.getPlainRunState(path)
+      chunk <- committed.restorePoint(pending.keptUnits)
+    } yield {
+      init()
+
+      prefix = committed.prefix
+      outputBuffer append committed.output.substring(0, chunk.outputLength)
+      insertedToOriginal = chunk.insertedToOriginal
+      chunks ++= committed.chunks.takeWhile(_.lastLine <= chunk.lastLine)
+
+      val keptFoldings = committed.foldings.take(chunk.foldingsCount)
+      allFoldings ++= keptFoldings
+      foldingOffsets ++= keptFoldings
+    }
+
+    restored.isDefined
+  }
+
   override def scheduleWorksheetUpdate() {
     timer.start()
   }
   
   override def processLine(line: String): Boolean = {
     if (checkForTerminate(line)) return true
+    if (!isInited) restoreKeptOutput()
 
     if (!isInsideOutput && line.trim.length == 0) {
       outputBuffer append line
@@ -64,15 +101,18 @@ class WorksheetDefaultEditorPrinter(originalEditor1: Editor, worksheetViewer1: E
           } else if (0 > differ) {
             insertedToOriginal -= differ
 
-            foldingOffsets += (
-              (start + insertedToOriginal + differ,
-                outputBuffer.length - outputBuffer.reverseIterator.takeWhile(_ == '\n').length,
-                end - start + 1, end)
-              )
+            val folding = (start + insertedToOriginal + differ,
+              outputBuffer.length - outputBuffer.reverseIterator.takeWhile(_ == '\n').length,
+              end - start + 1, end)
+
+            foldingOffsets += folding
+            allFoldings += folding
           }
 
+          chunks += PrintedChunk(end, outputBuffer.length, allFoldings.length, insertedToOriginal)
+
           buffed += linesCount
-          if (buffed > WorksheetEditorPrinterFactory.BULK_COUNT) midFlush()
+          if (buffed > WorksheetEditorPrinterFactory.BULK_COUNT && !inChunk) midFlush()
           clear()
         case _ =>
       }
@@ -90,6 +130,17 @@ class WorksheetDefaultEditorPrinter(originalEditor1: Editor, worksheetViewer1: E
     false
   }
 
+  /**
+    * The viewer is updated once per chunk, not once per [[WorksheetEditorPrinterFactory.BULK_COUNT]] lines
+    */
+  override def processChunk(chunk: String): Unit = {
+    inChunk = true
+    try super.processChunk(chunk)
+    finally inChunk = false
+
+    if (buffed > WorksheetEditorPrinterFactory.BULK_COUNT) midFlush()
+  }
+
   override def internalError(errorMessage: String): Unit = {
     super.internalError(errorMessage)
     terminated = true
@@ -149,6 +200,9 @@ class WorksheetDefaultEditorPrinter(originalEditor1: Editor, worksheetViewer1: E
 
   private def checkForTerminate(line: String): Boolean = {
     if (line.stripSuffix("\n") == WorksheetSourceProcessor.END_OUTPUT_MARKER) {
+      if (!terminated) filePath.foreach {
+        WorksheetCache.getInstance(project).commitPlainRun(_, prefix, outputBuffer.toString(), chunks.toList, allFoldings.toList)
+      }
       flushBuffer()
       terminated = true
     }
@@ -9,6 +9,23 @@ import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
 trait WorksheetEditorPrinter {
   def getScalaFile: ScalaFile
   def processLine(line: String): Boolean
+  
+  /**
+    * Compile server sends output in chunks of several lines, they are processed one by one 
+    */
+  def processChunk(chunk: String): Unit = {
+    var start = 0
+    
+    while (start < chunk.length) {
+      val end = chunk.indexOf('\n', start) match {
+        case -1 => chunk.length
+        case idx => idx + 1
+      }
+      
+      processLine(chunk.substring(start, end))
+      start = end
+    }
+  }
   def flushBuffer(): Unit
   def scheduleWorksheetUpdate(): Unit
   def internalError(errorMessage: String)
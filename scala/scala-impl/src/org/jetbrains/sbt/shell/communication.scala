@@ -4,14 +4,18 @@ import java.util.concurrent._
 
 import com.intellij.execution.process.{AnsiEscapeDecoder, OSProcessHandler, ProcessAdapter, ProcessEvent}
 import com.intellij.openapi.components.ProjectComponent
+import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.registry.Registry
 import org.jetbrains.ide.PooledThreadExecutor
 import org.jetbrains.sbt.shell.SbtProcessUtil._
 import org.jetbrains.sbt.shell.SbtShellCommunication._
 
 import scala.concurrent.ExecutionContext.Implicits.global
 import scala.concurrent.duration.{Duration, DurationLong}
+import scala.collection.JavaConverters._
+import scala.collection.mutable
 import scala.concurrent.{Future, Promise}
 import scala.util.{Success, Try}
 
@@ -22,9 +26,14 @@ class SbtShellCommunication(project: Project) extends ProjectComponent {
 
   private lazy val process = SbtProcessManager.forProject(project)
 
+  @volatile private var batchingUnsupported = false
+
   private val communicationActive = new Semaphore(1)
   private val shellQueueReady = new Semaphore(1)
-  private val commands = new LinkedBlockingQueue[(String, CommandListener[_])]()
+  private val commands = new LinkedBlockingDeque[(String, CommandListener[_])]()
+
+  /** Latencies of the recently executed commands */
+  val metrics = new SbtShellCommandMetrics
 
   /** Queue an sbt command for execution in the sbt shell, returning a Future[String] containing the entire shell output. */
   def command(cmd: String, showShell: Boolean = true): Future[String] =
@@ -35,7 +44,7 @@ class SbtShellCommunication(project: Project) extends ProjectComponent {
                  default: A,
                  eventHandler: EventAggregator[A],
                  showShell: Boolean): Future[A] = {
-    val listener = new CommandListener(default, eventHandler)
+    val listener = new CommandListener(cmd, default, eventHandler, metrics)
     process.acquireShellRunner
     commands.put((cmd, listener))
     listener.future
@@ -71,21 +80,63 @@ class SbtShellCommunication(project: Project) extends ProjectComponent {
     if (shellQueueReady.tryAcquire(timeout.toMillis, TimeUnit.MILLISECONDS)) {
       val next = commands.poll(timeout.toMillis, TimeUnit.MILLISECONDS)
       if (next != null) {
-        val (cmd, listener) = next
+        val batch =
+          if (pipelinedMode && batchableCommand(next._1)) next +: nextBatchableCommands()
+          else Seq(next)
 
-        listener.started()
+        if (batch.size == 1) runCommand(next)
+        else runBatch(batch)
+      } else shellQueueReady.release()
+    }
+  }
 
-        val handler = process.acquireShellProcessHandler
-        handler.addProcessListener(listener)
+  private def pipelinedMode: Boolean = Registry.is(PipelinedCommandsKey) && !batchingUnsupported
 
-        process.usingWriter { shell =>
-          shell.println(cmd)
-          shell.flush()
-        }
-        listener.future.onComplete { _ =>
-          handler.removeProcessListener(listener)
-        }
-      } else shellQueueReady.release()
+  // commands are taken by the queue processing thread only
+  private def nextBatchableCommands(): Seq[(String, CommandListener[_])] = {
+    val result = mutable.ArrayBuffer.empty[(String, CommandListener[_])]
+    while (result.size < MaxBatchSize - 1 && Option(commands.peek()).exists(c => batchableCommand(c._1))) {
+      result += commands.poll()
+    }
+    result
+  }
+
+  private def runCommand(command: (String, CommandListener[_])): Unit = {
+    val (cmd, listener) = command
+
+    listener.started(batchSize = 1)
+
+    val handler = process.acquireShellProcessHandler
+    handler.addProcessListener(listener)
+
+    process.usingWriter { shell =>
+      shell.println(cmd)
+      shell.flush()
+    }
+    listener.future.onComplete { _ =>
+      handler.removeProcessListener(listener)
+    }
+  }
+
+  /**
+    * Commands are sent as a single sbt command line `; cmd1 ; cmd2`, so there is one prompt round trip for all of them.
+    * Output is split between the commands by the result lines sbt prints after each task.
+    */
+  private def runBatch(batch: Seq[(String, CommandListener[_])]): Unit = {
+    val batchListener = new BatchListener(batch.map(_._2), requeue(commands, _), onMissingResults = () => {
+      batchingUnsupported = true
+      Log.warn("sbt shell doesn't print task results, pipelining of commands is disabled")
+    })
+
+    val handler = process.acquireShellProcessHandler
+    handler.addProcessListener(batchListener)
+
+    process.usingWriter { shell =>
+      shell.println(batch.map(_._1.trim).mkString("; ", " ; ", ""))
+      shell.flush()
+    }
+    batchListener.future.onComplete { _ =>
+      handler.removeProcessListener(batchListener)
     }
   }
 
@@ -111,8 +162,23 @@ class SbtShellCommunication(project: Project) extends ProjectComponent {
 }
 
 object SbtShellCommunication {
+  private val Log = Logger.getInstance(classOf[SbtShellCommunication])
+
+  val PipelinedCommandsKey = "sbt.shell.pipelined.commands"
+
+  Registry.addKey(PipelinedCommandsKey,
+    "Send queued sbt tasks to the sbt shell as a single command line", false, false)
+
+  private val MaxBatchSize = 8
+
   def forProject(project: Project): SbtShellCommunication = project.getComponent(classOf[SbtShellCommunication])
 
+  // commands which were not executed because a previous command of the batch failed
+  private[shell] def requeue(commands: BlockingDeque[(String, CommandListener[_])], notExecuted: Seq[CommandListener[_]]): Unit =
+    notExecuted.reverseIterator.foreach { listener =>
+      commands.putFirst((listener.cmd, listener))
+    }
+
   sealed trait ShellEvent
   case object TaskStart extends ShellEvent
   case object TaskComplete extends ShellEvent
@@ -137,39 +203,145 @@ object SbtShellCommunication {
     listener(e)
 }
 
-private[shell] class CommandListener[A](default: A, aggregator: EventAggregator[A]) extends LineListener {
+private[shell] class CommandListener[A](val cmd: String,
+                                        default: A,
+                                        aggregator: EventAggregator[A],
+                                        metrics: SbtShellCommandMetrics) extends LineListener {
 
   private val promise = Promise[A]()
   private var a: A = default
 
+  private val queuedAt = System.currentTimeMillis()
+  private var startedAt = queuedAt
+  private var batchSize = 1
+  private var result: Option[TaskResult] = None
+
   private def aggregate(event: ShellEvent): Unit = {
     a = aggregator(a, event)
   }
 
   def future: Future[A] = promise.future
 
-  def started(): Unit =
+  def started(batchSize: Int): Unit = {
+    startedAt = System.currentTimeMillis()
+    this.batchSize = batchSize
     aggregate(TaskStart)
+  }
 
-  override def processTerminated(event: ProcessEvent): Unit = {
-    // TODO separate event type for completion by termination?
+  private[shell] def output(text: String): Unit = {
+    taskResult(text).foreach(r => result = Some(r))
+    aggregate(Output(text))
+  }
+
+  private[shell] def errorWaitForInput(): Unit =
+    aggregate(ErrorWaitForInput)
+
+  private[shell] def complete(): Unit = if (!promise.isCompleted) {
     aggregate(TaskComplete)
+    metrics.record(cmd, startedAt - queuedAt, System.currentTimeMillis() - startedAt, batchSize, result)
     promise.complete(Try(a))
   }
 
+  override def processTerminated(event: ProcessEvent): Unit = {
+    // TODO separate event type for completion by termination?
+    complete()
+  }
+
   override def onLine(text: String): Unit = {
 
     if (!promise.isCompleted && promptReady(text)) {
-      aggregate(TaskComplete)
-      promise.complete(Success(a))
+      complete()
     } else if (promptError(text)) {
-      aggregate(ErrorWaitForInput)
+      errorWaitForInput()
     } else {
-      aggregate(Output(text))
+      output(text)
     }
   }
 }
 
+/**
+  * Dispatches output of a batch of commands sent as one command line to their listeners.
+  * A command is finished by its task result line, the whole batch by the prompt.
+  *
+  * @param requeue          called with the commands which were skipped by sbt after a failure
+  * @param onMissingResults called when the prompt appears before results of all commands
+  */
+private[shell] class BatchListener(listeners: Seq[CommandListener[_]],
+                                   requeue: Seq[CommandListener[_]] => Unit,
+                                   onMissingResults: () => Unit) extends LineListener {
+
+  private val promise = Promise[Unit]()
+  private var current = 0
+  private var failed = false
+
+  listeners.head.started(listeners.size)
+
+  def future: Future[Unit] = promise.future
+
+  private def finishCurrent(): Unit = {
+    listeners(current).complete()
+    current += 1
+    if (current < listeners.size && !failed)
+      listeners(current).started(listeners.size)
+  }
+
+  private def finishBatch(): Unit = if (!promise.isCompleted) {
+    val remaining = listeners.drop(current)
+    if (failed) requeue(remaining)
+    else if (remaining.nonEmpty) {
+      onMissingResults()
+      remaining.foreach(_.complete())
+    }
+    promise.success(())
+  }
+
+  override def onLine(text: String): Unit = {
+    if (promise.isCompleted) return
+
+    if (promptReady(text)) {
+      finishBatch()
+    } else if (current < listeners.size && !failed) {
+      val listener = listeners(current)
+      if (promptError(text)) listener.errorWaitForInput()
+      else {
+        listener.output(text)
+        taskResult(text).foreach { result =>
+          failed = !result.success
+          finishCurrent()
+        }
+      }
+    }
+  }
+
+  override def processTerminated(event: ProcessEvent): Unit = {
+    listeners.drop(current).foreach(_.complete())
+    promise.trySuccess(())
+  }
+}
+
+/** Summary sbt prints after each executed task */
+case class TaskResult(success: Boolean, totalTime: String)
+
+case class CommandMetrics(command: String, queuedMs: Long, runMs: Long, batchSize: Int, result: Option[TaskResult])
+
+class SbtShellCommandMetrics {
+  private val MaxRecords = 100
+
+  private val records = new ConcurrentLinkedDeque[CommandMetrics]()
+
+  private[shell] def record(command: String, queuedMs: Long, runMs: Long, batchSize: Int, result: Option[TaskResult]): Unit = {
+    records.addLast(CommandMetrics(command, queuedMs, runMs, batchSize, result))
+    while (records.size > MaxRecords) records.pollFirst()
+  }
+
+  def recent: Seq[CommandMetrics] = records.asScala.toList
+
+  /** Average time from queueing a command to its completion */
+  def averageLatencyMs: Double = {
+    val all = recent
+    if (all.isEmpty) 0 else all.map(m => m.queuedMs + m.runMs).sum.toDouble / all.size
+  }
+}
 
 /**
   * Monitor sbt prompt status, do something when state changes.
@@ -206,6 +378,24 @@ private[shell] object SbtProcessUtil {
   def promptError(line: String): Boolean =
     line.trim.endsWith("(r)etry, (q)uit, (l)ast, or (i)gnore?")
 
+  private val TaskResultLine = """\[(success|error)\] Total time: (.*)""".r
+
+  def taskResult(line: String): Option[TaskResult] = line.trim match {
+    case TaskResultLine(status, time) => Some(TaskResult(status == "success", time))
+    case _ => None
+  }
+
+  private val batchableTasks = Set("compile", "test", "testOnly", "testQuick", "package", "packageBin", "clean", "update", "doc", "products")
+
+  // each of these tasks prints exactly one result line, so output of several of them can be split
+  def batchableCommand(cmd: String): Boolean = {
+    val trimmed = cmd.trim
+    !trimmed.exists(c => c == ';' || c == '\n') && {
+      val key = trimmed.takeWhile(!_.isWhitespace)
+      batchableTasks.contains(key.substring(key.lastIndexWhere(c => c == '/' || c == ':') + 1))
+    }
+  }
+
   // sucky workaround for jdwp printing this line on the console when deactivating debugger
   def debuggerMessage(line: String): Boolean =
     line.contains("Listening for transport")
@@ -0,0 +1,47 @@
+package org.jetbrains.plugins.scala
+package caches
+
+import org.jetbrains.plugins.scala.caches.PackagePartitionedCache._
+import org.junit.Assert._
+import org.junit.Test
+
+class PackagePartitionedCacheTest {
+
+  @Test
+  def samePackage(): Unit = {
+    assertTrue(isRelated("a.b", "a.b"))
+  }
+
+  @Test
+  def nestedPackages(): Unit = {
+    assertTrue(isRelated("a.b.c", "a.b"))
+    assertTrue(isRelated("a.b", "a.b.c"))
+    assertTrue(isRelated("a.b.c", "a"))
+  }
+
+  @Test
+  def packagesWithCommonPrefix(): Unit = {
+    assertFalse(isRelated("a.bc", "a.b"))
+    assertFalse(isRelated("a.b", "a.bc"))
+  }
+
+  @Test
+  def unrelatedPackages(): Unit = {
+    assertFalse(isRelated("a", "b"))
+    assertFalse(isRelated("a.b", "c.b"))
+  }
+
+  @Test
+  def rootPackageIsRelatedToAny(): Unit = {
+    assertTrue(isRelated("", "a.b"))
+    assertTrue(isRelated("a.b", ""))
+    assertTrue(isRelated("", ""))
+  }
+
+  @Test
+  def parentOfQualifiedName(): Unit = {
+    assertEquals("a.b", parentOf("a.b.C"))
+    assertEquals("a.b.C", parentOf("a.b.C.Inner"))
+    assertEquals("", parentOf("C"))
+  }
+}
@@ -0,0 +1,115 @@
+package org.jetbrains.plugins.scala.lang.formatter.tests.scalafmt
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.codeStyle.CodeStyleManager
+import com.intellij.psi.{PsiDocumentManager, PsiFile}
+import com.intellij.testFramework.LightPlatformTestCase.{createFile, getProject}
+import org.jetbrains.plugins.scala.lang.formatting.processors.ScalaFmtPreFormatProcessor
+import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtDynamicConfigManager
+import org.junit.Assert._
+
+/**
+  * Members which were not changed since the last formatting keep their text, even if scalafmt would change it.
+  */
+class ScalaFmtIncrementalTest extends ScalaFmtTestBase {
+
+  override def setUp(): Unit = {
+    super.setUp()
+    getScalaSettings.SCALAFMT_INCREMENTAL_FORMAT = true
+  }
+
+  private def doIncrementalTest(text: String, edit: (String, String), expected: String): Unit = {
+    val file = createFile("A.scala", text)
+    val manager = PsiDocumentManager.getInstance(getProject)
+    val document = manager.getDocument(file)
+
+    //the text is considered formatted, so that unformatted untouched members are noticeable
+    val config = ScalafmtDynamicConfigManager.instanceIn(getProject).configForFile(file).get
+    ScalaFmtPreFormatProcessor.rememberFormattedDefinitions(file, config)
+
+    val (oldText, newText) = edit
+    val start = document.getText.indexOf(oldText)
+    assertTrue(s"$oldText not found", start >= 0)
+
+    WriteCommandAction.runWriteCommandAction(getProject, new Runnable {
+      override def run(): Unit = {
+        document.replaceString(start, start + oldText.length, newText)
+        manager.commitDocument(document)
+        reformat(file)
+      }
+    })
+
+    assertEquals(expected, document.getText)
+  }
+
+  private def reformat(file: PsiFile): Unit =
+    CodeStyleManager.getInstance(getProject).reformatText(file, 0, file.getTextLength)
+
+  def testOnlyEditedMemberIsFormatted(): Unit = doIncrementalTest(
+    """object O {
+      |  def a : Int = 1
+      |  def b : Int = 2
+      |  def c : Int = 3
+      |}
+      |""".stripMargin,
+    "def b : Int = 2" -> "def b : Int   =   42",
+    """object O {
+      |  def a : Int = 1
+      |  def b: Int = 42
+      |  def c : Int = 3
+      |}
+      |""".stripMargin
+  )
+
+  def testEditedMemberOfNestedClass(): Unit = doIncrementalTest(
+    """object O {
+      |  class C {
+      |    def x : Int = 1
+      |    def y : Int = 2
+      |  }
+      |
+      |  def a : Int = 1
+      |  def b : Int = 2
+      |}
+      |""".stripMargin,
+    "def y : Int = 2" -> "def y : Int   =   42",
+    """object O {
+      |  class C {
+      |    def x : Int = 1
+      |    def y: Int = 42
+      |  }
+      |
+      |  def a : Int = 1
+      |  def b : Int = 2
+      |}
+      |""".stripMargin
+  )
+
+  def testUntouchedDefinitionsKeepTheirText(): Unit = doIncrementalTest(
+    """class A {
+      |  def a : Int = 1
+      |}
+      |
+      |class B {
+      |  def b : Int = 2
+      |}
+      |
+      |class C {
+      |  def c : Int = 3
+      |}
+      |""".stripMargin,
+    "class C {" -> "class   C {",
+    """class A {
+      |  def a : Int = 1
+      |}
+      |
+      |class B {
+      |  def b : Int = 2
+      |}
+      |
+      |class C {
+      |  def c: Int = 3
+      |}
+      |""".stripMargin
+  )
+}
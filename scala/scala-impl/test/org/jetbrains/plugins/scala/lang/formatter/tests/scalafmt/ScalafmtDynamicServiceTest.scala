@@ -0,0 +1,56 @@
+package org.jetbrains.plugins.scala.lang.formatter.tests.scalafmt
+
+import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtDynamicService
+import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtDynamicService._
+import org.jetbrains.plugins.scala.lang.formatting.scalafmt.ScalafmtNotifications.FmtVerbosity
+import org.junit.Assert._
+
+class ScalafmtDynamicServiceTest extends ScalaFmtTestBase {
+
+  private val Now = 100 * IdleTimeoutMs
+
+  private def service = ScalafmtDynamicService.instance
+
+  def testResolvedFormatterIsHit(): Unit = {
+    val hits = service.stats.hits
+
+    assertTrue(service.resolve(DefaultVersion, downloadIfMissing = false, FmtVerbosity.FailSilent).isRight)
+    assertEquals(hits + 1, service.stats.hits)
+  }
+
+  def testFormatterIsWarmedUpOncePerConfig(): Unit = {
+    val fmt = service.resolve(DefaultVersion, downloadIfMissing = false, FmtVerbosity.FailSilent).right.get
+    val config = fmt.parseConfigFromString("maxColumn = 57")
+
+    assertTrue(service.warmUpAsync(config))
+    assertFalse(service.warmUpAsync(config))
+    assertFalse(service.warmUpAsync(fmt.parseConfigFromString("maxColumn = 57")))
+    assertTrue(service.warmUpAsync(fmt.parseConfigFromString("maxColumn = 58")))
+  }
+
+  def testRecentlyUsedFormattersAreKept(): Unit = {
+    val lastUsed = (1 until MaxResolvedFormatters).map(i => s"1.$i" -> (Now - i))
+    assertEquals(Seq.empty, formattersToEvict(lastUsed, Now))
+  }
+
+  def testIdleFormattersAreEvicted(): Unit = {
+    val lastUsed = Seq(
+      "1.0" -> (Now - IdleTimeoutMs - 1),
+      "1.1" -> (Now - IdleTimeoutMs + 1),
+      "1.2" -> Now
+    )
+    assertEquals(Seq("1.0"), formattersToEvict(lastUsed, Now))
+  }
+
+  def testLeastRecentlyUsedFormattersAreEvictedAboveLimit(): Unit = {
+    val lastUsed = Seq(
+      "1.3" -> (Now - 3),
+      "1.0" -> Now,
+      "1.4" -> (Now - 4),
+      "1.1" -> (Now - 1),
+      "1.2" -> (Now - 2)
+    )
+    //one place is left for the formatter which is being used
+    assertEquals(Seq("1.4", "1.3"), formattersToEvict(lastUsed, Now))
+  }
+}
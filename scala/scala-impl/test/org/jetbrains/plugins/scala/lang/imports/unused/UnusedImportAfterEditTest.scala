@@ -0,0 +1,91 @@
+package org.jetbrains.plugins.scala.lang.imports.unused
+
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiDocumentManager
+import org.jetbrains.plugins.scala.base.AssertMatches
+import org.jetbrains.plugins.scala.extensions._
+
+import scala.collection.JavaConverters._
+
+/**
+  * Usages are recorded per member and kept between highlighting passes,
+  * usages removed by an edit should not keep imports used.
+  */
+class UnusedImportAfterEditTest extends UnusedImportTestBase with AssertMatches {
+
+  private def highlightAfterReplace(text: String, replacement: String): Seq[HighlightMessage] = {
+    implicit val project: Project = getProject
+    val document = myFixture.getEditor.getDocument
+    val start = document.getText.indexOf(text)
+    assert(start >= 0, s"$text not found")
+
+    inWriteCommandAction {
+      document.replaceString(start, start + text.length, replacement)
+      PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+
+    myFixture.doHighlighting().asScala
+      .toList
+      .filterNot(_.getDescription == null)
+      .map(HighlightMessage.apply)
+  }
+
+  def testImportBecomesUnusedInChangedMember(): Unit = {
+    val text =
+      """import scala.collection.mutable.ArrayBuffer
+        |
+        |object Test {
+        |  def unchanged: Int = 42
+        |
+        |  def changed: Seq[Int] = ArrayBuffer(1, 2)
+        |}
+      """.stripMargin
+    assertMatches(messages(text)) {
+      case Nil =>
+    }
+
+    assertMatches(highlightAfterReplace("ArrayBuffer(1, 2)", "Seq(1, 2)")) {
+      case HighlightMessage("import scala.collection.mutable.ArrayBuffer", _) :: Nil =>
+    }
+  }
+
+  def testImportBecomesUnusedAfterMemberIsRemoved(): Unit = {
+    val text =
+      """import scala.collection.mutable.ArrayBuffer
+        |
+        |object Test {
+        |  def unchanged: Int = 42
+        |}
+        |
+        |object Usage {
+        |  val buffer = ArrayBuffer(1, 2)
+        |}
+      """.stripMargin
+    assertMatches(messages(text)) {
+      case Nil =>
+    }
+
+    assertMatches(highlightAfterReplace("val buffer = ArrayBuffer(1, 2)", "")) {
+      case HighlightMessage("import scala.collection.mutable.ArrayBuffer", _) :: Nil =>
+    }
+  }
+
+  def testImportStaysUsedByUnchangedMember(): Unit = {
+    val text =
+      """import scala.collection.mutable.ArrayBuffer
+        |
+        |object Test {
+        |  def unchanged: Seq[Int] = ArrayBuffer(1)
+        |
+        |  def changed: Seq[Int] = ArrayBuffer(1, 2)
+        |}
+      """.stripMargin
+    assertMatches(messages(text)) {
+      case Nil =>
+    }
+
+    assertMatches(highlightAfterReplace("ArrayBuffer(1, 2)", "Seq(1, 2)")) {
+      case Nil =>
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package org.jetbrains.plugins.scala
+package lang
+package psi
+package impl
+
+import com.intellij.openapi.project.Project
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.{PsiDocumentManager, PsiFile, PsiFileFactory}
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager.TopLevelChange
+import org.junit.Assert._
+
+/**
+  * Top-level changes drop lookups of classes and packages only in the packages of the changed files.
+  */
+class TopLevelChangeTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private def addFile(path: String, text: String): PsiFile =
+    getFixture.addFileToProject(path, text)
+
+  private def changeOf(file: PsiFile): TopLevelChange =
+    TopLevelChange.of(file).getOrElse(throw new AssertionError(s"No change for ${file.getName}"))
+
+  private def replaceInFile(file: PsiFile, text: String, replacement: String): Unit = {
+    implicit val project: Project = getProject
+    val documentManager = PsiDocumentManager.getInstance(project)
+    val document = documentManager.getDocument(file)
+    val start = document.getText.indexOf(text)
+    assert(start >= 0, s"$text not found")
+
+    inWriteCommandAction {
+      document.replaceString(start, start + text.length, replacement)
+      documentManager.commitDocument(document)
+    }
+  }
+
+  def testOfScalaFile(): Unit = {
+    val file = addFile("a/b/A.scala", "package a.b\n\nclass A\n")
+    assertEquals(TopLevelChange(Set("a.b"), Seq(file.getVirtualFile)), changeOf(file))
+  }
+
+  def testOfNestedPackagings(): Unit = {
+    val file = addFile("a/b/A.scala", "package a\npackage b\n\nclass A\n")
+    assertEquals(Set("a", "a.b"), changeOf(file).packages)
+  }
+
+  def testOfSeveralPackagings(): Unit = {
+    val file = addFile("A.scala", "package a {\n  class A\n}\n\npackage c {\n  class C\n}\n")
+    assertEquals(Set("a", "c"), changeOf(file).packages)
+  }
+
+  def testOfFileWithoutPackaging(): Unit = {
+    val file = addFile("A.scala", "class A\n")
+    assertEquals(Set(""), changeOf(file).packages)
+  }
+
+  def testOfJavaFile(): Unit = {
+    val file = addFile("j/J.java", "package j;\n\nclass J {}\n")
+    assertEquals(TopLevelChange(Set("j"), Seq(file.getVirtualFile)), changeOf(file))
+  }
+
+  def testOfWorksheet(): Unit = {
+    val file = addFile("a/worksheet.sc", "val x = 1\n")
+    assertEquals(TopLevelChange.empty, changeOf(file))
+  }
+
+  def testOfNonPhysicalFile(): Unit = {
+    val file = PsiFileFactory.getInstance(getProject)
+      .createFileFromText("A.scala", ScalaFileType.INSTANCE, "package a\n\nclass A\n")
+    assertEquals(TopLevelChange(Set("a"), Seq.empty), changeOf(file))
+  }
+
+  def testOfFileWhichIsNotClassOwner(): Unit = {
+    val file = addFile("a/readme.txt", "class A")
+    assertEquals(None, TopLevelChange.of(file))
+  }
+
+  def testUnion(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass A\n").getVirtualFile
+    val fileB = addFile("b/B.scala", "package b\n\nclass B\n").getVirtualFile
+
+    val union = TopLevelChange(Set("a"), Seq(fileA)).union(TopLevelChange(Set("b"), Seq(fileB, fileA)))
+    assertEquals(TopLevelChange(Set("a", "b"), Seq(fileA, fileB)), union)
+  }
+
+  def testUnionWithEmpty(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass A\n").getVirtualFile
+
+    val change = TopLevelChange(Set("a"), Seq(fileA))
+    assertEquals(change, change.union(TopLevelChange.empty))
+    assertEquals(change, TopLevelChange.empty.union(change))
+  }
+
+  def testUnionWithNonPhysicalChange(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass A\n").getVirtualFile
+
+    //files of a non-physical change are unknown, so entries with any scope have to be dropped
+    val union = TopLevelChange(Set("a"), Seq(fileA)).union(TopLevelChange(Set("b"), Seq.empty))
+    assertEquals(TopLevelChange(Set("a", "b"), Seq.empty), union)
+  }
+
+  def testAddedClassIsFound(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass A\n")
+    addFile("b/B.scala", "package b\n\nclass B\n")
+
+    val manager = ScalaPsiManager.instance(getProject)
+    val scope = GlobalSearchScope.allScope(getProject)
+
+    assertTrue(manager.getCachedClass(scope, "a.A").isDefined)
+    assertTrue(manager.getCachedClass(scope, "a.A2").isEmpty)
+    val classB = manager.getCachedClass(scope, "b.B")
+    val packageB = manager.getCachedPackage("b")
+    val partialFlushes = manager.partialTopLevelFlushesCount
+
+    replaceInFile(fileA, "class A", "class A\n\nclass A2")
+
+    assertTrue(manager.getCachedClass(scope, "a.A2").isDefined)
+    assertTrue(manager.partialTopLevelFlushesCount > partialFlushes)
+    assertSame(classB, manager.getCachedClass(scope, "b.B"))
+    assertSame(packageB, manager.getCachedPackage("b"))
+  }
+
+  def testRenamedClassIsFound(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass Old\n")
+    addFile("b/B.scala", "package b\n\nclass B\n")
+
+    val manager = ScalaPsiManager.instance(getProject)
+    val scope = GlobalSearchScope.allScope(getProject)
+
+    assertTrue(manager.getCachedClass(scope, "a.Old").isDefined)
+    assertTrue(manager.getCachedClasses(scope, "a.New").isEmpty)
+    val classesB = manager.getCachedClasses(scope, "b.B")
+
+    replaceInFile(fileA, "Old", "New")
+
+    assertTrue(manager.getCachedClass(scope, "a.Old").isEmpty)
+    assertTrue(manager.getCachedClass(scope, "a.New").isDefined)
+    assertEquals(1, manager.getCachedClasses(scope, "a.New").length)
+    assertSame(classesB, manager.getCachedClasses(scope, "b.B"))
+  }
+
+  def testChangeInPackageDropsLookupsInSubpackages(): Unit = {
+    val fileA = addFile("a/A.scala", "package a\n\nclass A\n")
+    addFile("a/b/B.scala", "package a.b\n\nclass B\n")
+
+    val manager = ScalaPsiManager.instance(getProject)
+    val scope = GlobalSearchScope.allScope(getProject)
+
+    val classB = manager.getCachedClass(scope, "a.b.B")
+
+    replaceInFile(fileA, "class A", "class A2")
+
+    val afterChange = manager.getCachedClass(scope, "a.b.B")
+    assertTrue(afterChange.isDefined)
+    assertNotSame(classB, afterChange)
+  }
+}
@@ -0,0 +1,140 @@
+package org.jetbrains.plugins.scala
+package lang
+package psi
+package impl
+package toplevel
+package typedef
+
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.{PsiClass, PsiMember}
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.typedef.TypeDefinitionMembers.{SignatureNodes, StableNodes, TypeNodes}
+import org.jetbrains.plugins.scala.lang.psi.types.Signature
+import org.junit.Assert._
+
+/**
+  * Compact and default representations of [[MixinNodes.Map]] should give the same nodes.
+  */
+class MixinNodesMapTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val Text =
+    """import scala.language.implicitConversions
+      |
+      |trait T0 {
+      |  def foo(i: Int): Int = i
+      |  def foo(s: String): String = s
+      |  def bar: Int
+      |  private def secret = 0
+      |  implicit def conversion(i: Int): String = i.toString
+      |  type A
+      |}
+      |
+      |trait T1 extends T0 {
+      |  override def foo(i: Int): Int = i + 1
+      |  def bar: Int = 1
+      |  private def secret = 1
+      |  type A = Int
+      |}
+      |
+      |abstract class C0 extends java.util.ArrayList[String] with T1 {
+      |  val x = 1
+      |  var y = 2
+      |  object Inner
+      |  implicit class Rich(i: Int) { def twice: Int = i * 2 }
+      |}
+      |
+      |trait T2 extends T1 { def foo(d: Double): Double = d }
+      |trait T3 extends T2 { override def bar: Int = 3 }
+      |trait T4 extends T3 { implicit val ordering: Ordering[Int] = Ordering.Int }
+      |
+      |class Deep(p: Int) extends C0 with T4 with Serializable {
+      |  def foo(l: Long): Long = l
+      |  override def toString: String = "Deep"
+      |  private val secret = p
+      |}
+      |""".stripMargin
+
+  private def classes: Seq[PsiClass] = {
+    val file = configureFromFileText(Text).asInstanceOf[ScalaFile]
+    file.typeDefinitions
+  }
+
+  private def build[T <: Signature](nodes: MixinNodes[T], clazz: PsiClass, compact: Boolean): MixinNodes.Map[T] = {
+    val registryValue = Registry.get(MixinNodes.CompactMapKey)
+    val oldValue = registryValue.asBoolean
+    registryValue.setValue(compact)
+    try nodes.build(clazz)
+    finally registryValue.setValue(oldValue)
+  }
+
+  private def describe[T <: Signature](node: MixinNodes.Node[T]): String = {
+    def element(n: MixinNodes.Node[T]) = {
+      val named = n.info.namedElement
+      s"${n.info.name}:${named.getClass.getSimpleName}@${System.identityHashCode(named)}"
+    }
+    val supers = node.supers.map(element).mkString(", ")
+    s"${element(node)} fromSuper=${node.fromSuper} supers=[$supers] primary=${node.primarySuper.map(element)}"
+  }
+
+  private def describeAll[T <: Signature](nodes: Iterator[MixinNodes.Node[T]]): Seq[String] =
+    nodes.map(describe).toSeq.sorted
+
+  private def assertSameMaps[T <: Signature](nodes: MixinNodes[T]): Unit = classes.foreach { clazz =>
+    val default = build(nodes, clazz, compact = false)
+    val compact = build(nodes, clazz, compact = true)
+    val message = s"${clazz.name}: "
+
+    def signatures(map: MixinNodes.Map[T]) =
+      map.allSignatures.map(s => s"${s.name}@${System.identityHashCode(s.namedElement)}").toSeq.sorted
+
+    assertEquals(message + "allSignatures", signatures(default), signatures(compact))
+
+    val names = default.allSignatures.map(_.name).toSet
+    for (name <- names + "unknown") {
+      assertEquals(message + s"forName($name)",
+        describeAll(default.forName(name).nodesIterator), describeAll(compact.forName(name).nodesIterator))
+      assertEquals(message + s"supers of $name",
+        describeAll(default.nodesIterator(name, isSupers = true)), describeAll(compact.nodesIterator(name, isSupers = true)))
+    }
+
+    //nodes of implicit names
+    assertEquals(message + "implicits",
+      describeAll(default.nodesIterator("", isSupers = false, onlyImplicit = true)),
+      describeAll(compact.nodesIterator("", isSupers = false, onlyImplicit = true)))
+  }
+
+  def testSignatures(): Unit = assertSameMaps(SignatureNodes)
+
+  def testStableSignatures(): Unit = assertSameMaps(StableNodes)
+
+  def testTypes(): Unit = assertSameMaps(TypeNodes)
+
+  def testDeepClassHasMembersOfAllSupers(): Unit = {
+    val deep = classes.find(_.name == "Deep").get
+    val compact = build(SignatureNodes, deep, compact = true)
+
+    //foo(Int) of T0 is a super of the one of T1
+    val foos = compact.forName("foo").nodesIterator.map(_.info.namedElement).collect {
+      case member: PsiMember => member.getContainingClass.name
+    }.toSeq.sorted
+    assertEquals(Seq("Deep", "T0", "T1", "T2"), foos)
+  }
+
+  def testDeepClassHasImplicits(): Unit = {
+    val deep = classes.find(_.name == "Deep").get
+    val compact = build(SignatureNodes, deep, compact = true)
+
+    val implicitNames = compact.nodesIterator("", isSupers = false, onlyImplicit = true).map(_.info.name).toSet
+    assertEquals(Set("conversion", "Rich", "ordering"), implicitNames)
+  }
+
+  def testPrivateMembersAreKept(): Unit = {
+    val deep = classes.find(_.name == "Deep").get
+    val compact = build(SignatureNodes, deep, compact = true)
+
+    //private members of the class and its supers don't override each other
+    assertEquals(3, compact.forName("secret").nodesIterator.size)
+  }
+}
@@ -1,5 +1,6 @@
 package org.jetbrains.plugins.scala.macroAnnotations
 
+import org.jetbrains.plugins.scala.statistics.CacheStatistics
 import org.junit.Assert
 
 
@@ -60,4 +61,23 @@ class CachedTest extends CachedTestBase {
     Thread.sleep(1)
     Assert.assertEquals(secondRes, Foo.currentTime(0, 0))
   }
+
+  def testStatistics(): Unit = {
+    object Foo extends Managed {
+      @Cached(ModCount.getModificationCount, this)
+      def statisticsValue(a: Int): Int = a + 1
+    }
+
+    Foo.statisticsValue(0)
+    Foo.statisticsValue(0)
+    Foo.statisticsValue(1)
+    Foo.getModTracker.incCounter()
+    Foo.statisticsValue(0)
+
+    val statistics = CacheStatistics.all.find(_.name == "CachedTest.statisticsValue").get
+    Assert.assertEquals(4, statistics.cachedAreaEntrances)
+    Assert.assertEquals(3, statistics.misses)
+    Assert.assertEquals(1, statistics.hits)
+    Assert.assertEquals(1, statistics.cachesInvalidated)
+  }
 }
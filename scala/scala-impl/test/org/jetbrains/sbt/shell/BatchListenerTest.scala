@@ -0,0 +1,113 @@
+package org.jetbrains.sbt.shell
+
+import java.util.concurrent.LinkedBlockingDeque
+
+import org.jetbrains.sbt.shell.SbtShellCommunication._
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.JavaConverters._
+
+class BatchListenerTest {
+
+  private val Prompt = "[IJ]sbt:project> "
+
+  private val metrics = new SbtShellCommandMetrics
+
+  private var requeued = Seq.empty[CommandListener[_]]
+  private var missingResults = 0
+
+  private def listeners(commands: String*): Seq[CommandListener[StringBuilder]] =
+    commands.map(new CommandListener(_, StringBuilder.newBuilder, messageAggregator, metrics))
+
+  private def runBatch(listeners: Seq[CommandListener[_]], lines: String*): BatchListener = {
+    val batch = new BatchListener(listeners, notExecuted => requeued = notExecuted, () => missingResults += 1)
+    lines.foreach(batch.onLine)
+    batch
+  }
+
+  private def outputOf(listener: CommandListener[StringBuilder]): Option[String] =
+    listener.future.value.map(_.get.toString.trim)
+
+  @Test
+  def allCommandsSucceed(): Unit = {
+    val Seq(compile, test) = listeners("compile", "test")
+
+    val batch = runBatch(Seq(compile, test),
+      "compiling",
+      "[success] Total time: 1 s",
+      "testing",
+      "[success] Total time: 2 s",
+      Prompt
+    )
+
+    assertTrue(batch.future.isCompleted)
+    assertEquals(Some("compiling\n[success] Total time: 1 s"), outputOf(compile))
+    assertEquals(Some("testing\n[success] Total time: 2 s"), outputOf(test))
+    assertEquals(Seq.empty, requeued)
+    assertEquals(0, missingResults)
+
+    assertEquals(Seq("compile" -> Some(TaskResult(success = true, "1 s")), "test" -> Some(TaskResult(success = true, "2 s"))),
+      metrics.recent.map(m => m.command -> m.result))
+    assertTrue(metrics.recent.forall(_.batchSize == 2))
+  }
+
+  @Test
+  def commandsAfterFailureAreRequeued(): Unit = {
+    val Seq(compile, test, packageBin) = listeners("compile", "test", "package")
+
+    val batch = runBatch(Seq(compile, test, packageBin),
+      "compiling",
+      "[error] Total time: 1 s",
+      Prompt
+    )
+
+    assertTrue(batch.future.isCompleted)
+    assertEquals(Some("compiling\n[error] Total time: 1 s"), outputOf(compile))
+    assertFalse(test.future.isCompleted)
+    assertFalse(packageBin.future.isCompleted)
+    assertEquals(Seq(test, packageBin), requeued)
+    assertEquals(0, missingResults)
+  }
+
+  @Test
+  def requeuedCommandsRunBeforeQueuedOnes(): Unit = {
+    val Seq(test, packageBin, doc) = listeners("test", "package", "doc")
+
+    val commands = new LinkedBlockingDeque[(String, CommandListener[_])]()
+    commands.put(("doc", doc))
+
+    requeue(commands, Seq(test, packageBin))
+
+    assertEquals(Seq("test", "package", "doc"), commands.asScala.map(_._1).toList)
+    assertEquals(Seq(test, packageBin, doc), commands.asScala.map(_._2).toList)
+  }
+
+  @Test
+  def noResultLinesDisableBatching(): Unit = {
+    val Seq(compile, test) = listeners("compile", "test")
+
+    val batch = runBatch(Seq(compile, test),
+      "compiling",
+      "testing",
+      Prompt
+    )
+
+    assertTrue(batch.future.isCompleted)
+    assertEquals(1, missingResults)
+    assertEquals(Seq.empty, requeued)
+    //output can't be split without result lines
+    assertEquals(Some("compiling\ntesting"), outputOf(compile))
+    assertEquals(Some(""), outputOf(test))
+  }
+
+  @Test
+  def linesAfterPromptAreIgnored(): Unit = {
+    val Seq(compile) = listeners("compile")
+
+    runBatch(Seq(compile), "[success] Total time: 1 s", Prompt, "[error] Total time: 2 s", Prompt)
+
+    assertEquals(Some("[success] Total time: 1 s"), outputOf(compile))
+    assertEquals(0, missingResults)
+  }
+}
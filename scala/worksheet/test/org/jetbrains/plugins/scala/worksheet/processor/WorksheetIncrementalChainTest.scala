@@ -0,0 +1,207 @@
+package org.jetbrains.plugins.scala
+package worksheet.processor
+
+import java.io.File
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.worksheet.processor.WorksheetIncrementalChain.{ChainPlan, PrintedChunk}
+import org.jetbrains.plugins.scala.worksheet.runconfiguration.WorksheetCache
+import org.junit.Assert._
+
+class WorksheetIncrementalChainTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val Environment = "|module|MacroPrinter"
+
+  private def cache = WorksheetCache.getInstance(getProject)
+
+  private def filePath = getFile.getVirtualFile.getCanonicalPath
+
+  private def planFor(text: String, objectName: String = "A$A1", environment: String = Environment): ChainPlan = {
+    val file = getFixture.configureByText("dummy.sc", text).asInstanceOf[ScalaFile]
+    WorksheetIncrementalChain.plan(file, file.getChildren.toSeq, getEditor.getDocument, objectName, environment).get
+  }
+
+  private def commit(plan: ChainPlan): Unit =
+    cache.commitPlainRun(filePath, "", "", plan.units.map(unit => PrintedChunk(unit.lastLine, 0, 0, 0)), Seq.empty)
+
+  private def committedRun(text: String): ChainPlan = {
+    getFixture.configureByText("dummy.sc", text)
+    cache.clearPlainRunState(filePath)
+
+    val plan = planFor(text)
+    commit(plan)
+    plan
+  }
+
+  private def assertUnits(text: String)(expected: String*): Unit = {
+    val plan = planFor(text)
+    val statements = getFile.getChildren.filter(WorksheetIncrementalChain.isStatement)
+
+    val units = statements.foldLeft(Vector.empty[Vector[String]]) {
+      case (result, statement) if result.isEmpty || plan.unitStarts.contains(statement) => result :+ Vector(statement.getText)
+      case (result, statement) => result.init :+ (result.last :+ statement.getText)
+    }
+    assertEquals(expected, units.map(_.mkString("; ")))
+    assertEquals(units.length, plan.units.length)
+  }
+
+  def testIndependentStatements(): Unit = assertUnits(
+    """val a = 1
+      |val b = 2
+      |println(a + b)""".stripMargin
+  )("val a = 1", "val b = 2", "println(a + b)")
+
+  def testStatementsOnTheSameLine(): Unit = assertUnits(
+    """val a = 1; val b = 2
+      |val c = 3""".stripMargin
+  )("val a = 1; val b = 2", "val c = 3")
+
+  def testCompanions(): Unit = assertUnits(
+    """class A
+      |val x = 1
+      |object A
+      |val y = 2""".stripMargin
+  )("class A; val x = 1; object A", "val y = 2")
+
+  def testOverloads(): Unit = assertUnits(
+    """def f(i: Int) = i
+      |def f(s: String) = s
+      |val x = 1""".stripMargin
+  )("def f(i: Int) = i; def f(s: String) = s", "val x = 1")
+
+  def testForwardReference(): Unit = assertUnits(
+    """def f = g
+      |val x = 1
+      |def g = 2
+      |val y = 3""".stripMargin
+  )("def f = g; val x = 1; def g = 2", "val y = 3")
+
+  def testPrivateMemberUsage(): Unit = assertUnits(
+    """private val a = 1
+      |val b = 2
+      |val c = a""".stripMargin
+  )("private val a = 1; val b = 2; val c = a")
+
+  def testSealedHierarchy(): Unit = assertUnits(
+    """val x = 1
+      |sealed trait T
+      |val y = 2
+      |class C extends T""".stripMargin
+  )("val x = 1", "sealed trait T; val y = 2; class C extends T")
+
+  def testImportFromWorksheet(): Unit = assertUnits(
+    """object O { val x = 1 }
+      |import O._
+      |val y = x
+      |val z = 2""".stripMargin
+  )("object O { val x = 1 }", "import O._; val y = x; val z = 2")
+
+  def testUnchangedPrefixIsKept(): Unit = {
+    val previous = committedRun(
+      """val a = 1
+        |val b = 2
+        |val c = 3""".stripMargin
+    )
+
+    val plan = planFor(
+      """val a = 1
+        |val b = 2
+        |val c = 4""".stripMargin,
+      objectName = "A$A2"
+    )
+    assertEquals(2, plan.keptUnits)
+    assertEquals(previous.units.take(2).map(_.className), plan.units.take(2).map(_.className))
+    assertEquals("A$A2.A$A2u2", plan.unitClassName(2))
+  }
+
+  def testChangeInTheMiddle(): Unit = {
+    committedRun(
+      """val a = 1
+        |val b = 2
+        |val c = 3""".stripMargin
+    )
+
+    val plan = planFor(
+      """val a = 1
+        |val b = 42
+        |val c = 3""".stripMargin,
+      objectName = "A$A2"
+    )
+    assertEquals(1, plan.keptUnits)
+    assertEquals(Seq("A$A1.A$A1u0", "A$A2.A$A2u1", "A$A2.A$A2u2"), plan.units.map(_.className))
+  }
+
+  def testShiftedLinesAreNotKept(): Unit = {
+    committedRun(
+      """val a = 1
+        |val b = 2""".stripMargin
+    )
+
+    val plan = planFor(
+      """
+        |val a = 1
+        |val b = 3""".stripMargin,
+      objectName = "A$A2"
+    )
+    assertEquals(0, plan.keptUnits)
+  }
+
+  def testExplicitRerun(): Unit = {
+    val text =
+      """val a = 1
+        |val b = 2""".stripMargin
+    committedRun(text)
+
+    assertEquals(0, planFor(text, objectName = "A$A2").keptUnits)
+  }
+
+  def testChangedEnvironment(): Unit = {
+    committedRun(
+      """val a = 1
+        |val b = 2""".stripMargin
+    )
+
+    val plan = planFor(
+      """val a = 1
+        |val b = 3""".stripMargin,
+      objectName = "A$A2",
+      environment = "|module|MacroPrinter213"
+    )
+    assertEquals(0, plan.keptUnits)
+  }
+
+  def testFailedRunIsNotReused(): Unit = {
+    committedRun("val a = 1")
+
+    planFor(
+      """val a = 1
+        |val b = 2""".stripMargin,
+      objectName = "A$A2"
+    )
+    //the run is not committed
+    val plan = planFor(
+      """val a = 1
+        |val b = 3""".stripMargin,
+      objectName = "A$A3"
+    )
+    assertEquals(1, plan.keptUnits)
+    assertEquals(Seq("A$A1.A$A1u0", "A$A3.A$A3u1"), plan.units.map(_.className))
+  }
+
+  def testDeleteStaleClasses(): Unit = {
+    val outputDir = FileUtil.createTempDirectory("worksheet", null, true)
+    val packageDir = new File(outputDir, "pkg")
+
+    val kept = Seq("A$A1.class", "A$A1$.class", "A$A1$A$A1u0.class", "A$A1$A$A1u0$$anonfun$1.class", "Other.class")
+    val stale = Seq("A$A1$A$A1u1.class", "A$A1$A$A1u1$$anonfun$1.class", "A$A12$A$A12u0.class", "A$A2.class", "A$A2$.class")
+    for (name <- kept ++ stale) {
+      FileUtil.writeToFile(new File(packageDir, name), "")
+    }
+
+    WorksheetIncrementalChain.deleteStaleClasses(outputDir, Seq("A$A1.A$A1u0"))
+
+    assertEquals(kept.sorted, packageDir.list().toSeq.sorted)
+  }
+}